@@ -0,0 +1,420 @@
+package service;
+
+import entity.Account;
+import entity.User;
+import enums.AccountType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import util.TransactionCallbacks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over the username, email and account number of every
+ * customer-owned account. It answers the "contains" lookups of the transfer-recipient
+ * autocomplete without touching the database.
+ *
+ * The index is built once at startup and updated when accounts are created or users change
+ * their profile. Every minute it also picks up accounts created on other nodes, and reloads
+ * the profiles of users named in {@code user_cache_invalidation}, where profile changes made
+ * on any node are recorded.
+ * Posting lists hold slots in ascending order, so results come back in account order; a
+ * profile change adds the slot to the trigrams it gained and removes it from those it lost.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class UserSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final int LOAD_PAGE_SIZE = 5000;
+    // Rows are re-read for this long, so one committed late or stamped by a node whose clock lags is still seen.
+    private static final long POLL_OVERLAP_SECONDS = 120;
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Entry slots in insertion (account id) order; a posting is an index into this list.
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Long, Integer> slotByAccountId = new HashMap<>();
+    private final Map<String, List<Integer>> slotsByUsername = new HashMap<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+    private long highestAccountId = 0;
+    private volatile LocalDateTime lastPolledAt = LocalDateTime.now();
+
+    @PostConstruct
+    public void init() {
+        long loaded = loadAccountsAfter(0);
+        System.out.println("SEARCH INDEX: Indexed " + loaded + " accounts.");
+    }
+
+    /**
+     * Picks up accounts created and profiles changed by other nodes since the last run.
+     */
+    @Schedule(minute = "*", hour = "*", persistent = false)
+    public void catchUp() {
+        LocalDateTime polledAt = LocalDateTime.now();
+        long loaded = loadAccountsAfter(highestAccountId());
+        if (loaded > 0) {
+            System.out.println("SEARCH INDEX: Caught up " + loaded + " accounts created elsewhere.");
+        }
+
+        List<String> usernames = em.createQuery(
+                        "SELECT DISTINCT i.username FROM UserCacheInvalidation i WHERE i.createdAt >= :since", String.class)
+                .setParameter("since", lastPolledAt.minusSeconds(POLL_OVERLAP_SECONDS))
+                .getResultList();
+        if (!usernames.isEmpty()) {
+            // Scalar columns, so the profiles come from the database rather than this node's entity cache.
+            applyProfiles(em.createQuery(
+                            "SELECT u.username, u.email, u.firstName, u.lastName, u.profilePictureUrl " +
+                                    "FROM User u WHERE u.username IN :usernames", Object[].class)
+                    .setParameter("usernames", usernames)
+                    .getResultList());
+        }
+        lastPolledAt = polledAt;
+    }
+
+    /**
+     * Returns up to {@code limit} entries whose username, email or account number
+     * contains the given term (case-insensitive).
+     */
+    public List<Entry> search(String term, int limit) {
+        if (term == null || term.trim().isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String needle = term.trim().toLowerCase();
+        List<Entry> results = new ArrayList<>(limit);
+
+        lock.readLock().lock();
+        try {
+            if (needle.length() < GRAM) {
+                // Short terms match almost everything, so a scan stops after a handful of entries.
+                for (Entry entry : entries) {
+                    if (entry.matches(needle)) {
+                        results.add(entry);
+                        if (results.size() == limit) break;
+                    }
+                }
+                return results;
+            }
+
+            IntList candidates = smallestPostingList(needle);
+            if (candidates == null) {
+                return results;
+            }
+            for (int i = 0; i < candidates.size() && results.size() < limit; i++) {
+                Entry entry = entries.get(candidates.get(i));
+                if (entry.matches(needle)) {
+                    results.add(entry);
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a newly persisted account once the surrounding transaction commits.
+     * Accounts without an owner (biller accounts) are not searchable and are ignored.
+     */
+    public void indexAccount(Account account) {
+        if (account == null || account.getOwner() == null) {
+            return;
+        }
+        // The identity is only assigned on insert, so the entry is built after the commit.
+        afterCommit(() -> {
+            if (account.getId() != null) {
+                put(new Entry(account.getId(), account.getAccountNumber(), account.getAccountType(), account.getOwner()));
+            }
+        });
+    }
+
+    /**
+     * Refreshes the profile fields (email, names, avatar) of every account owned by the user
+     * once the surrounding transaction commits.
+     */
+    public void refreshUser(User user) {
+        if (user == null || user.getUsername() == null) {
+            return;
+        }
+        Object[] profile = {user.getUsername(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                user.getProfilePictureUrl()};
+        afterCommit(() -> applyProfiles(Collections.singletonList(profile)));
+    }
+
+    /**
+     * Overwrites the profile fields of every account owned by each user. A row holds username,
+     * email, first name, last name and profile picture URL, in that order.
+     */
+    void applyProfiles(List<Object[]> profiles) {
+        lock.writeLock().lock();
+        try {
+            for (Object[] profile : profiles) {
+                String username = (String) profile[0];
+                for (Integer slot : slotsByUsername.getOrDefault(username, Collections.emptyList())) {
+                    Entry old = entries.get(slot);
+                    Entry updated = new Entry(old.accountId, old.accountNumber, old.accountType, username,
+                            (String) profile[1], (String) profile[2], (String) profile[3], (String) profile[4]);
+                    entries.set(slot, updated);
+                    updatePostings(slot, old, updated);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Helper Methods ---
+
+    private long loadAccountsAfter(long fromId) {
+        long lastId = fromId;
+        long loaded = 0;
+        while (true) {
+            List<Object[]> rows = em.createQuery(
+                            "SELECT a.id, a.accountNumber, a.accountType, u.username, u.email, u.firstName, u.lastName, u.profilePictureUrl " +
+                                    "FROM Account a JOIN a.owner u WHERE a.id > :lastId ORDER BY a.id", Object[].class)
+                    .setParameter("lastId", lastId)
+                    .setMaxResults(LOAD_PAGE_SIZE)
+                    .getResultList();
+            if (rows.isEmpty()) {
+                return loaded;
+            }
+            lock.writeLock().lock();
+            try {
+                for (Object[] row : rows) {
+                    putLocked(new Entry((Long) row[0], (String) row[1], (AccountType) row[2], (String) row[3],
+                            (String) row[4], (String) row[5], (String) row[6], (String) row[7]));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            loaded += rows.size();
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+            if (rows.size() < LOAD_PAGE_SIZE) {
+                return loaded;
+            }
+        }
+    }
+
+    private void put(Entry entry) {
+        lock.writeLock().lock();
+        try {
+            putLocked(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putLocked(Entry entry) {
+        if (slotByAccountId.containsKey(entry.accountId)) {
+            return;
+        }
+        int slot = entries.size();
+        entries.add(entry);
+        slotByAccountId.put(entry.accountId, slot);
+        slotsByUsername.computeIfAbsent(entry.username, k -> new ArrayList<>(2)).add(slot);
+        addPostings(slot, entry);
+        highestAccountId = Math.max(highestAccountId, entry.accountId);
+    }
+
+    private void addPostings(int slot, Entry entry) {
+        // A new slot is the highest so far, so appending keeps every list sorted.
+        for (String gram : grams(entry)) {
+            IntList list = postings.computeIfAbsent(gram, k -> new IntList());
+            if (list.size() == 0 || list.last() != slot) {
+                list.add(slot);
+            }
+        }
+    }
+
+    private void updatePostings(int slot, Entry old, Entry updated) {
+        Set<String> before = grams(old);
+        Set<String> after = grams(updated);
+        for (String gram : before) {
+            if (!after.contains(gram)) {
+                IntList list = postings.get(gram);
+                if (list != null) {
+                    list.remove(slot);
+                    if (list.size() == 0) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+        for (String gram : after) {
+            if (!before.contains(gram)) {
+                postings.computeIfAbsent(gram, k -> new IntList()).insert(slot);
+            }
+        }
+    }
+
+    private IntList smallestPostingList(String needle) {
+        IntList smallest = null;
+        for (int i = 0; i + GRAM <= needle.length(); i++) {
+            IntList list = postings.get(needle.substring(i, i + GRAM));
+            if (list == null) {
+                return null; // A missing trigram means nothing can match.
+            }
+            if (smallest == null || list.size() < smallest.size()) {
+                smallest = list;
+            }
+        }
+        return smallest;
+    }
+
+    private long highestAccountId() {
+        lock.readLock().lock();
+        try {
+            return highestAccountId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Set<String> grams(Entry entry) {
+        Set<String> grams = new HashSet<>();
+        collectGrams(entry.usernameLower, grams);
+        collectGrams(entry.emailLower, grams);
+        collectGrams(entry.accountNumberLower, grams);
+        return grams;
+    }
+
+    private static void collectGrams(String value, Set<String> grams) {
+        if (value == null) return;
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        TransactionCallbacks.afterCommit(txRegistry, action);
+    }
+
+    /**
+     * An immutable, searchable view of one customer account and its owner.
+     */
+    public static final class Entry {
+        private final long accountId;
+        private final String accountNumber;
+        private final AccountType accountType;
+        private final String username;
+        private final String email;
+        private final String firstName;
+        private final String lastName;
+        private final String profilePictureUrl;
+
+        private final String usernameLower;
+        private final String emailLower;
+        private final String accountNumberLower;
+
+        Entry(long accountId, String accountNumber, AccountType accountType, User owner) {
+            this(accountId, accountNumber, accountType, owner.getUsername(), owner.getEmail(),
+                    owner.getFirstName(), owner.getLastName(), owner.getProfilePictureUrl());
+        }
+
+        Entry(long accountId, String accountNumber, AccountType accountType, String username, String email,
+              String firstName, String lastName, String profilePictureUrl) {
+            this.accountId = accountId;
+            this.accountNumber = accountNumber;
+            this.accountType = accountType;
+            this.username = username;
+            this.email = email;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.profilePictureUrl = profilePictureUrl;
+            this.usernameLower = username != null ? username.toLowerCase() : null;
+            this.emailLower = email != null ? email.toLowerCase() : null;
+            this.accountNumberLower = accountNumber != null ? accountNumber.toLowerCase() : null;
+        }
+
+        boolean matches(String needle) {
+            return (usernameLower != null && usernameLower.contains(needle))
+                    || (emailLower != null && emailLower.contains(needle))
+                    || (accountNumberLower != null && accountNumberLower.contains(needle));
+        }
+
+        public long getAccountId() { return accountId; }
+        public String getAccountNumber() { return accountNumber; }
+        public AccountType getAccountType() { return accountType; }
+        public String getUsername() { return username; }
+        public String getEmail() { return email; }
+        public String getFirstName() { return firstName; }
+        public String getLastName() { return lastName; }
+        public String getProfilePictureUrl() { return profilePictureUrl; }
+    }
+
+    /**
+     * A growable, ascending int array, so a posting list costs 4 bytes per entry instead of a
+     * boxed Integer.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void insert(int value) {
+            int at = Arrays.binarySearch(values, 0, size, value);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, at, values, at + 1, size - at);
+            values[at] = value;
+            size++;
+        }
+
+        void remove(int value) {
+            int at = Arrays.binarySearch(values, 0, size, value);
+            if (at >= 0) {
+                System.arraycopy(values, at + 1, values, at, size - at - 1);
+                size--;
+            }
+        }
+
+        int get(int index) { return values[index]; }
+        int last() { return values[size - 1]; }
+        int size() { return size; }
+    }
+}
@@ -3,8 +3,11 @@ package service.impl;
 import dto.CreateAccountDTO;
 import entity.Account;
 import dto.DashboardAccountDTO;
+import entity.Transaction;
 import entity.User;
 import enums.AccountType;
+import enums.TransactionStatus;
+import enums.TransactionType;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
@@ -16,6 +19,11 @@ import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import service.AccountService;
+import service.DashboardStatistics;
+import service.LedgerService;
+import service.SequenceAllocator;
+import service.UserPrincipalCache;
+import service.UserSearchIndex;
 import util.LoggingInterceptor;
 
 import java.math.BigDecimal;
@@ -23,17 +31,32 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
-import java.util.Random;
 import java.util.stream.Collectors;
 
 @Stateless
 @Interceptors(LoggingInterceptor.class)
 public class AccountServiceImpl implements AccountService { // Implements the interface
 
+    private static final String ACCOUNT_NUMBER_SEQUENCE = "account_number";
+    private static final int ACCOUNT_NUMBER_BLOCK_SIZE = 1000;
+
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
+    @EJB
+    private UserSearchIndex userSearchIndex;
+
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private SequenceAllocator sequenceAllocator;
 
+    @EJB
+    private LedgerService ledgerService;
 
     @Override // Add the @Override annotation
     public void createAccountForNewUser(User user, BigDecimal initialDeposit , AccountType accountType) {
@@ -46,6 +69,23 @@ public class AccountServiceImpl implements AccountService { // Implements the in
         account.setAccountType(accountType);
 
         em.persist(account);
+        userSearchIndex.indexAccount(account);
+        statistics.recordAccountOpened(account);
+
+        // The opening balance is a movement like any other, so the account's ledger adds up to its balance.
+        if (initialDeposit.compareTo(BigDecimal.ZERO) > 0) {
+            Transaction openingDeposit = new Transaction();
+            openingDeposit.setTransactionType(TransactionType.DEPOSIT);
+            openingDeposit.setStatus(TransactionStatus.COMPLETED);
+            openingDeposit.setToAccount(account);
+            openingDeposit.setAmount(initialDeposit);
+            openingDeposit.setTransactionDate(LocalDateTime.now());
+            openingDeposit.setDescription("Opening deposit");
+            openingDeposit.setRunningBalance(account.getBalance());
+            em.persist(openingDeposit);
+            ledgerService.post(openingDeposit);
+            statistics.recordTransaction(openingDeposit);
+        }
 
         System.out.println("Successfully created user: " + user.getUsername() + " and account: " + account.getAccountNumber());
     }
@@ -130,6 +170,8 @@ public class AccountServiceImpl implements AccountService { // Implements the in
         newAccount.setAccountNumber(generateHumanReadableAccountNumber());
 
         em.persist(newAccount);
+        userSearchIndex.indexAccount(newAccount);
+        statistics.recordAccountOpened(newAccount);
 
         // 4. Return a DTO of the new account
         return new DashboardAccountDTO(newAccount);
@@ -138,12 +180,10 @@ public class AccountServiceImpl implements AccountService { // Implements the in
     // --- NEW HELPER METHODS ---
 
     private User findUserByUsername(String username) {
-        try {
-            return em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
-                    .setParameter("username", username).getSingleResult();
-        } catch (NoResultException e) {
-            throw new IllegalArgumentException("User not found.");
-        }
+        UserPrincipalCache.Entry principal = userPrincipalCache.resolve(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found."));
+        // Served by the shared entity cache when the user was loaded recently.
+        return em.find(User.class, principal.getId());
     }
 
     private long countAccountsOfTypeForUser(User user, AccountType accountType) {
@@ -172,59 +212,17 @@ public class AccountServiceImpl implements AccountService { // Implements the in
         String bankPrefix = "ORBIN";
         String currentYear = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy"));
 
-
-        String sequentialNumber = generateSequentialNumber();
-        String accountNumber = bankPrefix + "-" + currentYear + "-" + sequentialNumber;
-
-        // Ensure uniqueness by checking if account number already exists
-        while (accountNumberExists(accountNumber)) {
-            sequentialNumber = generateSequentialNumber();
-            accountNumber = bankPrefix + "-" + currentYear + "-" + sequentialNumber;
-        }
-
-        return accountNumber;
-    }
-
-
-    private String generateSequentialNumber() {
-        // Get the count of existing accounts and add base number
-        long accountCount = getAccountCount();
-        long nextNumber = 100001 + accountCount;
-
-        // If we've exceeded 6 digits, use random 6-digit number
-        if (nextNumber > 999999) {
-            Random random = new Random();
-            nextNumber = 100001 + random.nextInt(899999); // Random between 100001-999999
-        }
-
-        return String.format("%06d", nextNumber);
+        // Unique by construction; the number simply grows past six digits when it needs to.
+        long sequentialNumber = sequenceAllocator.next(ACCOUNT_NUMBER_SEQUENCE, ACCOUNT_NUMBER_BLOCK_SIZE,
+                () -> 100001 + getAccountCount());
+        return bankPrefix + "-" + currentYear + "-" + String.format("%06d", sequentialNumber);
     }
 
     /**
-     * Gets the total count of accounts in the system
+     * Gets the total count of accounts in the system. Only used to seed the account-number
+     * sequence the first time it is created, so numbers continue after the existing ones.
      */
     private long getAccountCount() {
-        try {
-            TypedQuery<Long> query = em.createQuery("SELECT COUNT(a) FROM Account a", Long.class);
-            return query.getSingleResult();
-        } catch (Exception e) {
-            // If query fails, return 0 to start from base number
-            return 0;
-        }
-    }
-
-    /**
-     * Checks if an account number already exists in the database
-     */
-    private boolean accountNumberExists(String accountNumber) {
-        try {
-            TypedQuery<Long> query = em.createQuery(
-                "SELECT COUNT(a) FROM Account a WHERE a.accountNumber = :accountNumber", Long.class);
-            query.setParameter("accountNumber", accountNumber);
-            return query.getSingleResult() > 0;
-        } catch (Exception e) {
-            // If query fails, assume it doesn't exist
-            return false;
-        }
+        return em.createQuery("SELECT COUNT(a) FROM Account a", Long.class).getSingleResult();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,134 @@
+package service;
+
+import entity.Account;
+import entity.User;
+import enums.AccountType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserSearchIndexTest {
+
+    private UserSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // Without a transaction registry, updates are applied at once.
+        index = new UserSearchIndex();
+        index.indexAccount(account(1, "1000000001", user("alice", "alice.smith@example.com")));
+        index.indexAccount(account(2, "1000000002", user("bob", "bob@example.com")));
+        index.indexAccount(account(3, "1000000003", user("alice", "alice.smith@example.com")));
+    }
+
+    @Test
+    void updatedProfileIsFoundByItsNewFields() {
+        index.refreshUser(user("alice", "alice.jones@example.com"));
+
+        assertEquals(List.of(1L, 3L), accountIds(index.search("jones", 10)));
+        assertEquals("alice.jones@example.com", index.search("jones", 10).get(0).getEmail());
+    }
+
+    @Test
+    void updatedProfileIsNoLongerFoundByItsOldFields() {
+        index.refreshUser(user("alice", "alice.jones@example.com"));
+
+        assertTrue(index.search("smith", 10).isEmpty());
+    }
+
+    @Test
+    void repeatedUpdatesKeepOneResultPerAccountInAccountOrder() {
+        index.refreshUser(user("alice", "alice.jones@example.com"));
+        index.refreshUser(user("alice", "alice.smith@example.com"));
+        index.refreshUser(user("alice", "alice.smith@example.org"));
+
+        assertEquals(List.of(1L, 2L, 3L), accountIds(index.search("example", 10)));
+        assertEquals(List.of(1L, 3L), accountIds(index.search("alice", 10)));
+        assertEquals(List.of(1L, 2L), accountIds(index.search("example", 2)));
+    }
+
+    @Test
+    void accountsAddedAfterAnUpdateFollowInAccountOrder() {
+        index.refreshUser(user("bob", "bob@example.org"));
+        index.indexAccount(account(4, "1000000004", user("carol", "carol@example.org")));
+
+        assertEquals(List.of(2L, 4L), accountIds(index.search("example.org", 10)));
+    }
+
+    @Test
+    void profileChangedOnAnotherNodeIsPickedUpFromTheDatabase() {
+        index.applyProfiles(List.<Object[]>of(profileRow(user("bob", "robert@example.net"))));
+
+        assertEquals(List.of(2L), accountIds(index.search("robert", 10)));
+        assertTrue(index.search("bob@", 10).isEmpty());
+    }
+
+    @Test
+    void indexMatchesTheDatabaseAfterLocalAndRemoteUpdates() {
+        // The users table as the database holds it; accounts 1 and 3 belong to alice, 2 to bob.
+        Map<String, User> database = new LinkedHashMap<>();
+        database.put("alice", user("alice", "alice.smith@example.com"));
+        database.put("bob", user("bob", "bob@example.com"));
+        Map<Long, String> ownerByAccount = new TreeMap<>(Map.of(1L, "alice", 2L, "bob", 3L, "alice"));
+
+        Random random = new Random(42);
+        String[] domains = {"example.com", "example.org", "mail.test"};
+        for (int round = 0; round < 200; round++) {
+            String username = random.nextBoolean() ? "alice" : "bob";
+            User changed = user(username, username + round + "@" + domains[random.nextInt(domains.length)]);
+            database.put(username, changed);
+            if (random.nextBoolean()) {
+                index.refreshUser(changed); // Changed on this node.
+            } else {
+                // Changed on another node and read back by catchUp, which may see the same row twice.
+                index.applyProfiles(List.<Object[]>of(profileRow(changed)));
+                if (random.nextBoolean()) {
+                    index.applyProfiles(List.<Object[]>of(profileRow(changed)));
+                }
+            }
+
+            for (String term : List.of("alice", "bob", "example", "example.org", "mail.test", "@", username + round)) {
+                List<Long> expected = ownerByAccount.entrySet().stream()
+                        .filter(account -> account.getValue().contains(term)
+                                || database.get(account.getValue()).getEmail().contains(term)
+                                || ("100000000" + account.getKey()).contains(term))
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toList());
+                assertEquals(expected, accountIds(index.search(term, 10)), "round " + round + ", term " + term);
+            }
+        }
+    }
+
+    private static Object[] profileRow(User user) {
+        return new Object[]{user.getUsername(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                user.getProfilePictureUrl()};
+    }
+
+    private static List<Long> accountIds(List<UserSearchIndex.Entry> entries) {
+        return entries.stream().map(UserSearchIndex.Entry::getAccountId).collect(Collectors.toList());
+    }
+
+    private static User user(String username, String email) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        return user;
+    }
+
+    private static Account account(long id, String accountNumber, User owner) {
+        Account account = new Account();
+        account.setId(id);
+        account.setAccountNumber(accountNumber);
+        account.setAccountType(AccountType.SAVING);
+        account.setOwner(owner);
+        return account;
+    }
+}
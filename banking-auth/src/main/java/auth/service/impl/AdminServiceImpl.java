@@ -8,16 +8,21 @@ import entity.User;
 import entity.UserRole;
 import enums.AccountType;
 import enums.KycStatus;
+import jakarta.annotation.Resource;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
+import jakarta.ejb.SessionContext;
 import jakarta.ejb.Stateless;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import service.AccountService;
+import service.DashboardStatistics;
+import service.KycImageStore;
+import service.KycService;
+import service.UserPrincipalCache;
 import annotation.Audit;
 
-import java.io.File;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -28,9 +33,24 @@ public class AdminServiceImpl implements AdminService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
     @EJB
     private AccountService accountService;
 
+    @EJB
+    private KycImageStore kycImageStore;
+
+    @EJB
+    private KycService kycService;
+
+    @Resource
+    private SessionContext context;
+
     @Override
     @RolesAllowed({"ADMIN", "EMPLOYEE"})
     public void approveKycAndAssignRole(String username, String reviewNotes, String reviewedBy) {
@@ -43,6 +63,7 @@ public class AdminServiceImpl implements AdminService {
         TypedQuery<KycDocument> kycQuery = em.createQuery("SELECT k FROM KycDocument k WHERE k.user.username = :username", KycDocument.class);
         kycQuery.setParameter("username", username);
         KycDocument kycDocument = kycQuery.getSingleResult();
+        kycService.checkReviewer(kycDocument, context.getCallerPrincipal().getName());
 
         // 1. Update the USER entity with review information (moved from KycDocument)
         user.setKycReviewNotes(reviewNotes);
@@ -50,8 +71,17 @@ public class AdminServiceImpl implements AdminService {
         user.setKycReviewedAt(LocalDateTime.now());
 
         // 2. Update the user's KYC status
+        KycStatus previousKycStatus = user.getKycStatus();
         user.setKycStatus(KycStatus.VERIFIED);
         em.merge(user);
+        statistics.recordKycStatusChange(previousKycStatus, KycStatus.VERIFIED);
+        userPrincipalCache.invalidate(username);
+
+        // Take the document out of the review queue
+        statistics.recordKycDocumentChange(kycDocument.getReviewStatus(), KycStatus.VERIFIED);
+        kycDocument.setReviewStatus(KycStatus.VERIFIED);
+        kycDocument.setClaimedBy(null);
+        kycDocument.setClaimedAt(null);
 
         // 3. Remove the 'NONE' role
         TypedQuery<UserRole> findNoneRoleQuery = em.createQuery(
@@ -103,26 +133,28 @@ public class AdminServiceImpl implements AdminService {
         TypedQuery<KycDocument> kycQuery = em.createQuery("SELECT k FROM KycDocument k WHERE k.user.username = :username", KycDocument.class);
         kycQuery.setParameter("username", username);
         KycDocument kycDocument = kycQuery.getSingleResult();
+        kycService.checkReviewer(kycDocument, context.getCallerPrincipal().getName());
 
         // Store review information in USER entity (moved from KycDocument)
         user.setKycReviewNotes(reviewNotes);
         user.setKycReviewedBy(reviewedBy);
         user.setKycReviewedAt(LocalDateTime.now());
 
-        // Delete the uploaded files from file system
-        deleteKycFiles(kycDocument);
-
         // Ensure the entity is managed before removal
         if (!em.contains(kycDocument)) {
             kycDocument = em.merge(kycDocument);
         }
 
         // Remove the KYC document completely from database
+        statistics.recordKycDocumentChange(kycDocument.getReviewStatus(), null);
         em.remove(kycDocument);
 
         // Force immediate flush to ensure deletion
         em.flush();
 
+        // Delete the uploaded files from file system once the rejection commits
+        deleteKycFiles(kycDocument);
+
 
 
 
@@ -133,8 +165,11 @@ public class AdminServiceImpl implements AdminService {
 
 
         // Update the user's KYC status to REJECTED
+        KycStatus previousKycStatus = user.getKycStatus();
         user.setKycStatus(KycStatus.REJECTED);
         em.merge(user);
+        statistics.recordKycStatusChange(previousKycStatus, KycStatus.REJECTED);
+        userPrincipalCache.invalidate(username);
 
 
         // Force flush to ensure user status is updated
@@ -144,27 +179,8 @@ public class AdminServiceImpl implements AdminService {
     }
 
     private void deleteKycFiles(KycDocument kycDocument) {
-        try {
-            // Delete front photo file
-            if (kycDocument.getIdFrontPhotoPath() != null) {
-                File frontFile = new File(kycDocument.getIdFrontPhotoPath());
-                if (frontFile.exists()) {
-                    boolean deleted = frontFile.delete();
-                    System.out.println("Front photo file deleted: " + deleted);
-                }
-            }
-
-            // Delete back photo file
-            if (kycDocument.getIdBackPhotoPath() != null) {
-                File backFile = new File(kycDocument.getIdBackPhotoPath());
-                if (backFile.exists()) {
-                    boolean deleted = backFile.delete();
-                    System.out.println("Back photo file deleted: " + deleted);
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error deleting KYC files: " + e.getMessage());
-            // Continue with database deletion even if file deletion fails
-        }
+        // Resolved through the image store, which accepts both its file names and older full paths
+        kycImageStore.deleteIfUnreferenced(kycDocument.getIdFrontPhotoPath());
+        kycImageStore.deleteIfUnreferenced(kycDocument.getIdBackPhotoPath());
     }
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import mail.EmailService;
+import service.DashboardStatistics;
 import util.LoggingInterceptor;
 
 import java.nio.charset.StandardCharsets;
@@ -39,6 +40,9 @@ public class AuthServiceImpl implements AuthService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private DashboardStatistics statistics;
+
     @Inject
     private TokenProvider tokenProvider;
 
@@ -124,6 +128,7 @@ public class AuthServiceImpl implements AuthService {
             userRole.setUsername(newUser.getUsername());
             userRole.setRolename("NONE"); // Assign the NONE role
             em.persist(userRole);
+            statistics.recordUserRegistered(newUser.getStatus(), newUser.getKycStatus());
 
 
             emailService.sendVerificationEmail(newUser.getEmail(), newUser.getUsername(), verificationCode);
@@ -3,13 +3,11 @@ package auth.service.impl;
 
 import auth.service.SearchService;
 import dto.UserSearchResultDTO;
-import entity.Account;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.interceptor.Interceptors;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
-import jakarta.persistence.TypedQuery;
+import service.UserSearchIndex;
 import util.LoggingInterceptor;
 
 import java.util.List;
@@ -20,8 +18,10 @@ import java.util.stream.Collectors;
 @Interceptors(LoggingInterceptor.class)
 public class SearchServiceImpl implements SearchService {
 
-    @PersistenceContext(unitName = "bankingPU")
-    private EntityManager em;
+    private static final int MAX_RESULTS = 5;
+
+    @EJB
+    private UserSearchIndex userSearchIndex;
 
     @Override
     public List<UserSearchResultDTO> searchUsers(String searchTerm) {
@@ -29,42 +29,28 @@ public class SearchServiceImpl implements SearchService {
             return java.util.Collections.emptyList();
         }
 
-        // Using LIKE with a wildcard at the beginning and end can be better for a "contains" search
-        String searchPattern = "%" + searchTerm.trim().toLowerCase() + "%";
-
-        String jpql = "SELECT a FROM Account a JOIN FETCH a.owner u " +
-                "WHERE LOWER(u.username) LIKE :searchPattern " +
-                "OR LOWER(u.email) LIKE :searchPattern " +
-                "OR a.accountNumber LIKE :searchPattern";
-
-        TypedQuery<Account> query = em.createQuery(jpql, Account.class);
-        query.setParameter("searchPattern", searchPattern);
-        query.setMaxResults(5);
-
-        List<Account> results = query.getResultList();
+        // Served from the in-memory trigram index instead of a LIKE '%term%' scan of account x user.
+        List<UserSearchIndex.Entry> results = userSearchIndex.search(searchTerm, MAX_RESULTS);
 
-        // Step 2: Manually map the results to your DTO in Java.
         return results.stream()
-                .map(account -> {
-                    String rawUrl = account.getOwner().getProfilePictureUrl();
-                    // *** THIS IS THE NEW LOGIC ***
+                .map(entry -> {
+                    String rawUrl = entry.getProfilePictureUrl();
                     String fullApiUrl = null;
                     if (rawUrl != null && !rawUrl.isEmpty()) {
                         // Extract just the filename from the stored path
                         String filename = rawUrl.substring(rawUrl.lastIndexOf('/') + 1);
-                        // Prepend the API path to create a full, callable URL
-                        fullApiUrl = "/api/user/profile/avatar/image/" + filename;
+                        // Prepend the API path to create a full, callable URL; results show a small thumbnail
+                        fullApiUrl = "/api/user/profile/avatar/image/" + filename + "?size=64";
                     }
 
-                    // Create the DTO with the newly constructed URL
                     return new UserSearchResultDTO(
-                            account.getOwner().getEmail(),
-                            account.getOwner().getFirstName(),
-                            account.getOwner().getLastName(),
-                            account.getOwner().getUsername(),
-                            fullApiUrl, // Use the constructed URL
-                            account.getAccountNumber(),
-                            account.getAccountType()
+                            entry.getEmail(),
+                            entry.getFirstName(),
+                            entry.getLastName(),
+                            entry.getUsername(),
+                            fullApiUrl,
+                            entry.getAccountNumber(),
+                            entry.getAccountType()
                     );
                 })
                 .collect(Collectors.toList());
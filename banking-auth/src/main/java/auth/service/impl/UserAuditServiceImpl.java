@@ -8,17 +8,18 @@ import dto.DashboardAccountDTO;
 import dto.UserAuditDTO;
 import dto.UserDTO;
 import entity.Account;
-import entity.Biller;
 import entity.Transaction;
 import entity.User;
 import enums.TransactionType;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.interceptor.Interceptors;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import service.BillerDirectory;
+import service.UserPrincipalCache;
 import util.LoggingInterceptor;
 
 import java.util.ArrayList;
@@ -34,6 +35,12 @@ public class UserAuditServiceImpl implements UserAuditService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
+    @EJB
+    private BillerDirectory billerDirectory;
+
     @Override
     public UserAuditDTO getFullUserAudit(String username, int pageNumber, int pageSize) {
         // 1. Fetch the core User entity
@@ -65,12 +72,10 @@ public class UserAuditServiceImpl implements UserAuditService {
     // --- Helper Methods ---
 
     private User findUserByUsername(String username) {
-        try {
-            return em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
-                    .setParameter("username", username).getSingleResult();
-        } catch (NoResultException e) {
-            throw new IllegalArgumentException("User '" + username + "' not found.");
-        }
+        UserPrincipalCache.Entry principal = userPrincipalCache.resolve(username)
+                .orElseThrow(() -> new IllegalArgumentException("User '" + username + "' not found."));
+        // Served by the shared entity cache when the user was loaded recently.
+        return em.find(User.class, principal.getId());
     }
 
     private List<Account> findAccountsByUser(User user) {
@@ -83,7 +88,10 @@ public class UserAuditServiceImpl implements UserAuditService {
             return Collections.emptyList();
         }
         TypedQuery<Transaction> query = em.createQuery(
-                "SELECT t FROM Transaction t WHERE t.fromAccount IN :accounts OR t.toAccount IN :accounts ORDER BY t.transactionDate DESC", Transaction.class);
+                "SELECT t FROM Transaction t " +
+                        "LEFT JOIN FETCH t.fromAccount fa LEFT JOIN FETCH fa.owner " +
+                        "LEFT JOIN FETCH t.toAccount ta LEFT JOIN FETCH ta.owner " +
+                        "WHERE t.fromAccount IN :accounts OR t.toAccount IN :accounts ORDER BY t.transactionDate DESC", Transaction.class);
         query.setParameter("accounts", accounts);
 
         // Apply pagination
@@ -104,15 +112,11 @@ public class UserAuditServiceImpl implements UserAuditService {
 
             // Special handling for bill payments to show the Biller's name
             if (tx.getTransactionType() == TransactionType.BILL_PAYMENT && tx.getToAccount() != null) {
-                try {
-                    // Find the biller associated with the internal destination account
-                    TypedQuery<Biller> query = em.createQuery("SELECT b FROM Biller b WHERE b.internalAccount = :account", Biller.class);
-                    query.setParameter("account", tx.getToAccount());
-                    Biller biller = query.getSingleResult();
-                    dto.setToOwnerUsername(biller.getBillerName() + " (Biller)");
-                } catch (NoResultException e) {
-                    dto.setToOwnerUsername("Unknown Biller");
-                }
+                // Resolve the biller from the in-memory directory instead of a query per row
+                String billerName = billerDirectory.findByInternalAccountId(tx.getToAccount().getId())
+                        .map(biller -> biller.getBillerName() + " (Biller)")
+                        .orElse("Unknown Biller");
+                dto.setToOwnerUsername(billerName);
             }
             dtos.add(dto);
         }
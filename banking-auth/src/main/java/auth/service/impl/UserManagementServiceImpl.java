@@ -23,6 +23,8 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import mail.EmailService;
+import service.DashboardStatistics;
+import service.UserPrincipalCache;
 import util.LoggingInterceptor;
 
 import java.nio.charset.StandardCharsets;
@@ -42,6 +44,12 @@ public class UserManagementServiceImpl implements UserManagementService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
     @EJB
     private EmailService emailService;
 
@@ -67,11 +75,14 @@ public class UserManagementServiceImpl implements UserManagementService {
             throw new IllegalStateException("User is already suspended.");
         }
 
+        UserStatus previousStatus = user.getStatus();
         user.setStatus(UserStatus.SUSPENDED);
         user.setKycReviewNotes("Account SUSPENDED by " + adminUsername + ". Reason: " + reason);
         user.setKycReviewedBy(adminUsername);
         user.setKycReviewedAt(LocalDateTime.now());
         em.merge(user);
+        statistics.recordUserStatusChange(previousStatus, UserStatus.SUSPENDED);
+        userPrincipalCache.invalidate(user.getUsername());
 
         try {
             emailService.sendAccountSuspensionEmail(user.getEmail(), user.getUsername(), reason, adminUsername);
@@ -95,6 +106,8 @@ public class UserManagementServiceImpl implements UserManagementService {
         user.setKycReviewedBy(adminUsername);
         user.setKycReviewedAt(LocalDateTime.now());
         em.merge(user);
+        statistics.recordUserStatusChange(UserStatus.SUSPENDED, UserStatus.ACTIVE);
+        userPrincipalCache.invalidate(user.getUsername());
 
 
         try {
@@ -254,6 +267,7 @@ public class UserManagementServiceImpl implements UserManagementService {
         userRole.setUsername(newUser.getUsername());
         userRole.setRolename(dto.getRole());
         em.persist(userRole);
+        statistics.recordUserRegistered(UserStatus.ACTIVE, KycStatus.VERIFIED);
 
 
         return new EmployeeDTO(newUser, List.of(dto.getRole()));
@@ -313,6 +327,8 @@ public class UserManagementServiceImpl implements UserManagementService {
                 .setParameter("username", username)
                 .setParameter("role", roleToRemove)
                 .executeUpdate();
+        // Bulk deletes bypass the entity lifecycle, so drop any cached roles explicitly.
+        em.getEntityManagerFactory().getCache().evict(UserRole.class);
 
         if (deletedCount == 0) {
 
@@ -322,8 +338,8 @@ public class UserManagementServiceImpl implements UserManagementService {
     }
 
     private void validateRole(String role) {
-        if (!role.equals("EMPLOYEE") && !role.equals("ADMIN")) {
-            throw new IllegalArgumentException("Invalid role. Must be EMPLOYEE or ADMIN.");
+        if (!role.equals("EMPLOYEE") && !role.equals("ADMIN") && !role.equals("CARD_PROCESSOR")) {
+            throw new IllegalArgumentException("Invalid role. Must be EMPLOYEE, ADMIN or CARD_PROCESSOR.");
         }
     }
 
@@ -2,23 +2,21 @@ package auth.service.impl;
 
 
 import auth.service.UserService;
+import auth.util.AvatarImages;
 import dto.ProfileUpdateDTO;
 import entity.User;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.interceptor.Interceptors;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.NoResultException;
+import service.UserPrincipalCache;
+import service.UserSearchIndex;
 import util.LoggingInterceptor;
 
-import java.io.File;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
 
 @Stateless
 @Interceptors(LoggingInterceptor.class)
@@ -27,15 +25,14 @@ public class UserServiceImpl implements UserService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
-    private String getWebappAvatarDirectory() {
+    @EJB
+    private UserSearchIndex userSearchIndex;
 
-        String webappPath = System.getProperty("com.sun.aas.instanceRoot");
-        if (webappPath != null) {
-            return webappPath + "/applications/banking-ear/assets/avatars/";
-        } else {
-            return "C:\\banking_uploads\\avatars\\";
-        }
-    }
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
+    @EJB
+    private AvatarImages avatarImages;
 
     @Override
     public void updateUserProfile(String username, ProfileUpdateDTO profileUpdateDTO) {
@@ -59,10 +56,15 @@ public class UserServiceImpl implements UserService {
         }
 
         em.merge(user);
+        userSearchIndex.refreshUser(user);
+        // Recorded for the other nodes, whose entity caches and search indexes still hold the old profile.
+        userPrincipalCache.invalidate(username);
     }
 
     @Override
     public String uploadProfilePicture(String username, InputStream avatarStream, String fileName) {
+        // Decoded and resized before the user is loaded, so no database connection waits on it
+        String avatarUrl = avatarImages.store(avatarStream, username);
         try {
 
             TypedQuery<User> query = em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class);
@@ -73,38 +75,22 @@ public class UserServiceImpl implements UserService {
                 deleteExistingAvatar(user.getProfilePictureUrl());
             }
 
-            String savedAvatarPath = saveAvatarFile(avatarStream, fileName, username);
-
-            String avatarUrl =   Paths.get(savedAvatarPath).getFileName().toString();
             user.setProfilePictureUrl(avatarUrl);
             em.merge(user);
+            userSearchIndex.refreshUser(user);
+            userPrincipalCache.invalidate(username);
 
             return avatarUrl;
 
         } catch (NoResultException e) {
+            avatarImages.delete(avatarUrl);
             throw new IllegalArgumentException("User not found: " + username);
         } catch (Exception e) {
+            avatarImages.delete(avatarUrl);
             throw new RuntimeException("Failed to upload avatar", e);
         }
     }
 
-    private String saveAvatarFile(InputStream inputStream, String originalFileName, String username) throws Exception {
-
-        String extension = originalFileName.substring(originalFileName.lastIndexOf("."));
-        String uniqueFileName = username + "_avatar_" + UUID.randomUUID().toString() + extension;
-
-
-        File uploadDir = new File(getWebappAvatarDirectory());
-        if (!uploadDir.exists()) {
-            uploadDir.mkdirs();
-        }
-
-        Path destination = Paths.get(getWebappAvatarDirectory() + uniqueFileName);
-        Files.copy(inputStream, destination, StandardCopyOption.REPLACE_EXISTING);
-
-        return destination.toString(); // Return the full path
-    }
-
     @Override
     public String getProfilePictureUrl(String username) {
         try {
@@ -131,6 +117,8 @@ public class UserServiceImpl implements UserService {
                 // Clear the URL from database
                 user.setProfilePictureUrl(null);
                 em.merge(user);
+                userSearchIndex.refreshUser(user);
+                userPrincipalCache.invalidate(username);
             }
         } catch (NoResultException e) {
             throw new IllegalArgumentException("User not found: " + username);
@@ -152,8 +140,7 @@ public class UserServiceImpl implements UserService {
     private void deleteExistingAvatar(String avatarUrl) {
         try {
             String fileName = avatarUrl.substring(avatarUrl.lastIndexOf('/') + 1);
-            Path avatarPath = Paths.get(getWebappAvatarDirectory(), fileName);
-            Files.deleteIfExists(avatarPath);
+            avatarImages.delete(fileName);
         } catch (Exception e) {
 
             System.err.println("Failed to delete existing avatar file: " + e.getMessage());
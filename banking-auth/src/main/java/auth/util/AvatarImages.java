@@ -0,0 +1,322 @@
+package auth.util;
+
+import exception.BusinessRuleException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Normalizes uploaded avatars and keeps them in the sizes the UI shows.
+ *
+ * An upload is copied to a temporary file, decoded on a small bounded pool and written back
+ * as a 512 px square JPEG plus 32, 64 and 256 px copies ({@code <name>-64.jpg}); re-encoding
+ * drops EXIF and any other metadata the phone attached. Decoding is guarded twice against
+ * decompression bombs: an image whose header declares more than
+ * {@code banking.avatars.maxPixels} is refused before any pixel is read, and every decode
+ * reserves its decoded size from a shared {@code banking.avatars.decodeBudgetBytes} budget,
+ * reading at a subsampled resolution so a large photo costs little of it.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AvatarImages {
+
+    public static final int[] SIZES = {32, 64, 256};
+
+    private static final int BASE_SIZE = 512;
+    private static final long MAX_UPLOAD_BYTES = Long.getLong("banking.avatars.maxUploadBytes", 10L * 1024 * 1024);
+    private static final long MAX_PIXELS = Long.getLong("banking.avatars.maxPixels", 40_000_000L);
+    private static final long DECODE_BUDGET_BYTES = Long.getLong("banking.avatars.decodeBudgetBytes", 128L * 1024 * 1024);
+    private static final int WORKERS = Integer.getInteger("banking.avatars.workers", 2);
+    private static final int QUEUE = Integer.getInteger("banking.avatars.queue", 16);
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    // Permits are KiB of decoded pixels, so the budget fits in an int
+    private final Semaphore decodeBudget = new Semaphore((int) Math.min(Integer.MAX_VALUE, DECODE_BUDGET_BYTES / 1024));
+    private Path directory;
+    private ThreadPoolExecutor pool;
+
+    @PostConstruct
+    public void init() {
+        directory = avatarDirectory();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create the avatar directory " + directory, e);
+        }
+        pool = new ThreadPoolExecutor(WORKERS, WORKERS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE), threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Normalizes an upload and writes it with its sized copies.
+     *
+     * @return the file name of the normalized avatar
+     * @throws BusinessRuleException if the upload is not a usable image, is too large, or the
+     *                               pool is too busy to take it
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public String store(InputStream upload, String username) {
+        long started = System.nanoTime();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, ".upload-", ".part");
+            copyBounded(upload, temp);
+
+            String fileName = username + "_avatar_" + UUID.randomUUID() + ".jpg";
+            Path source = temp;
+            Future<?> job;
+            try {
+                job = pool.submit(() -> {
+                    normalize(source, fileName);
+                    return null;
+                });
+            } catch (RejectedExecutionException e) {
+                throw new BusinessRuleException("Too many avatar uploads are being processed. Please try again shortly.");
+            }
+
+            try {
+                job.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                job.cancel(true);
+                delete(fileName);
+                throw new BusinessRuleException("The avatar took too long to process.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.cancel(true);
+                delete(fileName);
+                throw new IllegalStateException("Interrupted while processing the avatar.", e);
+            } catch (ExecutionException e) {
+                delete(fileName);
+                if (e.getCause() instanceof BusinessRuleException) {
+                    throw (BusinessRuleException) e.getCause();
+                }
+                throw new IllegalStateException("Failed to process the avatar.", e.getCause());
+            }
+
+            System.out.println("AVATARS: Stored " + fileName + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms.");
+            return fileName;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store the avatar.", e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("AVATARS: Could not remove temporary upload " + temp + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * The file to serve for an avatar: the smallest copy at least {@code size} pixels wide, or
+     * the normalized avatar itself when no size is asked for, none is big enough, or the avatar
+     * predates the sized copies. Null if the avatar does not exist.
+     */
+    public Path resolve(String fileName, Integer size) {
+        if (size != null) {
+            for (int candidate : SIZES) {
+                if (candidate >= size) {
+                    Path variant = directory.resolve(variantName(fileName, candidate));
+                    if (Files.isRegularFile(variant)) {
+                        return variant;
+                    }
+                    break;
+                }
+            }
+        }
+        Path original = directory.resolve(fileName);
+        return Files.isRegularFile(original) ? original : null;
+    }
+
+    /**
+     * Removes an avatar and its sized copies.
+     */
+    public void delete(String fileName) {
+        List<Path> files = new ArrayList<>();
+        files.add(directory.resolve(fileName));
+        for (int size : SIZES) {
+            files.add(directory.resolve(variantName(fileName, size)));
+        }
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("AVATARS: Failed to delete " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    // --- Helper Methods ---
+
+    private void normalize(Path source, String fileName) throws IOException, InterruptedException {
+        BufferedImage square = decodeSquare(source);
+        writeJpeg(scale(square, Math.min(BASE_SIZE, square.getWidth())), directory.resolve(fileName));
+        // Largest first, each scaled from the previous one, keeps the small copies sharp and cheap
+        BufferedImage previous = square;
+        for (int i = SIZES.length - 1; i >= 0; i--) {
+            previous = scale(previous, Math.min(SIZES[i], square.getWidth()));
+            writeJpeg(previous, directory.resolve(variantName(fileName, SIZES[i])));
+        }
+    }
+
+    /**
+     * Decodes the centred square of the image at no more than twice the base size, reserving
+     * the decoded size from the budget for as long as the decode runs.
+     */
+    private BufferedImage decodeSquare(Path source) throws IOException, InterruptedException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new BusinessRuleException("The avatar is not a supported image.");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_PIXELS) {
+                    throw new BusinessRuleException("The avatar image is too large.");
+                }
+
+                int side = Math.min(width, height);
+                int step = Math.max(1, side / (BASE_SIZE * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle((width - side) / 2, (height - side) / 2, side, side));
+                param.setSourceSubsampling(step, step, 0, 0);
+
+                long decodedSide = (side + step - 1) / step;
+                int permits = (int) Math.max(1, decodedSide * decodedSide * 4 / 1024);
+                if (permits * 1024L > DECODE_BUDGET_BYTES) {
+                    throw new BusinessRuleException("The avatar image is too large.");
+                }
+                if (!decodeBudget.tryAcquire(permits, TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new BusinessRuleException("Too many avatar uploads are being processed. Please try again shortly.");
+                }
+                try {
+                    return reader.read(0, param);
+                } finally {
+                    decodeBudget.release(permits);
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int side) {
+        BufferedImage scaled = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG has no transparency; flatten transparent PNGs onto white
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, side, side);
+            graphics.drawImage(image, 0, 0, side, side, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        Path temp = Files.createTempFile(directory, ".variant-", ".part");
+        try {
+            if (!ImageIO.write(image, "jpg", temp.toFile())) {
+                throw new IOException("No JPEG writer available.");
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void copyBounded(InputStream upload, Path target) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        try (OutputStream output = Files.newOutputStream(target)) {
+            int read;
+            while ((read = upload.read(buffer)) != -1) {
+                size += read;
+                if (size > MAX_UPLOAD_BYTES) {
+                    throw new BusinessRuleException("The avatar must be smaller than " + (MAX_UPLOAD_BYTES / (1024 * 1024)) + " MB.");
+                }
+                output.write(buffer, 0, read);
+            }
+        }
+        if (size == 0) {
+            throw new BusinessRuleException("The avatar is empty.");
+        }
+    }
+
+    private static String variantName(String fileName, int size) {
+        int dot = fileName.lastIndexOf('.');
+        return (dot > 0 ? fileName.substring(0, dot) : fileName) + "-" + size + ".jpg";
+    }
+
+    private static Path avatarDirectory() {
+        String configured = System.getProperty("banking.avatars.dir");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        String instanceRoot = System.getProperty("com.sun.aas.instanceRoot");
+        if (instanceRoot != null) {
+            return Paths.get(instanceRoot, "applications", "banking-ear", "assets", "avatars");
+        }
+        return Paths.get(System.getProperty("user.home"), "banking_uploads", "avatars");
+    }
+}
@@ -14,5 +14,17 @@ import java.util.List;
 public interface BilllerService {
     BillerDTO createBiller(String billerName, BillerCategory category, InputStream logoStream, String fileName);
     List<BillerDTO> getAllBillers();
+
+    /**
+     * Billers in a category (all if null) and status (any if null), sorted by name, served
+     * from the in-memory directory.
+     */
+    List<BillerDTO> getBillers(BillerCategory category, BillerStatus status);
+
+    /**
+     * The ETag of {@link #getBillers} with the same arguments. Read it before the list: the
+     * list can then only be newer than the tag, never older.
+     */
+    String getBillersTag(BillerCategory category, BillerStatus status);
     void updateBillerStatus(Long billerId, BillerStatus newStatus);
 }
\ No newline at end of file
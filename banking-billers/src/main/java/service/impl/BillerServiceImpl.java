@@ -14,7 +14,9 @@ import jakarta.interceptor.Interceptors;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import service.AccountService;
+import service.BillerDirectory;
 import service.BilllerService;
+import service.DashboardStatistics;
 import util.LoggingInterceptor;
 
 import java.io.File;
@@ -35,6 +37,12 @@ public class BillerServiceImpl implements BilllerService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private BillerDirectory billerDirectory;
+
     @EJB
     private AccountService accountNumberGenerator;
 
@@ -68,18 +76,37 @@ public class BillerServiceImpl implements BilllerService {
 
         biller.setInternalAccount(billerAccount);
         em.persist(biller);
+        statistics.recordAccountOpened(billerAccount);
+        billerDirectory.refresh(biller);
 
         return new BillerDTO(biller);
     }
     @RolesAllowed({"ADMIN", "EMPLOYEE", "CUSTOMER"})
     @Override
     public List<BillerDTO> getAllBillers() {
-        return em.createQuery("SELECT b FROM Biller b ORDER BY b.billerName", Biller.class)
-                .getResultStream()
-                .map(BillerDTO::new)
+        return getBillers(null, null);
+    }
+
+    @RolesAllowed({"ADMIN", "EMPLOYEE", "CUSTOMER"})
+    @Override
+    public List<BillerDTO> getBillers(BillerCategory category, BillerStatus status) {
+        return billerDirectory.snapshot().list(category, status).stream()
+                .map(entry -> BillerDTO.builder()
+                        .id(entry.getId())
+                        .billerName(entry.getBillerName())
+                        .category(entry.getCategory())
+                        .status(entry.getStatus())
+                        .logoUrl(BillerDTO.logoApiUrl(entry.getLogoUrl()))
+                        .build())
                 .collect(Collectors.toList());
     }
 
+    @RolesAllowed({"ADMIN", "EMPLOYEE", "CUSTOMER"})
+    @Override
+    public String getBillersTag(BillerCategory category, BillerStatus status) {
+        return billerDirectory.snapshot().tag(category, status);
+    }
+
     @RolesAllowed({"ADMIN", "EMPLOYEE"})
     @Override
     public void updateBillerStatus(Long billerId, BillerStatus newStatus) {
@@ -89,6 +116,7 @@ public class BillerServiceImpl implements BilllerService {
         }
         biller.setStatus(newStatus);
         em.merge(biller);
+        billerDirectory.refresh(biller);
     }
 
     // --- Helper Methods for File Handling ---
@@ -0,0 +1,264 @@
+package service;
+
+import dto.CardAuthorizationResponseDTO;
+import entity.CardSpendCounter;
+import entity.VirtualCard;
+import enums.VirtualCardStatus;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import util.TransactionCallbacks;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Makes approve/decline decisions for card authorizations.
+ *
+ * Card details live in memory, together with the card's spend for the day as last seen by
+ * this node. That copy only rejects authorizations that clearly pass the limit without a
+ * trip to the database. The limit itself is enforced against the card's
+ * {@code card_spend_counter} row, which is locked and updated in the same transaction that
+ * places the hold, so all nodes share one counter. Approved amounts are held against the
+ * linked account by the {@link BalanceHoldLedger} until the processor captures or releases
+ * them; released amounts are taken off the counter when the release is settled.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CardAuthorizationEngine {
+
+    public static final String INVALID_CARD = "INVALID_CARD";
+    public static final String CARD_NOT_ACTIVE = "CARD_NOT_ACTIVE";
+    public static final String CARD_EXPIRED = "CARD_EXPIRED";
+    public static final String LIMIT_EXCEEDED = "LIMIT_EXCEEDED";
+    public static final String INSUFFICIENT_FUNDS = "INSUFFICIENT_FUNDS";
+
+    private static final int AMOUNT_SCALE = 4;
+    private static final long CARD_REFRESH_MILLIS = 60_000;
+    private static final String CODE_ALPHABET = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
+    private static final DateTimeFormatter EXPIRY_FORMAT = DateTimeFormatter.ofPattern("MM/yy");
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    @EJB
+    private BalanceHoldLedger balanceHolds;
+
+    private final ConcurrentMap<String, CardState> cardsByNumber = new ConcurrentHashMap<>();
+
+    public CardAuthorizationResponseDTO authorize(String cardNumber, String cvv, String expiry, BigDecimal amount, String merchantName) {
+        CardState card = card(cardNumber);
+        if (card == null || !matches(card.cvv, cvv) || !card.expiryDate.format(EXPIRY_FORMAT).equals(expiry)) {
+            return CardAuthorizationResponseDTO.declined(INVALID_CARD, amount);
+        }
+        if (card.status != VirtualCardStatus.ACTIVE) {
+            return CardAuthorizationResponseDTO.declined(CARD_NOT_ACTIVE, amount);
+        }
+        if (card.expiryDate.isBefore(LocalDate.now())) {
+            return CardAuthorizationResponseDTO.declined(CARD_EXPIRED, amount);
+        }
+
+        long units = toUnits(amount);
+        LocalDate today = LocalDate.now();
+        if (card.exceedsLimit(units, today)) {
+            return CardAuthorizationResponseDTO.declined(LIMIT_EXCEEDED, amount);
+        }
+
+        // The counter row stays locked until the hold is committed, so authorizations of the
+        // same card on any node are checked against the limit one at a time.
+        CardSpendCounter counter = lockSpendCounter(card.cardId, today);
+        long spent = today.equals(counter.getWindowDate()) ? toUnits(counter.getSpent()) : 0;
+        card.window.set(new SpendWindow(today, spent));
+        if (card.limitUnits != CardState.NO_LIMIT && spent + units > card.limitUnits) {
+            return CardAuthorizationResponseDTO.declined(LIMIT_EXCEEDED, amount);
+        }
+
+        String code = newAuthorizationCode();
+        String description = "Card payment at " + (merchantName != null ? merchantName : "unknown merchant");
+        if (!balanceHolds.place(card.accountId, card.cardId, amount, code, description)) {
+            return CardAuthorizationResponseDTO.declined(INSUFFICIENT_FUNDS, amount);
+        }
+        long spentAfter = spent + units;
+        counter.setWindowDate(today);
+        counter.setSpent(fromUnits(spentAfter));
+        counter.setUpdatedAt(LocalDateTime.now());
+        TransactionCallbacks.afterCommit(txRegistry, () -> card.window.set(new SpendWindow(today, spentAfter)));
+        return CardAuthorizationResponseDTO.approved(code, amount);
+    }
+
+    /**
+     * Applies a status or limit change to a cached card once the surrounding transaction commits.
+     */
+    public void refreshCard(VirtualCard card) {
+        if (card == null || card.getCardNumber() == null) {
+            return;
+        }
+        VirtualCardStatus status = card.getStatus();
+        long limitUnits = card.getSpendingLimit() != null ? toUnits(card.getSpendingLimit()) : CardState.NO_LIMIT;
+        TransactionCallbacks.afterCommit(txRegistry, () -> {
+            CardState cached = cardsByNumber.get(card.getCardNumber());
+            if (cached != null) {
+                cached.status = status;
+                cached.limitUnits = limitUnits;
+            }
+        });
+    }
+
+    // --- Helper Methods ---
+
+    private CardState card(String cardNumber) {
+        if (cardNumber == null) {
+            return null;
+        }
+        CardState cached = cardsByNumber.get(cardNumber);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt < CARD_REFRESH_MILLIS) {
+            return cached;
+        }
+        List<Object[]> rows = em.createQuery(
+                        "SELECT vc.id, vc.cvv, vc.expiryDate, vc.status, vc.spendingLimit, a.id " +
+                                "FROM VirtualCard vc JOIN vc.linkedAccount a WHERE vc.cardNumber = :number", Object[].class)
+                .setParameter("number", cardNumber)
+                .getResultList();
+        if (rows.isEmpty()) {
+            cardsByNumber.remove(cardNumber);
+            return null;
+        }
+        Object[] row = rows.get(0);
+        VirtualCardStatus status = (VirtualCardStatus) row[3];
+        long limitUnits = row[4] != null ? toUnits((BigDecimal) row[4]) : CardState.NO_LIMIT;
+        if (cached != null) {
+            // Pick up changes made on other nodes, including spend they added or released.
+            cached.status = status;
+            cached.limitUnits = limitUnits;
+            cached.window.set(restoredWindow(cached.cardId));
+            cached.loadedAt = System.currentTimeMillis();
+            return cached;
+        }
+        CardState loaded = new CardState((Long) row[0], (String) row[1], (LocalDate) row[2], status, limitUnits,
+                (Long) row[5], restoredWindow((Long) row[0]));
+        CardState existing = cardsByNumber.putIfAbsent(cardNumber, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private SpendWindow restoredWindow(Long cardId) {
+        CardSpendCounter counter = em.find(CardSpendCounter.class, cardId);
+        LocalDate today = LocalDate.now();
+        if (counter != null && today.equals(counter.getWindowDate())) {
+            return new SpendWindow(today, toUnits(counter.getSpent()));
+        }
+        return new SpendWindow(today, 0);
+    }
+
+    /**
+     * Locks the card's spend counter row, creating it on the card's first authorization.
+     * INSERT IGNORE is not expressible in JPQL; it lets two nodes create the row at the same
+     * time, after which both lock the one that was inserted.
+     */
+    private CardSpendCounter lockSpendCounter(long cardId, LocalDate today) {
+        CardSpendCounter counter = em.find(CardSpendCounter.class, cardId, LockModeType.PESSIMISTIC_WRITE);
+        if (counter != null) {
+            return counter;
+        }
+        em.createNativeQuery("INSERT IGNORE INTO card_spend_counter (card_id, windowDate, spent, updatedAt) VALUES (?, ?, 0, ?)")
+                .setParameter(1, cardId)
+                .setParameter(2, today)
+                .setParameter(3, LocalDateTime.now())
+                .executeUpdate();
+        return em.find(CardSpendCounter.class, cardId, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    private String newAuthorizationCode() {
+        while (true) {
+            StringBuilder code = new StringBuilder(6);
+            for (int i = 0; i < 6; i++) {
+                code.append(CODE_ALPHABET.charAt(SECURE_RANDOM.nextInt(CODE_ALPHABET.length())));
+            }
+            if (!balanceHolds.referenceExists(code.toString())) {
+                return code.toString();
+            }
+        }
+    }
+
+    private static boolean matches(String expected, String actual) {
+        if (expected == null || actual == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long toUnits(BigDecimal amount) {
+        return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal fromUnits(long units) {
+        return BigDecimal.valueOf(units, AMOUNT_SCALE);
+    }
+
+    private static final class CardState {
+        private static final long NO_LIMIT = -1;
+
+        private final long cardId;
+        private final String cvv;
+        private final LocalDate expiryDate;
+        private final long accountId;
+        private final AtomicReference<SpendWindow> window;
+        private volatile VirtualCardStatus status;
+        private volatile long limitUnits;
+        private volatile long loadedAt = System.currentTimeMillis();
+
+        CardState(long cardId, String cvv, LocalDate expiryDate, VirtualCardStatus status, long limitUnits,
+                  long accountId, SpendWindow window) {
+            this.cardId = cardId;
+            this.cvv = cvv;
+            this.expiryDate = expiryDate;
+            this.status = status;
+            this.limitUnits = limitUnits;
+            this.accountId = accountId;
+            this.window = new AtomicReference<>(window);
+        }
+
+        /**
+         * Whether the amount would pass the daily limit going by the spend this node last saw.
+         * Only used to decline early; approvals are decided against the database counter.
+         */
+        boolean exceedsLimit(long units, LocalDate today) {
+            SpendWindow current = window.get();
+            long spent = current.date.equals(today) ? current.spentUnits : 0;
+            long limit = limitUnits;
+            return limit != NO_LIMIT && spent + units > limit;
+        }
+    }
+
+    private static final class SpendWindow {
+        private final LocalDate date;
+        private final long spentUnits;
+
+        SpendWindow(LocalDate date, long spentUnits) {
+            this.date = date;
+            this.spentUnits = spentUnits;
+        }
+    }
+}
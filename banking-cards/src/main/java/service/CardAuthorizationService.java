@@ -0,0 +1,24 @@
+package service;
+
+import dto.CardAuthorizationRequestDTO;
+import dto.CardAuthorizationResponseDTO;
+import jakarta.ejb.Local;
+
+import java.math.BigDecimal;
+
+@Local
+public interface CardAuthorizationService {
+
+    CardAuthorizationResponseDTO authorize(CardAuthorizationRequestDTO request);
+
+    /**
+     * Settles an approved authorization for the given amount, or the full amount if null.
+     * The account is debited shortly afterwards, together with other captures.
+     */
+    void capture(String authorizationCode, BigDecimal amount);
+
+    /**
+     * Cancels an approved authorization and frees its held funds.
+     */
+    void release(String authorizationCode);
+}
@@ -0,0 +1,49 @@
+package service;
+
+import dto.CardAuthorizationRequestDTO;
+import dto.CardAuthorizationResponseDTO;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Stateless;
+
+import java.math.BigDecimal;
+
+@Stateless
+@RolesAllowed("CARD_PROCESSOR")
+public class CardAuthorizationServiceImpl implements CardAuthorizationService {
+
+    @EJB
+    private CardAuthorizationEngine engine;
+
+    @EJB
+    private BalanceHoldLedger balanceHolds;
+
+    @Override
+    public CardAuthorizationResponseDTO authorize(CardAuthorizationRequestDTO request) {
+        if (request == null || request.getCardNumber() == null || request.getAmount() == null) {
+            throw new IllegalArgumentException("Card number and amount are required.");
+        }
+        if (request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Authorization amount must be positive.");
+        }
+
+        CardAuthorizationResponseDTO response = engine.authorize(
+                request.getCardNumber().replace(" ", ""), request.getCvv(), request.getExpiryDate(), request.getAmount(),
+                request.getMerchantName());
+        if (!response.isApproved()) {
+            System.out.println("CARD AUTH: Declined " + request.getAmount() + " at '" + request.getMerchantName()
+                    + "': " + response.getDeclineReason());
+        }
+        return response;
+    }
+
+    @Override
+    public void capture(String authorizationCode, BigDecimal amount) {
+        balanceHolds.capture(authorizationCode, amount);
+    }
+
+    @Override
+    public void release(String authorizationCode) {
+        balanceHolds.release(authorizationCode);
+    }
+}
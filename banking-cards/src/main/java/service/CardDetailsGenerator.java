@@ -1,39 +1,94 @@
 package service;
 
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Singleton;
-import jakarta.persistence.*;
+
+import java.security.SecureRandom;
 import java.time.LocalDate;
-import java.util.Random;
 
+/**
+ * Generates virtual card details.
+ *
+ * Card numbers are "4" (Visa), fourteen payload digits and a Luhn check digit. The payload
+ * is a fixed permutation of a block-reserved sequence number, so numbers are unique by
+ * construction without probing the database, yet do not look consecutive. The permutation
+ * keys must never change, or new numbers could repeat earlier ones.
+ */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class CardDetailsGenerator {
-    @PersistenceContext(unitName = "bankingPU")
-    private EntityManager em;
-
-    public synchronized String generateNewCardNumber() {
-        Random random = new Random();
-        String cardNumber;
-        do {
-            StringBuilder builder = new StringBuilder("4"); // Visa
-            for (int i = 0; i < 15; i++) {
-                builder.append(random.nextInt(10));
-            }
-            cardNumber = builder.toString();
-        } while (cardNumberExists(cardNumber));
-        return cardNumber;
+
+    private static final String CARD_NUMBER_SEQUENCE = "card_number";
+    private static final int CARD_NUMBER_BLOCK_SIZE = 1000;
+    private static final String VISA_PREFIX = "4";
+
+    // The payload is two halves of seven digits each, permuted with a four-round Feistel network.
+    private static final long HALF_MODULUS = 10_000_000L;
+    private static final long[] ROUND_KEYS = {
+            0x5DEECE66DL, 0x2545F4914F6CDD1DL, 0x9E3779B97F4A7C15L, 0xD1B54A32D192ED03L
+    };
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    @EJB
+    private SequenceAllocator sequenceAllocator;
+
+    public String generateNewCardNumber() {
+        long sequence = sequenceAllocator.next(CARD_NUMBER_SEQUENCE, CARD_NUMBER_BLOCK_SIZE, () -> 0L);
+        String body = VISA_PREFIX + String.format("%014d", permute(sequence));
+        return body + luhnCheckDigit(body);
     }
 
     public String generateCvv() {
-        return String.format("%03d", new Random().nextInt(1000));
+        return String.format("%03d", SECURE_RANDOM.nextInt(1000));
     }
 
     public LocalDate generateExpiryDate() {
         return LocalDate.now().plusYears(5);
     }
 
-    private boolean cardNumberExists(String cardNumber) {
-        return em.createQuery("SELECT COUNT(vc) FROM VirtualCard vc WHERE vc.cardNumber = :number", Long.class)
-                .setParameter("number", cardNumber)
-                .getSingleResult() > 0;
+    // --- Helper Methods ---
+
+    /**
+     * A bijection on [0, 10^14): distinct sequence numbers always give distinct payloads.
+     */
+    static long permute(long value) {
+        if (value < 0 || value >= HALF_MODULUS * HALF_MODULUS) {
+            throw new IllegalStateException("Card number sequence exhausted.");
+        }
+        long left = value / HALF_MODULUS;
+        long right = value % HALF_MODULUS;
+        for (long key : ROUND_KEYS) {
+            long mixed = (left + round(key, right)) % HALF_MODULUS;
+            left = right;
+            right = mixed;
+        }
+        return left * HALF_MODULUS + right;
+    }
+
+    private static long round(long key, long half) {
+        // SplitMix64 finaliser: a cheap, well-distributed mix of the key and the half.
+        long z = key ^ (half * 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return Math.floorMod(z, HALF_MODULUS);
+    }
+
+    static int luhnCheckDigit(String digits) {
+        int sum = 0;
+        boolean doubleIt = true; // The digit next to the check digit is doubled.
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubleIt) {
+                digit *= 2;
+                if (digit > 9) digit -= 9;
+            }
+            sum += digit;
+            doubleIt = !doubleIt;
+        }
+        return (10 - sum % 10) % 10;
     }
-}
\ No newline at end of file
+}
@@ -38,9 +38,15 @@ public class VirtualCardServiceImpl implements VirtualCardService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
     @EJB
     private CardDetailsGenerator cardDetailsGenerator;
 
+    @EJB
+    private CardAuthorizationEngine authorizationEngine;
+
     @Override
     public VirtualCardDTO createVirtualCard(String username, CreateVirtualCardDTO dto) {
         Account linkedAccount = findAccountByNumber(dto.getFromAccountNumber());
@@ -108,6 +114,7 @@ public List<VirtualCardDTO> getVirtualCardsForUser(String username) {
         }
         card.setStatus(VirtualCardStatus.FROZEN);
         em.merge(card);
+        authorizationEngine.refreshCard(card);
         return new VirtualCardDTO(card);
     }
 
@@ -119,6 +126,7 @@ public List<VirtualCardDTO> getVirtualCardsForUser(String username) {
         }
         card.setStatus(VirtualCardStatus.ACTIVE);
         em.merge(card);
+        authorizationEngine.refreshCard(card);
         return new VirtualCardDTO(card);
     }
 
@@ -130,6 +138,7 @@ public List<VirtualCardDTO> getVirtualCardsForUser(String username) {
         }
         card.setStatus(VirtualCardStatus.TERMINATED);
         em.merge(card);
+        authorizationEngine.refreshCard(card);
     }
 
     @Override
@@ -140,6 +149,7 @@ public List<VirtualCardDTO> getVirtualCardsForUser(String username) {
         }
         card.setSpendingLimit(newLimit);
         em.merge(card);
+        authorizationEngine.refreshCard(card);
         return new VirtualCardDTO(card);
     }
 
@@ -201,12 +211,10 @@ public List<VirtualCardDTO> getVirtualCardsForUser(String username) {
     }
 
     private User findUserByUsername(String username) {
-        try {
-            return em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
-                    .setParameter("username", username).getSingleResult();
-        } catch (NoResultException e) {
-            throw new IllegalArgumentException("User with username " + username + " not found.");
-        }
+        UserPrincipalCache.Entry principal = userPrincipalCache.resolve(username)
+                .orElseThrow(() -> new IllegalArgumentException("User with username " + username + " not found."));
+        // Served by the shared entity cache when the user was loaded recently.
+        return em.find(User.class, principal.getId());
     }
 
     private VirtualCard findUserCardById(String username, Long cardId) {
@@ -6,6 +6,7 @@ import entity.Account;
 import entity.KycDocument;
 import entity.Transaction;
 import entity.User;
+import enums.TransactionStatus;
 import enums.TransactionType;
 
 import com.itextpdf.html2pdf.ConverterProperties;
@@ -38,6 +39,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
@@ -52,6 +54,9 @@ public class DocumentGenerationServiceImpl implements DocumentGenerationService
     @EJB
     private TransactionService transactionService;
 
+    @EJB
+    private LedgerService ledgerService;
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("hh:mm:ss a");
     private static final DecimalFormat CURRENCY_FORMAT = new DecimalFormat("$ #,##0.00");
@@ -132,7 +137,17 @@ public class DocumentGenerationServiceImpl implements DocumentGenerationService
         template = template.replace("{{account_type}}", account.getAccountType().toString() + " ACCOUNT");
         template = template.replace("{{statement_date}}", endDate.format(DATE_FORMATTER));
 
-        BigDecimal openingBalance = calculateOpeningBalance(account, transactions);
+        // Transactions from before the ledger existed have no entries, so periods reaching back
+        // to them are worked out from the transactions' running balances as before.
+        LocalDateTime periodStart = startDate.atStartOfDay();
+        LocalDateTime periodEnd = endDate.plusDays(1).atStartOfDay();
+        LocalDateTime lastUnposted = ledgerService.lastUnpostedTransactionAt(account.getId());
+        BigDecimal openingBalance = lastUnposted == null || lastUnposted.isBefore(periodStart)
+                ? ledgerService.balanceAsOf(account.getId(), periodStart)
+                : calculateOpeningBalance(account, transactions);
+        BigDecimal closingBalance = lastUnposted == null || lastUnposted.isBefore(periodEnd)
+                ? ledgerService.balanceAsOf(account.getId(), periodEnd)
+                : openingBalance.add(calculateNetChange(transactions, account));
         BigDecimal totalDeposits = calculateTotalByType(transactions, account, false);
         BigDecimal totalWithdrawals = calculateTotalByType(transactions, account, true);
         BigDecimal interestEarned = calculateTotalByType(transactions, TransactionType.INTEREST_PAYOUT);
@@ -145,7 +160,7 @@ public class DocumentGenerationServiceImpl implements DocumentGenerationService
         template = template.replace("{{service_charges}}", CURRENCY_FORMAT.format(serviceCharges));
         template = template.replace("{{interest_earned}}", CURRENCY_FORMAT.format(interestEarned));
         template = template.replace("{{ending_balance_date}}", endDate.format(DATE_FORMATTER));
-        template = template.replace("{{ending_balance}}", CURRENCY_FORMAT.format(account.getBalance()));
+        template = template.replace("{{ending_balance}}", CURRENCY_FORMAT.format(closingBalance));
 
         StringBuilder rowsHtml = new StringBuilder();
         if (transactions.isEmpty()) {
@@ -230,6 +245,12 @@ public class DocumentGenerationServiceImpl implements DocumentGenerationService
         return isDebit(firstTx, account) ? runningBalance.add(firstTxAmount) : runningBalance.subtract(firstTxAmount);
     }
 
+    private BigDecimal calculateNetChange(List<Transaction> transactions, Account account) {
+        return transactions.stream()
+                .map(tx -> isDebit(tx, account) ? tx.getAmount().negate() : tx.getAmount())
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
     private BigDecimal calculateTotalByType(List<Transaction> transactions, Account account, boolean isDebit) {
         return transactions.stream()
                 .filter(tx -> isDebit(tx, account) == isDebit && tx.getTransactionType() != TransactionType.INTEREST_PAYOUT)
@@ -253,9 +274,11 @@ public class DocumentGenerationServiceImpl implements DocumentGenerationService
 
     private List<Transaction> findTransactionsForStatement(Account account, LocalDate startDate, LocalDate endDate) {
         TypedQuery<Transaction> query = em.createQuery(
-                "SELECT t FROM Transaction t WHERE (t.fromAccount = :account OR t.toAccount = :account) " +
+                "SELECT t FROM Transaction t LEFT JOIN FETCH t.fromAccount " +
+                        "WHERE (t.fromAccount = :account OR t.toAccount = :account) AND t.status = :completed " +
                         "AND t.transactionDate >= :startDateTime AND t.transactionDate < :endDateTime ORDER BY t.transactionDate ASC", Transaction.class);
         query.setParameter("account", account);
+        query.setParameter("completed", TransactionStatus.COMPLETED);
         query.setParameter("startDateTime", startDate.atStartOfDay());
         query.setParameter("endDateTime", endDate.plusDays(1).atStartOfDay());
         return query.getResultList();
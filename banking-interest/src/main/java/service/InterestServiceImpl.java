@@ -6,6 +6,7 @@ import enums.AccountType;
 import enums.TransactionStatus;
 import enums.TransactionType;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.TransactionAttribute;
 import jakarta.ejb.TransactionAttributeType;
@@ -31,6 +32,15 @@ public class InterestServiceImpl implements InterestService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private LedgerService ledgerService;
+
+    @EJB
+    private BalanceEngine balanceEngine;
+
 
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
@@ -76,6 +86,11 @@ public class InterestServiceImpl implements InterestService {
         List<Account> accountsToPay = findAccountsWithUnpaidAccruals();
 
         for (Account account : accountsToPay) {
+            if (balanceEngine.isClaimed(account)) {
+                // Only the engine may credit it; the accruals stay unpaid until the account is released.
+                System.out.println("INTEREST SERVICE: Skipping payout for account " + account.getAccountNumber() + ", served by the balance engine.");
+                continue;
+            }
             // 1. Calculate the total interest to be paid by SUMMING the unpaid records.
             BigDecimal totalPayout = calculateTotalUnpaidInterestFor(account);
 
@@ -102,6 +117,8 @@ public class InterestServiceImpl implements InterestService {
                 log.setRunningBalance(account.getBalance()); // Store the new balance after the payout.
 
                 em.persist(log); // Save the new transaction record to the database.
+                ledgerService.post(log);
+                statistics.recordTransaction(log);
 
                 markAccrualsAsPaidFor(account);
             }
@@ -0,0 +1,417 @@
+package service;
+
+import exception.BusinessRuleException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import util.TransactionCallbacks;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content-addressed store for KYC identity photos.
+ *
+ * An upload is streamed into a temporary file inside the store while its SHA-256 is computed,
+ * then moved atomically to {@code <sha256>.<ext>}, so a half-written photo is never visible
+ * under its final name and a photo uploaded twice is kept once. The thumbnail and preview
+ * reviewers look at are made afterwards on a small bounded pool; when the pool is busy they
+ * are made the first time a reviewer asks for them instead.
+ *
+ * The store lives in {@code -Dbanking.kyc.storeDir}, by default the directory the reviewer
+ * endpoints have always served from, so photos stored before the move still resolve.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class KycImageStore {
+
+    private static final long MAX_IMAGE_BYTES = Long.getLong("banking.kyc.maxImageBytes", 20L * 1024 * 1024);
+    private static final int VARIANT_THREADS = Integer.getInteger("banking.kyc.variantThreads", 2);
+    private static final int VARIANT_QUEUE = Integer.getInteger("banking.kyc.variantQueue", 64);
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final Set<String> EXTENSIONS = Set.of("png", "jpg", "jpeg", "gif");
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private Path root;
+    private Path incoming;
+    private Path variants;
+    private ThreadPoolExecutor pool;
+
+    /**
+     * A reduced copy of a photo for the review screens, always a JPEG.
+     */
+    public enum Variant {
+        THUMB(320),
+        PREVIEW(1280);
+
+        private final int maxEdge;
+
+        Variant(int maxEdge) {
+            this.maxEdge = maxEdge;
+        }
+
+        public static Variant fromParameter(String value) {
+            return value == null || value.isBlank() ? null : valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        root = storeDirectory();
+        incoming = root.resolve(".incoming");
+        variants = root.resolve(".variants");
+        try {
+            Files.createDirectories(incoming);
+            Files.createDirectories(variants);
+            // Anything left here was an upload interrupted by a shutdown; it was never referenced
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(incoming)) {
+                for (Path leftover : leftovers) {
+                    Files.deleteIfExists(leftover);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare the KYC image store in " + root, e);
+        }
+
+        pool = new ThreadPoolExecutor(VARIANT_THREADS, VARIANT_THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(VARIANT_QUEUE), threadFactory);
+        System.out.println("KYC STORE: Storing KYC images in " + root + ".");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Streams an uploaded photo into the store and queues its variants.
+     *
+     * @return the stored file name, {@code <sha256>.<ext>}
+     * @throws BusinessRuleException if the file type is not supported or the photo is too large
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public String store(InputStream upload, String originalFileName) {
+        String extension = extensionOf(originalFileName);
+        if (extension == null || !EXTENSIONS.contains(extension)) {
+            throw new BusinessRuleException("Unsupported image format. Use PNG, JPEG or GIF.");
+        }
+
+        long started = System.nanoTime();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(incoming, "upload-", ".part");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = 0;
+            try (ReadableByteChannel source = Channels.newChannel(upload);
+                 FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    size += buffer.remaining();
+                    if (size > MAX_IMAGE_BYTES) {
+                        throw new BusinessRuleException("Image is larger than " + (MAX_IMAGE_BYTES / (1024 * 1024)) + " MB.");
+                    }
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                if (size == 0) {
+                    throw new BusinessRuleException("Image is empty.");
+                }
+                target.force(true);
+            }
+
+            String hash = toHex(digest.digest());
+            String fileName = hash + "." + extension;
+            Path destination = root.resolve(fileName);
+            boolean duplicate = Files.exists(destination);
+            if (duplicate) {
+                Files.delete(temp);
+            } else {
+                try {
+                    Files.move(temp, destination, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // The same photo arrived concurrently; its bytes are already in place
+                    Files.delete(temp);
+                    duplicate = true;
+                }
+            }
+
+            System.out.println("KYC STORE: Stored " + fileName + " (" + size + " bytes, "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms" + (duplicate ? ", duplicate" : "") + ").");
+            queueVariants(fileName);
+            return fileName;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store KYC image.", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("KYC STORE: Could not remove temporary upload " + temp + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * The stored photo with this file name, or null if there is none. Accepts the bare file
+     * name as well as the full path older KYC documents recorded.
+     */
+    public Path resolve(String storedName) {
+        String fileName = fileNameOf(storedName);
+        if (fileName == null) {
+            return null;
+        }
+        Path path = root.resolve(fileName);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    /**
+     * The requested variant of a stored photo, or null if it is not ready yet (it is queued,
+     * and the caller can fall back to the original).
+     */
+    public Path variant(String storedName, Variant variant) {
+        String fileName = fileNameOf(storedName);
+        if (fileName == null) {
+            return null;
+        }
+        Path path = variantPath(fileName, variant);
+        if (Files.isRegularFile(path)) {
+            return path;
+        }
+        queueVariants(fileName);
+        return null;
+    }
+
+    /**
+     * Removes a stored photo and its variants once the caller's transaction commits, unless
+     * another KYC document still refers to it: a photo uploaded twice is stored once, so a
+     * resubmission or another applicant may share it. Call it after the document that used
+     * the photo has been removed; if the transaction rolls back, the photo is kept.
+     */
+    public void deleteIfUnreferenced(String storedName) {
+        String fileName = fileNameOf(storedName);
+        if (fileName == null) {
+            return;
+        }
+        // Older rows hold full paths, so match on the file name at the end
+        Long references = em.createQuery(
+                        "SELECT COUNT(k) FROM KycDocument k WHERE k.idFrontPhotoPath LIKE :name OR k.idBackPhotoPath LIKE :name", Long.class)
+                .setParameter("name", "%" + fileName)
+                .getSingleResult();
+        if (references > 0) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(txRegistry, () -> {
+            try {
+                Files.deleteIfExists(root.resolve(fileName));
+                for (Variant variant : Variant.values()) {
+                    Files.deleteIfExists(variantPath(fileName, variant));
+                }
+            } catch (IOException e) {
+                System.err.println("KYC STORE: Failed to delete " + fileName + ": " + e.getMessage());
+            }
+        });
+    }
+
+    public Path directory() {
+        return root;
+    }
+
+    // --- Helper Methods ---
+
+    private void queueVariants(String fileName) {
+        if (!pending.add(fileName)) {
+            return;
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    makeVariants(fileName);
+                } finally {
+                    pending.remove(fileName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(fileName);
+            System.out.println("KYC STORE: Variant queue is full; variants of " + fileName + " will be made on first view.");
+        }
+    }
+
+    private void makeVariants(String fileName) {
+        Path original = root.resolve(fileName);
+        long started = System.nanoTime();
+        try {
+            BufferedImage image = decode(original, Variant.PREVIEW.maxEdge);
+            if (image == null) {
+                System.err.println("KYC STORE: " + fileName + " could not be decoded; no variants made.");
+                return;
+            }
+            for (Variant variant : Variant.values()) {
+                Path target = variantPath(fileName, variant);
+                if (Files.exists(target)) {
+                    continue;
+                }
+                Path temp = Files.createTempFile(incoming, "variant-", ".part");
+                try {
+                    ImageIO.write(scale(image, variant.maxEdge), "jpg", temp.toFile());
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            System.out.println("KYC STORE: Made variants of " + fileName + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms.");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("KYC STORE: Failed to make variants of " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes the image at roughly the resolution needed for {@code maxEdge}, skipping rows
+     * and columns while reading, so a large phone photo is never held in memory at full size.
+     */
+    private static BufferedImage decode(Path file, int maxEdge) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longest / maxEdge);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int maxEdge) {
+        double factor = Math.min(1.0, (double) maxEdge / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG has no transparency; flatten transparent PNGs and GIFs onto white
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private Path variantPath(String fileName, Variant variant) {
+        int dot = fileName.lastIndexOf('.');
+        String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return variants.resolve(base + "-" + variant.name().toLowerCase(Locale.ROOT) + ".jpg");
+    }
+
+    private static String fileNameOf(String storedName) {
+        if (storedName == null) {
+            return null;
+        }
+        String fileName = storedName.substring(Math.max(storedName.lastIndexOf('/'), storedName.lastIndexOf('\\')) + 1);
+        if (fileName.isEmpty() || fileName.startsWith(".") || fileName.contains("..")) {
+            return null;
+        }
+        return fileName;
+    }
+
+    private static String extensionOf(String fileName) {
+        if (fileName == null || fileName.lastIndexOf('.') < 0) {
+            return null;
+        }
+        return fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static Path storeDirectory() {
+        String configured = System.getProperty("banking.kyc.storeDir");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        String instanceRoot = System.getProperty("com.sun.aas.instanceRoot");
+        if (instanceRoot != null) {
+            return Paths.get(instanceRoot, "applications", "banking-ear", "assets", "kyc");
+        }
+        return Paths.get(System.getProperty("user.home"), "banking_uploads", "kyc_images");
+    }
+}
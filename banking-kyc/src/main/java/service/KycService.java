@@ -1,15 +1,20 @@
 package service;
 
 import dto.KycDocumentDto;
+import entity.KycDocument;
 import jakarta.ejb.Local;
 
-import java.io.InputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Local
 public interface KycService {
 
+    /**
+     * Records a KYC submission. The photos are the file names {@link KycImageStore#store}
+     * returned for them.
+     */
     void submitKyc(
             String username,
             String fullName,
@@ -20,10 +25,8 @@ public interface KycService {
             String city,
             String postalCode,
             String country,
-            InputStream idFrontPhotoStream,
-            String idFrontPhotoFileName,
-            InputStream idBackPhotoStream,
-            String idBackPhotoFileName
+            String idFrontPhotoFile,
+            String idBackPhotoFile
     );
 
     // Methods for retrieving KYC data
@@ -38,4 +41,38 @@ public interface KycService {
     List<KycDocumentDto> getKycDocumentsPaginated(int page, int size);
 
     long getKycDocumentsCount();
+
+    // Review queue
+
+    /**
+     * One page of the documents in a review status, oldest submission first. Pass the
+     * {@code submittedAt} and {@code id} of the last document of the previous page to get the
+     * next one, or nulls for the first page.
+     */
+    List<KycDocumentDto> getReviewQueue(String status, LocalDateTime afterSubmittedAt, Long afterId, int size);
+
+    /**
+     * Claims up to {@code size} pending documents for a reviewer, oldest first, skipping those
+     * another reviewer holds. Documents the reviewer already holds are returned again with
+     * their lease renewed.
+     */
+    List<KycDocumentDto> claimForReview(String reviewer, int size);
+
+    /**
+     * Gives a claimed document back to the queue.
+     *
+     * @return false if the reviewer did not hold it
+     */
+    boolean releaseClaim(Long documentId, String reviewer);
+
+    /**
+     * Refuses a review decision on a document another reviewer holds a live claim on.
+     */
+    void checkReviewer(KycDocument document, String reviewer);
+
+    /**
+     * The number of documents in a review status (any status if null), from the maintained
+     * counters.
+     */
+    long getKycDocumentsCount(String status);
 }
\ No newline at end of file
@@ -4,55 +4,47 @@ import dto.KycDocumentDto;
 import entity.KycDocument;
 import entity.User;
 import enums.KycStatus;
+import exception.BusinessRuleException;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.interceptor.Interceptors;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.NoResultException;
-import jakarta.servlet.ServletContext;
-import jakarta.annotation.Resource;
 import util.LoggingInterceptor;
 
-import java.io.File;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Stateless
 @Interceptors(LoggingInterceptor.class)
 public class KycServiceImpl implements KycService {
 
+    // A claimed document goes back to the queue if its reviewer does not decide within this time
+    private static final long CLAIM_LEASE_MINUTES = Long.getLong("banking.kyc.claimLeaseMinutes", 30);
+
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
-    // Method to get the webapp's real path for file uploads
-    private String getWebappKycDirectory() {
-        // This will resolve to the actual webapp directory in the deployed application
-        // For development: typically target/banking-web-1.0/assets/kyc/
-        // For production: the deployed WAR's assets/kyc/ directory
-        String webappPath = System.getProperty("com.sun.aas.instanceRoot");
-        if (webappPath != null) {
-            // Payara/GlassFish specific path
-            return webappPath + "/applications/banking-ear/assets/kyc/";
-        } else {
-            // Fallback to a local directory
-            return "C:\\banking_uploads\\kyc_images\\";
-        }
-    }
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
+    @EJB
+    private KycImageStore imageStore;
 
     @Override
     public void submitKyc(
             String username, String fullName, LocalDate dateOfBirth, String nationality,
             String idNumber, String address, String city, String postalCode, String country,
-            InputStream idFrontPhotoStream, String idFrontPhotoFileName,
-            InputStream idBackPhotoStream, String idBackPhotoFileName) {
+            String idFrontPhotoFile, String idBackPhotoFile) {
 
         // Find the user
         TypedQuery<User> userQuery = em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class);
@@ -63,11 +55,12 @@ public class KycServiceImpl implements KycService {
             throw new IllegalStateException("KYC is already verified for this user.");
         }
 
-        try {
-            // 1. Save the uploaded files to the server's file system
-            String frontPhotoSavedName = saveFile(idFrontPhotoStream, idFrontPhotoFileName, username);
-            String backPhotoSavedName = saveFile(idBackPhotoStream, idBackPhotoFileName, username);
+        // 1. The photos were streamed into the image store before this transaction began
+        if (imageStore.resolve(idFrontPhotoFile) == null || imageStore.resolve(idBackPhotoFile) == null) {
+            throw new BusinessRuleException("KYC photos were not uploaded.");
+        }
 
+        try {
             // 2. Create and populate the KycDocument entity
             KycDocument kycDoc = new KycDocument();
             kycDoc.setUser(user);
@@ -79,41 +72,29 @@ public class KycServiceImpl implements KycService {
             kycDoc.setCity(city);
             kycDoc.setPostalCode(postalCode);
             kycDoc.setCountry(country);
-            kycDoc.setIdFrontPhotoPath(frontPhotoSavedName);
-            kycDoc.setIdBackPhotoPath(backPhotoSavedName);
+            kycDoc.setIdFrontPhotoPath(idFrontPhotoFile);
+            kycDoc.setIdBackPhotoPath(idBackPhotoFile);
             kycDoc.setSubmittedAt(LocalDateTime.now());
+            kycDoc.setReviewStatus(KycStatus.PENDING);
 
             // 3. Save the KYC document record to the database
             em.persist(kycDoc);
 
             // 4. Update the user's status to indicate KYC is pending review
             // (It's already PENDING by default, but this is explicit)
+            KycStatus previousKycStatus = user.getKycStatus();
             user.setKycStatus(KycStatus.PENDING);
             em.merge(user);
+            statistics.recordKycStatusChange(previousKycStatus, KycStatus.PENDING);
+            statistics.recordKycDocumentChange(null, KycStatus.PENDING);
+            userPrincipalCache.invalidate(user.getUsername());
 
         } catch (Exception e) {
-            // In a real app, you would have rollback logic for the saved files
+            // The stored photos stay; they are content-addressed, so a retried submission reuses them
             throw new RuntimeException("Failed to process KYC submission.", e);
         }
     }
 
-    private String saveFile(InputStream inputStream, String originalFileName, String username) throws Exception {
-        // Create a unique filename to avoid conflicts
-        String extension = originalFileName.substring(originalFileName.lastIndexOf("."));
-        String uniqueFileName = username + "_" + UUID.randomUUID().toString() + extension;
-
-        // Ensure the upload directory exists
-        File uploadDir = new File(getWebappKycDirectory());
-        if (!uploadDir.exists()) {
-            uploadDir.mkdirs();
-        }
-
-        java.nio.file.Path destination = Paths.get(getWebappKycDirectory() + uniqueFileName);
-        Files.copy(inputStream, destination, StandardCopyOption.REPLACE_EXISTING);
-
-        return destination.toString(); // Return the full path to store in the DB
-    }
-
     @Override
     public List<KycDocumentDto> getAllKycDocuments() {
         TypedQuery<KycDocument> query = em.createQuery(
@@ -184,11 +165,90 @@ public class KycServiceImpl implements KycService {
 
     @Override
     public long getKycDocumentsCount() {
-        TypedQuery<Long> query = em.createQuery(
-            "SELECT COUNT(k) FROM KycDocument k",
-            Long.class
+        return statistics.kycDocumentCount(null);
+    }
+
+    @Override
+    public List<KycDocumentDto> getReviewQueue(String status, LocalDateTime afterSubmittedAt, Long afterId, int size) {
+        KycStatus reviewStatus = parseStatus(status);
+        boolean firstPage = afterSubmittedAt == null || afterId == null;
+        // Keyset pagination: seeks along idx_kyc_document_queue instead of skipping rows
+        TypedQuery<KycDocument> query = em.createQuery(
+            "SELECT k FROM KycDocument k JOIN FETCH k.user u WHERE k.reviewStatus = :status" +
+                (firstPage ? "" : " AND (k.submittedAt > :after OR (k.submittedAt = :after AND k.id > :afterId))") +
+                " ORDER BY k.submittedAt, k.id",
+            KycDocument.class
         );
-        return query.getSingleResult();
+        query.setParameter("status", reviewStatus);
+        if (!firstPage) {
+            query.setParameter("after", afterSubmittedAt);
+            query.setParameter("afterId", afterId);
+        }
+        query.setMaxResults(size);
+        return convertToDto(query.getResultList());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<KycDocumentDto> claimForReview(String reviewer, int size) {
+        LocalDateTime now = LocalDateTime.now();
+        // SKIP LOCKED is not expressible in JPQL; two reviewers claiming at once get different documents.
+        List<Number> claimable = em.createNativeQuery(
+                "SELECT id FROM kyc_document WHERE review_status = ? " +
+                    "AND (claimed_at IS NULL OR claimed_at < ? OR claimed_by = ?) " +
+                    "ORDER BY submittedAt, id LIMIT ? FOR UPDATE SKIP LOCKED")
+            .setParameter(1, KycStatus.PENDING.name())
+            .setParameter(2, now.minusMinutes(CLAIM_LEASE_MINUTES))
+            .setParameter(3, reviewer)
+            .setParameter(4, size)
+            .getResultList();
+        if (claimable.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = claimable.stream().map(Number::longValue).collect(Collectors.toList());
+        em.createQuery("UPDATE KycDocument k SET k.claimedBy = :reviewer, k.claimedAt = :now WHERE k.id IN :ids")
+            .setParameter("reviewer", reviewer)
+            .setParameter("now", now)
+            .setParameter("ids", ids)
+            .executeUpdate();
+        return convertToDto(em.createQuery(
+                "SELECT k FROM KycDocument k JOIN FETCH k.user u WHERE k.id IN :ids ORDER BY k.submittedAt, k.id",
+                KycDocument.class)
+            .setParameter("ids", ids)
+            .getResultList());
+    }
+
+    @Override
+    public boolean releaseClaim(Long documentId, String reviewer) {
+        return em.createQuery(
+                "UPDATE KycDocument k SET k.claimedBy = NULL, k.claimedAt = NULL WHERE k.id = :id AND k.claimedBy = :reviewer")
+            .setParameter("id", documentId)
+            .setParameter("reviewer", reviewer)
+            .executeUpdate() > 0;
+    }
+
+    @Override
+    public void checkReviewer(KycDocument document, String reviewer) {
+        em.lock(document, LockModeType.PESSIMISTIC_WRITE);
+        String holder = document.getClaimedBy();
+        boolean leaseLive = document.getClaimedAt() != null
+            && document.getClaimedAt().isAfter(LocalDateTime.now().minusMinutes(CLAIM_LEASE_MINUTES));
+        if (holder != null && leaseLive && !holder.equals(reviewer)) {
+            throw new BusinessRuleException("This KYC document is being reviewed by " + holder + ".");
+        }
+    }
+
+    @Override
+    public long getKycDocumentsCount(String status) {
+        return statistics.kycDocumentCount(status != null ? parseStatus(status) : null);
+    }
+
+    private KycStatus parseStatus(String status) {
+        try {
+            return KycStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid KYC status: " + status);
+        }
     }
 
     private List<KycDocumentDto> convertToDto(List<KycDocument> documents) {
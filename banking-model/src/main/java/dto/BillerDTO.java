@@ -27,11 +27,17 @@ public class BillerDTO {
         this.billerName = biller.getBillerName();
         this.category = biller.getCategory();
         this.status = biller.getStatus();
-        if (biller.getLogoUrl() != null && !biller.getLogoUrl().isEmpty()) {
-            this.logoUrl = "/api/biller/logo/image/" + biller.getLogoUrl();
-        } else {
-            this.logoUrl = null;
+        this.logoUrl = logoApiUrl(biller.getLogoUrl());
+    }
+
+    /**
+     * The API URL of a stored logo file name, or null if there is none.
+     */
+    public static String logoApiUrl(String logoFileName) {
+        if (logoFileName != null && !logoFileName.isEmpty()) {
+            return "/api/biller/logo/image/" + logoFileName;
         }
+        return null;
     }
 
 
@@ -0,0 +1,20 @@
+package dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * An authorization request from the card-processing partner.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardAuthorizationRequestDTO {
+    private String cardNumber;
+    private String cvv;
+    private String expiryDate; // Formatted as "MM/yy", as printed on the card
+    private BigDecimal amount;
+    private String merchantName;
+}
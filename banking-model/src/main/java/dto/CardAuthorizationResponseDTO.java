@@ -0,0 +1,27 @@
+package dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * The approve or decline decision returned to the card-processing partner.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardAuthorizationResponseDTO {
+    private boolean approved;
+    private String authorizationCode; // Set only when approved
+    private String declineReason;     // Set only when declined, e.g. "INSUFFICIENT_FUNDS"
+    private BigDecimal amount;
+
+    public static CardAuthorizationResponseDTO approved(String authorizationCode, BigDecimal amount) {
+        return new CardAuthorizationResponseDTO(true, authorizationCode, null, amount);
+    }
+
+    public static CardAuthorizationResponseDTO declined(String declineReason, BigDecimal amount) {
+        return new CardAuthorizationResponseDTO(false, null, declineReason, amount);
+    }
+}
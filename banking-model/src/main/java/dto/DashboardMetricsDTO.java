@@ -0,0 +1,33 @@
+package dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * The live figures pushed to admin dashboards over server-sent events.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardMetricsDTO {
+    // Increases with every change; clients can ignore events older than the one they hold.
+    private long version;
+
+    // User statistics
+    private long totalUsers;
+    private long newUsersToday;
+
+    // Transaction statistics
+    private long totalTransactions;
+    private long transactionsToday;
+    private BigDecimal totalTransactionVolume;
+    private BigDecimal transactionVolumeToday;
+
+    // KYC statistics
+    private long pendingKycSubmissions;
+}
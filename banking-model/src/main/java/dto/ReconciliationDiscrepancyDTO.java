@@ -0,0 +1,19 @@
+package dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationDiscrepancyDTO {
+    private String accountNumber;
+    private BigDecimal storedBalance;
+    private BigDecimal expectedBalance;
+    private BigDecimal difference;
+}
@@ -0,0 +1,29 @@
+package dto;
+
+import enums.ReconciliationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationRunDTO {
+    private Long id;
+    private ReconciliationStatus status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long durationMillis;
+    private long accountsChecked;
+    private long entriesScanned;
+    private int discrepancyCount;
+    private String failureReason;
+
+    // Only filled in when a single run is requested.
+    private List<ReconciliationDiscrepancyDTO> discrepancies;
+}
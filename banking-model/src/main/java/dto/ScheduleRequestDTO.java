@@ -8,6 +8,7 @@ import lombok.Setter;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalTime;
 
 
 @Getter
@@ -19,6 +20,7 @@ public class ScheduleRequestDTO {
     private PaymentFrequency frequency;
     private LocalDate startDate;
     private LocalDate endDate;
+    private LocalTime executionTime;
     private String userMemo;
     private String toAccountNumber;
     private Long billerId;
@@ -8,6 +8,7 @@ import lombok.Setter;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalTime;
 
 /**
  * A Data Transfer Object for representing a user's scheduled payment in an API response.
@@ -25,6 +26,7 @@ public class ScheduledPaymentDTO {
     private BigDecimal amount;
     private PaymentFrequency frequency;
     private LocalDate nextExecutionDate;
+    private LocalTime executionTime;
     private LocalDate endDate;
     private ScheduledPaymentStatus status;
     private String userMemo;
@@ -48,6 +50,7 @@ public class ScheduledPaymentDTO {
         this.amount = schedule.getAmount();
         this.frequency = schedule.getFrequency();
         this.nextExecutionDate = schedule.getNextExecutionDate();
+        this.executionTime = schedule.getExecutionTime();
         this.endDate = schedule.getEndDate();
         this.status = schedule.getStatus();
         this.userMemo = schedule.getUserMemo();
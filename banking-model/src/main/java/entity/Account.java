@@ -34,5 +34,10 @@ public class Account implements Serializable {
     @JoinColumn(name = "user_id", nullable = true)
     private User owner;
 
+    // The node whose balance engine holds this balance in memory; null when the account is
+    // changed through the database like any other. Only that engine may move its money.
+    @Column(name = "engine_node", length = 128)
+    private String engineNode;
+
 
 }
\ No newline at end of file
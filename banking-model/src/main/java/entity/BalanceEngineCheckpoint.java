@@ -0,0 +1,33 @@
+package entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * How far each shard's journal of the in-memory balance engine has been written to the
+ * database. Updated in the same transaction as the balances, so recovery replays exactly
+ * the journal records after it.
+ */
+@Entity
+@Table(name = "balance_engine_checkpoint")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceEngineCheckpoint implements Serializable {
+
+    @Id
+    private Integer shard;
+
+    @Column(nullable = false)
+    private long lastSequence;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,66 @@
+package entity;
+
+import enums.TransactionStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Funds reserved against an account by an approved card authorization. Whether the hold is
+ * still open is the status of its PENDING {@link Transaction}, which moves to COMPLETED on
+ * capture and to CANCELLED or EXPIRED on release. A capture or release the processor has
+ * asked for is recorded in {@code settlement} until the settlement job applies it.
+ */
+@Entity
+@Table(name = "balance_hold", indexes = {
+        @Index(name = "idx_balance_hold_settlement", columnList = "settlement")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceHold implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // The authorization code handed to the card processor.
+    @Column(nullable = false, unique = true, length = 16)
+    private String reference;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    // The card whose authorization placed the hold, so a release can be taken off its daily spend.
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", nullable = false, unique = true)
+    private Transaction transaction;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    // COMPLETED for a requested capture, CANCELLED for a requested release; null while open.
+    @Enumerated(EnumType.STRING)
+    @Column(name = "settlement", length = 20)
+    private TransactionStatus settlement;
+
+    @Column(name = "captured_amount", precision = 19, scale = 4)
+    private BigDecimal capturedAmount;
+}
@@ -12,6 +12,7 @@ import java.io.Serializable;
 
 @Entity
 @Table(name = "biller")
+@Cacheable // Size and expiry are set in META-INF/eclipselink-orm.xml
 @Data
 @Builder
 @NoArgsConstructor
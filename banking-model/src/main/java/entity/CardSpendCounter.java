@@ -0,0 +1,39 @@
+package entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A card's running spend for the current day, shared by all nodes. The authorization engine
+ * locks the row while it checks the limit and places a hold; the settlement job subtracts
+ * held amounts that were released instead of captured.
+ */
+@Entity
+@Table(name = "card_spend_counter")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardSpendCounter implements Serializable {
+
+    @Id
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @Column(nullable = false)
+    private LocalDate windowDate;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal spent;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,42 @@
+package entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One row of materialized dashboard activity per calendar day.
+ * Refreshed periodically from the user and transaction tables, so reports
+ * over past days need not GROUP BY over them.
+ */
+@Entity
+@Table(name = "daily_stats")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyStats implements Serializable {
+
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate statDate;
+
+    @Column(nullable = false)
+    private long newUsers;
+
+    @Column(nullable = false)
+    private long transactionCount;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal transactionVolume;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -13,6 +13,7 @@ import java.math.BigDecimal;
 
 @Entity
 @Table(name = "interest_rate")
+@Cacheable // Size and expiry are set in META-INF/eclipselink-orm.xml
 @Data
 @Builder
 @NoArgsConstructor
@@ -1,4 +1,5 @@
 package entity;
+import enums.KycStatus;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -10,7 +11,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "kyc_document")
+@Table(name = "kyc_document", indexes = {
+        // The review queue pages through one status in submission order
+        @Index(name = "idx_kyc_document_queue", columnList = "review_status, submittedAt, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -55,5 +59,18 @@ public class KycDocument implements Serializable {
     @Column(nullable = false)
     private LocalDateTime submittedAt;
 
+    // Copy of the owner's KYC status while the document exists, so the queue can be indexed
+    @Enumerated(EnumType.STRING)
+    @Column(name = "review_status", length = 20)
+    private KycStatus reviewStatus;
+
+    // --- Claim held by the reviewer working on this document ---
+
+    @Column(name = "claimed_by", length = 100)
+    private String claimedBy;
+
+    // The claim lapses after a lease period, so an abandoned review goes back to the queue.
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
 
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package entity;
+
+import enums.EntryDirection;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One side of a completed money movement. Every completed {@link Transaction} posts exactly
+ * one DEBIT and one CREDIT of the same amount; rows are never updated or deleted.
+ */
+@Entity
+@Table(name = "ledger_entry", indexes = {
+        @Index(name = "idx_ledger_entry_account_posted", columnList = "account_id, posted_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEntry implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", nullable = false)
+    private Transaction transaction;
+
+    // Null for the side outside the bank, e.g. the source of a deposit or the merchant of a card payment.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = true)
+    private Account account;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 6)
+    private EntryDirection direction;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    // The account's balance right after this entry; null for the outside side.
+    @Column(precision = 19, scale = 4)
+    private BigDecimal balanceAfter;
+
+    @Column(name = "posted_at", nullable = false)
+    private LocalDateTime postedAt;
+}
@@ -0,0 +1,29 @@
+package entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * A named counter from which nodes reserve blocks of numbers (account numbers, card numbers).
+ * {@code nextValue} is the first number not yet handed to any node.
+ */
+@Entity
+@Table(name = "number_sequence")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NumberSequence implements Serializable {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private long nextValue;
+}
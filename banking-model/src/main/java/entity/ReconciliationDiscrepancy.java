@@ -0,0 +1,44 @@
+package entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * An account whose stored balance differed from the balance its ledger entries add up to.
+ */
+@Entity
+@Table(name = "reconciliation_discrepancy")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationDiscrepancy implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id", nullable = false)
+    private ReconciliationRun run;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal storedBalance;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal expectedBalance;
+
+    // Stored minus expected.
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal difference;
+}
@@ -0,0 +1,48 @@
+package entity;
+
+import enums.ReconciliationStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One run of the ledger reconciliation: when it ran, how much it checked and how many
+ * accounts did not match. The mismatches themselves are {@link ReconciliationDiscrepancy} rows.
+ */
+@Entity
+@Table(name = "reconciliation_run")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationRun implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReconciliationStatus status;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    private long durationMillis;
+
+    private long accountsChecked;
+
+    private long entriesScanned;
+
+    private int discrepancyCount;
+
+    @Column(length = 500)
+    private String failureReason;
+}
@@ -12,13 +12,18 @@ import lombok.NoArgsConstructor;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 
 /**
  * Represents a user's instruction to make a recurring payment.
  * This can be for a user-to-user transfer or a bill payment.
  */
 @Entity
-@Table(name = "scheduled_payment")
+@Table(name = "scheduled_payment", indexes = {
+        @Index(name = "idx_scheduled_payment_due", columnList = "status, nextExecutionDate"),
+        @Index(name = "idx_scheduled_payment_retry", columnList = "status, next_retry_at")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -67,6 +72,9 @@ public class ScheduledPayment implements Serializable {
     @Column(nullable = false)
     private LocalDate nextExecutionDate;
 
+    // An optional time of day to run at; without one, the payment is spread over the bank's payment windows.
+    private LocalTime executionTime;
+
     @Column(nullable = false)
     private LocalDate startDate;
 
@@ -81,5 +89,23 @@ public class ScheduledPayment implements Serializable {
     @Column(length = 255)
     private String userMemo;
 
+    // --- Retries of the current occurrence ---
+
+    // Failed attempts since the last successful run.
+    @Column(name = "retry_count", nullable = false)
+    private int retryCount;
+
+    @Column(name = "next_retry_at")
+    private LocalDateTime nextRetryAt;
+
+    // --- Claim held by the scheduler node that is executing this payment ---
+
+    @Column(name = "claimed_by", length = 128)
+    private String claimedBy;
+
+    // The claim lapses after a lease period, so a node that dies mid-run does not block the payment.
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
 
 }
\ No newline at end of file
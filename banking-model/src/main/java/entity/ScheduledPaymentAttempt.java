@@ -0,0 +1,53 @@
+package entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One failed run of a scheduled payment, or the successful run that ended a series of
+ * retries. Plain successful runs are not recorded; the transaction history covers those.
+ */
+@Entity
+@Table(name = "scheduled_payment_attempt", indexes = {
+        @Index(name = "idx_scheduled_payment_attempt_payment", columnList = "payment_id, attempted_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledPaymentAttempt implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "payment_id", nullable = false)
+    private ScheduledPayment payment;
+
+    // 1 for the first run of an occurrence, counting up with each retry.
+    @Column(nullable = false)
+    private int attemptNumber;
+
+    @Column(name = "attempted_at", nullable = false)
+    private LocalDateTime attemptedAt;
+
+    @Column(nullable = false)
+    private boolean succeeded;
+
+    // Whether the error was one that a later attempt may not hit.
+    @Column(nullable = false)
+    private boolean retryable;
+
+    @Column(length = 500)
+    private String failureReason;
+
+    // When the next attempt is due; null if the payment was given up.
+    private LocalDateTime nextRetryAt;
+}
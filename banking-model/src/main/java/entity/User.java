@@ -15,7 +15,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "app_user")
-@Cacheable(value = false)
+@Cacheable // Size and expiry are set in META-INF/eclipselink-orm.xml
 @Data
 @Builder
 @NoArgsConstructor
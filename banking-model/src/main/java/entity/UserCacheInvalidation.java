@@ -0,0 +1,36 @@
+package entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * A user whose cached state must be dropped on every node. Written in the transaction that
+ * changes the user; each node polls for recent rows and evicts those users from its shared
+ * entity cache and principal cache. Rows older than an hour are deleted.
+ */
+@Entity
+@Table(name = "user_cache_invalidation", indexes = {
+        @Index(name = "idx_user_cache_invalidation_created", columnList = "createdAt")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserCacheInvalidation implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
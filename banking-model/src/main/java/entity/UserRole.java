@@ -14,7 +14,7 @@ import java.io.Serializable;
         // Add a unique constraint to prevent assigning the same role to the same user twice
         uniqueConstraints = @UniqueConstraint(columnNames = {"username", "rolename"})
 )
-@Cacheable(value = false)
+@Cacheable // Size and expiry are set in META-INF/eclipselink-orm.xml
 @Data
 @Builder
 @NoArgsConstructor
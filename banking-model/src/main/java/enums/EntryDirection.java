@@ -0,0 +1,6 @@
+package enums;
+
+public enum EntryDirection {
+    DEBIT,  // Money leaves the account
+    CREDIT  // Money enters the account
+}
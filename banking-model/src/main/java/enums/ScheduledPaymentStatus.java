@@ -3,6 +3,7 @@ package enums;
 public enum ScheduledPaymentStatus {
     ACTIVE,
     PAUSED,
+    RETRYING,  // The last run failed for a passing reason; it is tried again at nextRetryAt
     COMPLETED, // For schedules with a defined end date
     FAILED       // If a payment consistently fails
 }
\ No newline at end of file
@@ -1,9 +1,10 @@
 package enums;
 
 public enum TransactionStatus {
-    PENDING,
+    PENDING,   // Funds are held against the account; the balance has not changed yet
     COMPLETED,
     FAILED,
     CANCELLED,
-    REVERSED
+    REVERSED,
+    EXPIRED    // A pending hold that was never captured
 }
\ No newline at end of file
@@ -9,4 +9,5 @@ public enum TransactionType {
     WITHDRAWAL,
     DEPOSIT,
     GIFT,
+    CARD_PAYMENT,
 }
\ No newline at end of file
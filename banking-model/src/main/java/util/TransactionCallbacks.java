@@ -0,0 +1,60 @@
+package util;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Helpers for keeping in-memory state in step with the database: an update registered
+ * here only becomes visible once the JTA transaction that caused it has committed.
+ */
+public final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Runs the action after the current transaction commits, or immediately when
+     * there is no active transaction. The action is dropped if the transaction rolls back.
+     */
+    public static void afterCommit(TransactionSynchronizationRegistry registry, Runnable action) {
+        if (registry == null || registry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            action.run();
+            return;
+        }
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the action if the current transaction rolls back, to undo in-memory changes
+     * made ahead of the commit. Does nothing when there is no active transaction.
+     */
+    public static void afterRollback(TransactionSynchronizationRegistry registry, Runnable action) {
+        if (registry == null || registry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            return;
+        }
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != Status.STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package scheduler;
+
+import exception.InsufficientFundsException;
+import jakarta.ejb.ConcurrentAccessException;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import jakarta.persistence.QueryTimeoutException;
+
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed scheduled payment is tried again, and when.
+ *
+ * Lock and timeout errors and a short balance can pass by themselves; anything else (an
+ * inactive user, a missing account, a rejected destination) fails the schedule straight away.
+ * Retries back off exponentially from {@code banking.payments.retryBaseMinutes} (15) up to
+ * {@code banking.payments.retryMaxMinutes} (one day), with the delay drawn at random from its
+ * upper half so retries of payments that failed together do not all return together.
+ */
+public final class RetryPolicy {
+
+    static final int MAX_RETRIES = Integer.getInteger("banking.payments.maxRetries", 5);
+    private static final long BASE_MINUTES = Long.getLong("banking.payments.retryBaseMinutes", 15);
+    private static final long MAX_MINUTES = Long.getLong("banking.payments.retryMaxMinutes", 24 * 60);
+
+    private RetryPolicy() {
+    }
+
+    public static boolean isRetryable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof InsufficientFundsException
+                    || cause instanceof LockTimeoutException
+                    || cause instanceof PessimisticLockException
+                    || cause instanceof OptimisticLockException
+                    || cause instanceof QueryTimeoutException
+                    || cause instanceof ConcurrentAccessException
+                    || cause instanceof SQLTransientException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The wait before retry number {@code retry} (1 for the first retry).
+     */
+    static Duration backoff(int retry) {
+        long ceiling = BASE_MINUTES << Math.min(retry - 1, 20);
+        long minutes = Math.min(MAX_MINUTES, ceiling > 0 ? ceiling : MAX_MINUTES);
+        long seconds = minutes * 60;
+        return Duration.ofSeconds(seconds / 2 + ThreadLocalRandom.current().nextLong(seconds / 2 + 1));
+    }
+}
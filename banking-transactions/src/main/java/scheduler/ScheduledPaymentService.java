@@ -5,6 +5,9 @@ import dto.ScheduleRequestDTO;
 import dto.ScheduledPaymentDTO;
 import entity.ScheduledPayment;
 import jakarta.ejb.Local;
+
+import java.io.Serializable;
+import java.time.LocalTime;
 import java.util.List;
 
 @Local
@@ -15,8 +18,76 @@ public interface ScheduledPaymentService {
     void pauseScheduledPayment(String username, Long scheduleId);
     void resumeScheduledPayment(String username, Long scheduleId);
     void cancelScheduledPayment(String username, Long scheduleId);
-    List<ScheduledPayment> findDuePayments();
-    void reschedulePayment(ScheduledPayment payment);
-    void markPaymentAsFailed(ScheduledPayment payment, String reason);
 
+    // --- Used by the payment scheduler ---
+
+    /**
+     * The next page of due payments after the given position, ordered by source account and
+     * then id so that each account's payments are contiguous and in a stable order.
+     */
+    List<DuePayment> findDuePaymentPage(DuePayment after, int limit);
+
+    /**
+     * Claims those of the given payments that are still due and not claimed by a live lease,
+     * skipping rows another node has locked. Claims last until the payment is executed or
+     * failed, or until the lease runs out.
+     *
+     * @return the ids this node now owns
+     */
+    List<Long> claimDuePayments(List<Long> paymentIds, String node);
+
+    /**
+     * Claims up to {@code limit} payments whose retry is due, oldest first, the same way.
+     */
+    List<DuePayment> claimRetries(String node, int limit);
+
+    /**
+     * Executes one due payment, or a due retry, claimed by this node and moves it to its next
+     * date, in its own transaction.
+     *
+     * @return false if it was no longer due or is claimed by another node
+     */
+    boolean executeDuePayment(Long paymentId, String node);
+
+    /**
+     * Records failed runs, all in one transaction. A retryable failure within the retry limit
+     * queues the payment for another attempt after a back-off; any other failure fails the
+     * schedule.
+     */
+    void recordFailures(List<Failure> failures);
+
+    final class Failure implements Serializable {
+        private final long paymentId;
+        private final String reason;
+        private final boolean retryable;
+
+        public Failure(long paymentId, String reason, boolean retryable) {
+            this.paymentId = paymentId;
+            this.reason = reason;
+            this.retryable = retryable;
+        }
+
+        public long getPaymentId() { return paymentId; }
+        public String getReason() { return reason; }
+        public boolean isRetryable() { return retryable; }
+    }
+
+    /**
+     * A due payment as the scheduler sees it; also its position in {@link #findDuePaymentPage} order.
+     */
+    final class DuePayment implements Serializable {
+        private final long id;
+        private final long fromAccountId;
+        private final LocalTime executionTime;
+
+        public DuePayment(long id, long fromAccountId, LocalTime executionTime) {
+            this.id = id;
+            this.fromAccountId = fromAccountId;
+            this.executionTime = executionTime;
+        }
+
+        public long getId() { return id; }
+        public long getFromAccountId() { return fromAccountId; }
+        public LocalTime getExecutionTime() { return executionTime; }
+    }
 }
\ No newline at end of file
@@ -8,21 +8,42 @@ import dto.ScheduledPaymentDTO;
 import entity.Account;
 import entity.Biller;
 import entity.ScheduledPayment;
+import entity.ScheduledPaymentAttempt;
+import entity.Transaction;
 import entity.User;
 import enums.BillerStatus;
 import enums.PaymentFrequency;
 import enums.ScheduledPaymentStatus;
+import enums.TransactionStatus;
+import enums.TransactionType;
+import enums.UserStatus;
+import exception.InsufficientFundsException;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.interceptor.Interceptors;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import service.BalanceEngine;
+import service.BalanceHoldLedger;
+import service.DashboardStatistics;
+import service.LedgerService;
+import service.TransactionService;
+import service.UserPrincipalCache;
 import util.LoggingInterceptor;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Audit
@@ -31,9 +52,29 @@ import java.util.stream.Collectors;
 @Interceptors(LoggingInterceptor.class)
 public class ScheduledPaymentServiceImpl implements ScheduledPaymentService {
 
+    private static final long CLAIM_LEASE_MINUTES = Long.getLong("banking.payments.claimLeaseMinutes", 10);
+
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
+    @EJB
+    private TransactionService transactionService;
+
+    @EJB
+    private LedgerService ledgerService;
+
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private BalanceHoldLedger balanceHolds;
+
+    @EJB
+    private BalanceEngine balanceEngine;
+
     @Override
     @RolesAllowed("CUSTOMER")
     public ScheduledPaymentDTO scheduleNewPayment(String username, ScheduleRequestDTO dto) {
@@ -44,6 +85,7 @@ public class ScheduledPaymentServiceImpl implements ScheduledPaymentService {
         if (fromAccount.getOwner() == null || !fromAccount.getOwner().equals(user)) {
             throw new SecurityException("User does not own the source account.");
         }
+        checkNotClaimedByEngine(fromAccount);
 
         // Validate that a destination is provided and is not ambiguous
         boolean isUserTransfer = dto.getToAccountNumber() != null && !dto.getToAccountNumber().trim().isEmpty();
@@ -73,11 +115,13 @@ public class ScheduledPaymentServiceImpl implements ScheduledPaymentService {
             newSchedule.setBillerReferenceNumber(dto.getBillerReferenceNumber());
         } else { // isUserTransfer
             Account toAccount = findAccountByNumber(dto.getToAccountNumber());
+            checkNotClaimedByEngine(toAccount);
             newSchedule.setToAccount(toAccount);
         }
 
         newSchedule.setAmount(dto.getAmount());
         newSchedule.setFrequency(dto.getFrequency());
+        newSchedule.setExecutionTime(dto.getExecutionTime());
         newSchedule.setStartDate(dto.getStartDate());
         newSchedule.setNextExecutionDate(dto.getStartDate());
         newSchedule.setEndDate(dto.getEndDate());
@@ -93,10 +137,11 @@ public class ScheduledPaymentServiceImpl implements ScheduledPaymentService {
     public List<ScheduledPaymentDTO> getScheduledPaymentsForUser(String username) {
         TypedQuery<ScheduledPayment> query = em.createQuery(
                 "SELECT s FROM ScheduledPayment s WHERE s.user.username = :username " +
-                        "AND s.status IN (:activeStatus, :pausedStatus) ORDER BY s.nextExecutionDate", ScheduledPayment.class);
+                        "AND s.status IN (:activeStatus, :pausedStatus, :retryingStatus) ORDER BY s.nextExecutionDate", ScheduledPayment.class);
         query.setParameter("username", username);
         query.setParameter("activeStatus", ScheduledPaymentStatus.ACTIVE);
         query.setParameter("pausedStatus", ScheduledPaymentStatus.PAUSED);
+        query.setParameter("retryingStatus", ScheduledPaymentStatus.RETRYING);
 
         return query.getResultList().stream()
                 .map(ScheduledPaymentDTO::new)
@@ -107,11 +152,16 @@ public class ScheduledPaymentServiceImpl implements ScheduledPaymentService {
     @RolesAllowed("CUSTOMER")
     public void pauseScheduledPayment(String username, Long scheduleId) {
         ScheduledPayment payment = findUserScheduleById(username, scheduleId);
-        if (payment.getStatus() == ScheduledPaymentStatus.ACTIVE) {
+        if (payment.getStatus() == ScheduledPaymentStatus.ACTIVE || payment.getStatus() == ScheduledPaymentStatus.RETRYING) {
+            // Pausing ends any retry series; on resume the occurrence is tried again as a regular run.
             payment.setStatus(ScheduledPaymentStatus.PAUSED);
+            payment.setRetryCount(0);
+            payment.setNextRetryAt(null);
+            payment.setClaimedBy(null);
+            payment.setClaimedAt(null);
             em.merge(payment);
         } else {
-            throw new IllegalStateException("Only active schedules can be paused.");
+            throw new IllegalStateException("Only active or retrying schedules can be paused.");
         }
     }
 
@@ -131,49 +181,240 @@ public class ScheduledPaymentServiceImpl implements ScheduledPaymentService {
     @RolesAllowed("CUSTOMER")
     public void cancelScheduledPayment(String username, Long scheduleId) {
         ScheduledPayment payment = findUserScheduleById(username, scheduleId);
+        // The attempt history goes with the schedule; a retrying schedule always has some.
+        em.createQuery("DELETE FROM ScheduledPaymentAttempt a WHERE a.payment = :payment")
+                .setParameter("payment", payment)
+                .executeUpdate();
         em.remove(payment);
     }
 
     // --- Internal Methods for the EJB Timer ---
 
     @Override
-    public List<ScheduledPayment> findDuePayments() {
-        TypedQuery<ScheduledPayment> query = em.createQuery(
-                "SELECT s FROM ScheduledPayment s WHERE s.status = :status AND s.nextExecutionDate <= :today", ScheduledPayment.class);
+    public List<DuePayment> findDuePaymentPage(DuePayment after, int limit) {
+        TypedQuery<Object[]> query = em.createQuery(
+                "SELECT s.id, s.fromAccount.id, s.executionTime FROM ScheduledPayment s WHERE s.status = :status AND s.nextExecutionDate <= :today " +
+                        (after != null ? "AND (s.fromAccount.id > :afterAccount OR (s.fromAccount.id = :afterAccount AND s.id > :afterId)) " : "") +
+                        "ORDER BY s.fromAccount.id, s.id", Object[].class);
         query.setParameter("status", ScheduledPaymentStatus.ACTIVE);
         query.setParameter("today", LocalDate.now());
-        return query.getResultList();
+        if (after != null) {
+            query.setParameter("afterAccount", after.getFromAccountId());
+            query.setParameter("afterId", after.getId());
+        }
+        return query.setMaxResults(limit).getResultList().stream()
+                .map(row -> new DuePayment((Long) row[0], (Long) row[1], (LocalTime) row[2]))
+                .collect(Collectors.toList());
     }
 
     @Override
-    public void reschedulePayment(ScheduledPayment payment) {
-        LocalDate nextDate = calculateNextExecutionDate(payment.getNextExecutionDate(), payment.getFrequency());
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @SuppressWarnings("unchecked")
+    public List<Long> claimDuePayments(List<Long> paymentIds, String node) {
+        if (paymentIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // SKIP LOCKED is not expressible in JPQL. The ids are numbers, so listing them inline is safe.
+        String ids = paymentIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        List<Number> claimable = em.createNativeQuery(
+                        "SELECT id FROM scheduled_payment WHERE status = ? AND nextExecutionDate <= ? " +
+                                "AND (claimed_at IS NULL OR claimed_at < ?) AND id IN (" + ids + ") " +
+                                "ORDER BY id FOR UPDATE SKIP LOCKED")
+                .setParameter(1, ScheduledPaymentStatus.ACTIVE.name())
+                .setParameter(2, LocalDate.now())
+                .setParameter(3, now.minusMinutes(CLAIM_LEASE_MINUTES))
+                .getResultList();
+        if (claimable.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> claimed = claimable.stream().map(Number::longValue).collect(Collectors.toList());
+        em.createQuery("UPDATE ScheduledPayment s SET s.claimedBy = :node, s.claimedAt = :now WHERE s.id IN :ids")
+                .setParameter("node", node)
+                .setParameter("now", now)
+                .setParameter("ids", claimed)
+                .executeUpdate();
+        return claimed;
+    }
 
-        if (payment.getEndDate() != null && nextDate.isAfter(payment.getEndDate())) {
-            payment.setStatus(ScheduledPaymentStatus.COMPLETED);
-        } else {
-            payment.setNextExecutionDate(nextDate);
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @SuppressWarnings("unchecked")
+    public List<DuePayment> claimRetries(String node, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = em.createNativeQuery(
+                        "SELECT id, from_account_id FROM scheduled_payment WHERE status = ? AND next_retry_at <= ? " +
+                                "AND (claimed_at IS NULL OR claimed_at < ?) " +
+                                "ORDER BY next_retry_at LIMIT ? FOR UPDATE SKIP LOCKED")
+                .setParameter(1, ScheduledPaymentStatus.RETRYING.name())
+                .setParameter(2, now)
+                .setParameter(3, now.minusMinutes(CLAIM_LEASE_MINUTES))
+                .setParameter(4, limit)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return Collections.emptyList();
         }
-        em.merge(payment);
+        List<DuePayment> claimed = rows.stream()
+                .map(row -> new DuePayment(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), null))
+                .collect(Collectors.toList());
+        em.createQuery("UPDATE ScheduledPayment s SET s.claimedBy = :node, s.claimedAt = :now WHERE s.id IN :ids")
+                .setParameter("node", node)
+                .setParameter("now", now)
+                .setParameter("ids", claimed.stream().map(DuePayment::getId).collect(Collectors.toList()))
+                .executeUpdate();
+        return claimed;
     }
 
     @Override
-    public void markPaymentAsFailed(ScheduledPayment payment, String reason) {
-        payment.setStatus(ScheduledPaymentStatus.FAILED);
-        String memo = "Last attempt on " + LocalDate.now() + " failed: " + reason;
-        payment.setUserMemo(memo);
-        em.merge(payment);
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean executeDuePayment(Long paymentId, String node) {
+        ScheduledPayment payment = em.find(ScheduledPayment.class, paymentId, LockModeType.PESSIMISTIC_WRITE);
+        if (payment == null || !isDue(payment) || !node.equals(payment.getClaimedBy())) {
+            return false;
+        }
+        // Schedules made before their account joined the engine fail here instead of being paid twice.
+        checkNotClaimedByEngine(payment.getFromAccount());
+
+        if (payment.getBiller() != null) {
+            payBiller(payment);
+        } else if (payment.getToAccount() != null) {
+            transactionService.performSystemTransfer(
+                    payment.getFromAccount().getId(),
+                    payment.getToAccount().getId(),
+                    payment.getAmount(),
+                    "Recurring transfer to " + payment.getToAccount().getAccountNumber());
+        }
+        if (payment.getRetryCount() > 0) {
+            recordAttempt(payment, payment.getRetryCount() + 1, true, false, null, null);
+        }
+        payment.setStatus(ScheduledPaymentStatus.ACTIVE);
+        payment.setRetryCount(0);
+        payment.setNextRetryAt(null);
+        payment.setClaimedBy(null);
+        payment.setClaimedAt(null);
+        reschedulePayment(payment);
+        return true;
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void recordFailures(List<Failure> failures) {
+        Map<Long, ScheduledPayment> payments = new HashMap<>();
+        for (ScheduledPayment payment : em.createQuery(
+                        "SELECT s FROM ScheduledPayment s WHERE s.id IN :ids ORDER BY s.id", ScheduledPayment.class)
+                .setParameter("ids", failures.stream().map(Failure::getPaymentId).collect(Collectors.toList()))
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList()) {
+            payments.put(payment.getId(), payment);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Failure failure : failures) {
+            ScheduledPayment payment = payments.get(failure.getPaymentId());
+            if (payment == null) {
+                continue; // Cancelled meanwhile.
+            }
+            int retry = payment.getRetryCount() + 1;
+            boolean retrying = failure.isRetryable() && retry <= RetryPolicy.MAX_RETRIES;
+            LocalDateTime nextRetryAt = retrying ? now.plus(RetryPolicy.backoff(retry)) : null;
+            recordAttempt(payment, retry, false, failure.isRetryable(), failure.getReason(), nextRetryAt);
+
+            payment.setClaimedBy(null);
+            payment.setClaimedAt(null);
+            payment.setNextRetryAt(nextRetryAt);
+            if (retrying) {
+                payment.setStatus(ScheduledPaymentStatus.RETRYING);
+                payment.setRetryCount(retry);
+                continue;
+            }
+            payment.setStatus(ScheduledPaymentStatus.FAILED);
+            String memo = "Last attempt on " + LocalDate.now() + " failed: " + failure.getReason();
+            payment.setUserMemo(memo.length() > 255 ? memo.substring(0, 255) : memo);
+        }
     }
 
     // --- Helper Methods ---
 
-    private User findUserByUsername(String username) {
-        try {
-            return em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
-                    .setParameter("username", username).getSingleResult();
-        } catch (NoResultException e) {
-            throw new IllegalArgumentException("User with username '" + username + "' not found.");
+    /**
+     * Refuses accounts served by the balance engine. An engine transfer is durable in the journal
+     * and does not roll back with the transaction that clears the claim and reschedules the
+     * payment, so a failed commit there would let the payment run again once the claim lapses.
+     */
+    private void checkNotClaimedByEngine(Account account) {
+        if (balanceEngine.isClaimed(account)) {
+            throw new IllegalStateException("Scheduled payments are not available for account " + account.getAccountNumber() + " at the moment.");
+        }
+    }
+
+    private boolean isDue(ScheduledPayment payment) {
+        if (payment.getStatus() == ScheduledPaymentStatus.RETRYING) {
+            return payment.getNextRetryAt() != null && !payment.getNextRetryAt().isAfter(LocalDateTime.now());
+        }
+        return payment.getStatus() == ScheduledPaymentStatus.ACTIVE && !payment.getNextExecutionDate().isAfter(LocalDate.now());
+    }
+
+    private void recordAttempt(ScheduledPayment payment, int attemptNumber, boolean succeeded, boolean retryable,
+                               String reason, LocalDateTime nextRetryAt) {
+        em.persist(ScheduledPaymentAttempt.builder()
+                .payment(payment)
+                .attemptNumber(attemptNumber)
+                .attemptedAt(LocalDateTime.now())
+                .succeeded(succeeded)
+                .retryable(retryable)
+                .failureReason(reason != null && reason.length() > 500 ? reason.substring(0, 500) : reason)
+                .nextRetryAt(nextRetryAt)
+                .build());
+    }
+
+    private void payBiller(ScheduledPayment payment) {
+        // Lock accounts to prevent race conditions
+        Account fromAccount = em.find(Account.class, payment.getFromAccount().getId(), LockModeType.PESSIMISTIC_WRITE);
+        Account toBillerAccount = em.find(Account.class, payment.getBiller().getInternalAccount().getId(), LockModeType.PESSIMISTIC_WRITE);
+
+        // Perform validations
+        if (fromAccount.getOwner().getStatus() != UserStatus.ACTIVE) {
+            throw new IllegalStateException("User account is not active.");
+        }
+        if (balanceHolds.availableBalance(fromAccount).compareTo(payment.getAmount()) < 0) {
+            throw new InsufficientFundsException("Insufficient funds.");
         }
+
+        // Perform debit and credit
+        fromAccount.setBalance(fromAccount.getBalance().subtract(payment.getAmount()));
+        toBillerAccount.setBalance(toBillerAccount.getBalance().add(payment.getAmount()));
+
+        // Log the transaction
+        Transaction log = new Transaction();
+        log.setTransactionType(TransactionType.BILL_PAYMENT);
+        log.setStatus(TransactionStatus.COMPLETED);
+        log.setFromAccount(fromAccount);
+        log.setToAccount(toBillerAccount);
+        log.setAmount(payment.getAmount());
+        log.setTransactionDate(LocalDateTime.now());
+        log.setDescription("Scheduled bill payment to " + payment.getBiller().getBillerName());
+        log.setUserMemo("Ref: " + payment.getBillerReferenceNumber());
+        log.setRunningBalance(fromAccount.getBalance());
+
+        em.persist(log);
+        ledgerService.post(log);
+        statistics.recordTransaction(log);
+    }
+
+    private void reschedulePayment(ScheduledPayment payment) {
+        LocalDate nextDate = calculateNextExecutionDate(payment.getNextExecutionDate(), payment.getFrequency());
+
+        if (payment.getEndDate() != null && nextDate.isAfter(payment.getEndDate())) {
+            payment.setStatus(ScheduledPaymentStatus.COMPLETED);
+        } else {
+            payment.setNextExecutionDate(nextDate);
+        }
+    }
+
+    private User findUserByUsername(String username) {
+        UserPrincipalCache.Entry principal = userPrincipalCache.resolve(username)
+                .orElseThrow(() -> new IllegalArgumentException("User with username '" + username + "' not found."));
+        // Served by the shared entity cache when the user was loaded recently.
+        return em.find(User.class, principal.getId());
     }
 
     private Account findAccountByNumber(String accountNumber) {
@@ -193,11 +434,17 @@ public class ScheduledPaymentServiceImpl implements ScheduledPaymentService {
         return biller;
     }
 
+    /**
+     * Finds and locks one of the user's schedules, so a change waits for a run in progress
+     * on any node, which then sees the change when it re-reads the schedule.
+     */
     private ScheduledPayment findUserScheduleById(String username, Long scheduleId) {
         try {
             return em.createQuery("SELECT s FROM ScheduledPayment s WHERE s.id = :scheduleId AND s.user.username = :username", ScheduledPayment.class)
                     .setParameter("scheduleId", scheduleId)
-                    .setParameter("username", username).getSingleResult();
+                    .setParameter("username", username)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getSingleResult();
         } catch (NoResultException e) {
             throw new SecurityException("Scheduled payment not found or you do not have permission to access it.");
         }
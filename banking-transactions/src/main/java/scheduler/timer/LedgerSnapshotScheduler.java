@@ -0,0 +1,30 @@
+package scheduler.timer;
+
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import service.LedgerService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Takes the nightly balance snapshots at midnight, once the day's entries are all posted.
+ */
+@Singleton
+@Startup
+public class LedgerSnapshotScheduler {
+
+    @EJB
+    private LedgerService ledgerService;
+
+    @Schedule(hour = "0", minute = "30", second = "0", persistent = false)
+    public void takeNightlySnapshots() {
+        LocalDateTime cutoff = LocalDate.now().atStartOfDay();
+        long started = System.currentTimeMillis();
+        int written = ledgerService.takeSnapshots(cutoff);
+        System.out.println("LEDGER: Wrote " + written + " balance snapshot(s) at " + cutoff + " in "
+                + (System.currentTimeMillis() - started) + " ms.");
+    }
+}
@@ -3,114 +3,326 @@ package scheduler.timer;
 
 import annotation.Audit;
 import annotation.Logging;
-import dto.TransactionRequestDTO;
-import entity.Account;
-import entity.ScheduledPayment;
-import entity.Transaction;
-import enums.TransactionStatus;
-import enums.TransactionType;
-import enums.UserStatus;
-import jakarta.annotation.security.RunAs;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import jakarta.ejb.*;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.LockModeType;
-import jakarta.persistence.PersistenceContext;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import scheduler.RetryPolicy;
 import scheduler.ScheduledPaymentService;
-import service.TransactionService;
+import scheduler.ScheduledPaymentService.DuePayment;
+import scheduler.ScheduledPaymentService.Failure;
 
-import java.time.LocalDateTime;
+import java.lang.management.ManagementFactory;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Executes due scheduled payments through the day instead of all at once.
+ *
+ * Each day's due payments are loaded onto an in-memory {@link TimingWheel}: a payment with an
+ * execution time goes out in that minute, the others are spread evenly over the payment
+ * windows ({@code -Dbanking.payments.windows}, default {@code 09:00-12:00}). The wheel is
+ * rebuilt from the table on startup and just after midnight, and payments that become due
+ * during the day (new or resumed schedules) are picked up every 15 minutes.
+ *
+ * Every minute the payments that came due are claimed for this node in pages, skipping any
+ * that another node has locked or holds a live claim on, so several nodes can share the
+ * work. The claimed payments run on a managed executor: those of each source account one
+ * after another in id order, different accounts in parallel; each payment commits or fails
+ * in its own transaction. Payments left to another node are forgotten here and picked up
+ * again by the 15-minute scan if that node's claim lapses.
+ *
+ * Failed payments that may succeed later wait in a retry queue (see {@link scheduler.RetryPolicy}).
+ * It is drained only inside the off-peak retry windows ({@code -Dbanking.payments.retryWindows},
+ * default {@code 13:00-16:00,20:00-23:00}), a bounded batch at a time on a single lane, and
+ * never while this node is dispatching the regular payments, so retries cannot hold them up.
+ */
 @Audit
 @Logging
 @Singleton
 @Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class PaymentScheduler {
 
-    @PersistenceContext(unitName = "bankingPU")
-    private EntityManager em;
+    private static final String TIMEZONE = "Asia/Colombo";
+    private static final ZoneId ZONE = ZoneId.of(TIMEZONE);
+    private static final int PAGE_SIZE = Integer.getInteger("banking.payments.pageSize", 500);
+    private static final int PARALLELISM = Integer.getInteger("banking.payments.parallelism", 4);
+    private static final String NODE = System.getProperty("com.sun.aas.instanceName", "node")
+            + "@" + ManagementFactory.getRuntimeMXBean().getName();
+    private static final List<int[]> WINDOWS = parseWindows(System.getProperty("banking.payments.windows", "09:00-12:00"));
+    private static final List<int[]> RETRY_WINDOWS = parseWindows(System.getProperty("banking.payments.retryWindows", "13:00-16:00,20:00-23:00"));
+    private static final int RETRY_BATCH_SIZE = Integer.getInteger("banking.payments.retryBatchSize", 100);
+
+    @Resource
+    private ManagedExecutorService executor;
 
     @EJB
     private ScheduledPaymentService scheduledPaymentService;
 
-    @EJB
-    private TransactionService transactionService;
+    private final TimingWheel wheel = new TimingWheel();
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final AtomicBoolean retrying = new AtomicBoolean();
 
-    @Schedule(hour = "12", minute = "16", second = "0", persistent = true, timezone = "Asia/Colombo")
-    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
-    public void executeDuePayments() {
-        System.out.println("SCHEDULER: Starting job run...");
-        System.out.println("PaymentScheduler starting job at " + java.time.LocalDateTime.now());
-        List<ScheduledPayment> duePayments = scheduledPaymentService.findDuePayments();
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
 
-        if (duePayments.isEmpty()) {
-            System.out.println("No due payments to process today.");
-            return;
+    /**
+     * Reloads the wheel with everything due today. Payments still waiting from yesterday are
+     * still due, so they are loaded again too.
+     */
+    @Schedule(hour = "0", minute = "0", second = "30", persistent = false, timezone = TIMEZONE)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void rebuild() {
+        List<DuePayment> due = loadDue();
+        synchronized (wheel) {
+            wheel.reset(minuteOfDay(LocalTime.now(ZONE)));
+            for (DuePayment payment : due) {
+                wheel.add(payment, plannedMinute(payment));
+            }
         }
-        System.out.println("Found " + duePayments.size() + " due payment(s) to process.");
+        System.out.println("SCHEDULER: Loaded " + due.size() + " due payment(s) onto today's wheel.");
+    }
 
-        for (ScheduledPayment payment : duePayments) {
-            try {
-                if (payment.getBiller() != null) {
-                    processScheduledBillPayment(payment);
-                } else if (payment.getToAccount() != null) {
-                    processScheduledUserTransfer(payment);
+    @Schedule(hour = "*", minute = "*/15", second = "10", persistent = false, timezone = TIMEZONE)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void pickUpNewlyDue() {
+        List<DuePayment> due = loadDue();
+        int added = 0;
+        synchronized (wheel) {
+            for (DuePayment payment : due) {
+                if (wheel.add(payment, plannedMinute(payment))) {
+                    added++;
                 }
+            }
+        }
+        if (added > 0) {
+            System.out.println("SCHEDULER: Added " + added + " newly due payment(s) to the wheel.");
+        }
+    }
 
-                scheduledPaymentService.reschedulePayment(payment);
-                System.out.println("  -> Successfully processed and rescheduled payment ID: " + payment.getId());
+    /**
+     * Runs the payments whose minute has come. A slow run makes the next ticks skip; they
+     * collect what they missed once it finishes.
+     */
+    @Schedule(hour = "*", minute = "*", second = "0", persistent = false, timezone = TIMEZONE)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void tick() {
+        if (!dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            ZonedDateTime now = ZonedDateTime.now(ZONE);
+            List<DuePayment> due;
+            int waiting;
+            synchronized (wheel) {
+                due = wheel.advanceTo(minuteOfDay(now.toLocalTime()));
+                waiting = wheel.size();
+            }
+            due = claim(due);
+            if (!due.isEmpty()) {
+                System.out.println("SCHEDULER: Ran " + dispatch(due, PARALLELISM) + "; " + waiting + " waiting today.");
+            }
+        } finally {
+            dispatching.set(false);
+        }
+    }
 
-            } catch (Exception e) {
-                System.err.println("  -> FAILED to process scheduled payment ID " + payment.getId() + ". Reason: " + e.getMessage());
-                scheduledPaymentService.markPaymentAsFailed(payment, e.getMessage());
+    @Schedule(hour = "*", minute = "*/5", second = "30", persistent = false, timezone = TIMEZONE)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void drainRetries() {
+        int now = minuteOfDay(LocalTime.now(ZONE));
+        if (RETRY_WINDOWS.stream().noneMatch(window -> now >= window[0] && now < window[1])
+                || dispatching.get() || !retrying.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<DuePayment> due = scheduledPaymentService.claimRetries(NODE, RETRY_BATCH_SIZE);
+            if (!due.isEmpty()) {
+                System.out.println("SCHEDULER: Retried " + dispatch(due, 1) + ".");
             }
+        } catch (EJBException e) {
+            System.err.println("SCHEDULER: Could not claim payment retries: " + e.getMessage());
+        } finally {
+            retrying.set(false);
         }
-        System.out.println("PaymentScheduler job finished at " + java.time.LocalDateTime.now());
     }
 
+    // --- Helper Methods ---
 
-    private void processScheduledUserTransfer(ScheduledPayment payment) {
-        System.out.println("  -> Type: User Transfer to account " + payment.getToAccount().getAccountNumber());
+    private List<DuePayment> loadDue() {
+        List<DuePayment> due = new ArrayList<>();
+        List<DuePayment> page;
+        DuePayment last = null;
+        while (!(page = scheduledPaymentService.findDuePaymentPage(last, PAGE_SIZE)).isEmpty()) {
+            due.addAll(page);
+            last = page.get(page.size() - 1);
+        }
+        return due;
+    }
 
-        transactionService.performSystemTransfer(
-                payment.getFromAccount().getId(),
-                payment.getToAccount().getId(),
-                payment.getAmount(),
-                "Recurring transfer to " + payment.getToAccount().getAccountNumber()
-        );
+    private List<DuePayment> claim(List<DuePayment> due) {
+        Set<Long> claimed = new HashSet<>();
+        for (int from = 0; from < due.size(); from += PAGE_SIZE) {
+            List<Long> page = new ArrayList<>();
+            for (DuePayment payment : due.subList(from, Math.min(due.size(), from + PAGE_SIZE))) {
+                page.add(payment.getId());
+            }
+            try {
+                claimed.addAll(scheduledPaymentService.claimDuePayments(page, NODE));
+            } catch (EJBException e) {
+                System.err.println("SCHEDULER: Could not claim " + page.size() + " payment(s); the next scan retries them: " + e.getMessage());
+            }
+        }
+        List<DuePayment> mine = new ArrayList<>(claimed.size());
+        synchronized (wheel) {
+            for (DuePayment payment : due) {
+                if (claimed.contains(payment.getId())) {
+                    mine.add(payment);
+                } else {
+                    wheel.forget(payment.getId());
+                }
+            }
+        }
+        return mine;
     }
 
-    private void processScheduledBillPayment(ScheduledPayment payment) {
-        System.out.println("  -> Type: Bill Payment to " + payment.getBiller().getBillerName());
+    /**
+     * Runs the payments on up to {@code parallelism} lanes and returns a summary for the log.
+     */
+    private String dispatch(List<DuePayment> due, int parallelism) {
+        long started = System.currentTimeMillis();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        Queue<Failure> failures = new ConcurrentLinkedQueue<>();
 
-        // Lock accounts to prevent race conditions
-        Account fromAccount = em.find(Account.class, payment.getFromAccount().getId(), LockModeType.PESSIMISTIC_WRITE);
-        Account toBillerAccount = em.find(Account.class, payment.getBiller().getInternalAccount().getId(), LockModeType.PESSIMISTIC_WRITE);
+        due.sort(Comparator.comparingLong(DuePayment::getFromAccountId).thenComparingLong(DuePayment::getId));
+        Map<Long, List<Long>> paymentIdsByAccount = new LinkedHashMap<>();
+        for (DuePayment payment : due) {
+            paymentIdsByAccount.computeIfAbsent(payment.getFromAccountId(), k -> new ArrayList<>()).add(payment.getId());
+        }
 
-        // Perform validations
-        if (fromAccount.getOwner().getStatus() != UserStatus.ACTIVE) {
-            throw new IllegalStateException("User account is not active.");
+        // Split the accounts over the lanes; each lane works through its accounts in turn.
+        List<List<Long>> lanes = new ArrayList<>();
+        int lane = 0;
+        for (List<Long> accountPayments : paymentIdsByAccount.values()) {
+            if (lanes.size() < parallelism) {
+                lanes.add(new ArrayList<>());
+            }
+            lanes.get(lane).addAll(accountPayments);
+            lane = (lane + 1) % parallelism;
+        }
+
+        List<CompletableFuture<Void>> running = new ArrayList<>(lanes.size());
+        for (List<Long> paymentIds : lanes) {
+            running.add(CompletableFuture.runAsync(() -> {
+                for (Long paymentId : paymentIds) {
+                    execute(paymentId, succeeded, skipped, failures);
+                }
+            }, executor));
         }
-        if (fromAccount.getBalance().compareTo(payment.getAmount()) < 0) {
-            throw new IllegalStateException("Insufficient funds.");
+        CompletableFuture.allOf(running.toArray(new CompletableFuture[0])).join();
+        recordFailures(new ArrayList<>(failures));
+
+        long duration = Math.max(1, System.currentTimeMillis() - started);
+        int processed = succeeded.get() + failures.size();
+        return String.format("%d payment(s) in %d ms: %d succeeded, %d failed, %d already handled (%.1f payments/s)",
+                due.size(), duration, succeeded.get(), failures.size(), skipped.get(), processed * 1000.0 / duration);
+    }
+
+    private void execute(Long paymentId, AtomicInteger succeeded, AtomicInteger skipped, Queue<Failure> failures) {
+        try {
+            if (scheduledPaymentService.executeDuePayment(paymentId, NODE)) {
+                succeeded.incrementAndGet();
+                System.out.println("  -> Successfully processed and rescheduled payment ID: " + paymentId);
+            } else {
+                skipped.incrementAndGet();
+            }
+        } catch (Exception e) {
+            String reason = e instanceof EJBException && e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            boolean retryable = RetryPolicy.isRetryable(e);
+            System.err.println("  -> FAILED to process scheduled payment ID " + paymentId + ". Reason: " + reason
+                    + (retryable ? " (will retry)" : ""));
+            // Recorded together after the run; the claim keeps other nodes off the payment meanwhile.
+            failures.add(new Failure(paymentId, reason, retryable));
+        }
+    }
+
+    /**
+     * Writes the run's failures a page per transaction. A page that fails is written one
+     * failure at a time so that one bad row cannot keep the others unrecorded.
+     */
+    private void recordFailures(List<Failure> failures) {
+        for (int from = 0; from < failures.size(); from += PAGE_SIZE) {
+            List<Failure> page = failures.subList(from, Math.min(failures.size(), from + PAGE_SIZE));
+            try {
+                scheduledPaymentService.recordFailures(page);
+            } catch (EJBException e) {
+                for (Failure failure : page) {
+                    try {
+                        scheduledPaymentService.recordFailures(Collections.singletonList(failure));
+                    } catch (EJBException single) {
+                        System.err.println("  -> Could not mark payment ID " + failure.getPaymentId() + " as failed: " + single.getMessage());
+                    }
+                }
+            }
         }
+    }
 
-        // Perform debit and credit
-        fromAccount.setBalance(fromAccount.getBalance().subtract(payment.getAmount()));
-        toBillerAccount.setBalance(toBillerAccount.getBalance().add(payment.getAmount()));
+    /**
+     * The payment's own execution time, or a minute inside the payment windows derived from
+     * its id, so it lands in the same minute every time the wheel is rebuilt.
+     */
+    private static int plannedMinute(DuePayment payment) {
+        if (payment.getExecutionTime() != null) {
+            return minuteOfDay(payment.getExecutionTime());
+        }
+        int total = 0;
+        for (int[] window : WINDOWS) {
+            total += window[1] - window[0];
+        }
+        int offset = (int) Math.floorMod(payment.getId() * 0x9E3779B97F4A7C15L >>> 16, (long) total);
+        for (int[] window : WINDOWS) {
+            int length = window[1] - window[0];
+            if (offset < length) {
+                return window[0] + offset;
+            }
+            offset -= length;
+        }
+        return WINDOWS.get(0)[0];
+    }
 
-        // Log the transaction
-        Transaction log = new Transaction();
-        log.setTransactionType(TransactionType.BILL_PAYMENT);
-        log.setStatus(TransactionStatus.COMPLETED);
-        log.setFromAccount(fromAccount);
-        log.setToAccount(toBillerAccount);
-        log.setAmount(payment.getAmount());
-        log.setTransactionDate(LocalDateTime.now());
-        log.setDescription("Scheduled bill payment to " + payment.getBiller().getBillerName());
-        log.setUserMemo("Ref: " + payment.getBillerReferenceNumber());
-        log.setRunningBalance(fromAccount.getBalance());
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
 
-        em.persist(log);
+    private static List<int[]> parseWindows(String spec) {
+        List<int[]> windows = new ArrayList<>();
+        for (String window : spec.split(",")) {
+            String[] bounds = window.trim().split("-");
+            int start = minuteOfDay(LocalTime.parse(bounds[0].trim()));
+            int end = minuteOfDay(LocalTime.parse(bounds[1].trim()));
+            if (end <= start) {
+                throw new IllegalArgumentException("Payment window '" + window + "' must end after it starts.");
+            }
+            windows.add(new int[]{start, end});
+        }
+        return windows;
     }
-}
\ No newline at end of file
+}
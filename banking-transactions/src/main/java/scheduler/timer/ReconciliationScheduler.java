@@ -0,0 +1,142 @@
+package scheduler.timer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Asynchronous;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import service.ReconciliationService;
+import service.ReconciliationService.Mismatch;
+import service.ReconciliationService.RangeResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks every night that each account's stored balance equals what its ledger entries add up to.
+ *
+ * The account id space is split in halves on a fork/join pool until each piece holds a few
+ * thousand ids; each piece is checked with three grouped queries that only read entries
+ * posted since the accounts' latest snapshots. Mismatches are checked once more under the
+ * account's row lock before they go into the report. Runs after the 00:30 snapshots.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ReconciliationScheduler {
+
+    private static final long IDS_PER_PARTITION = 5_000;
+
+    // Each worker holds a database connection while it queries, so stay well below the pool size.
+    private static final int PARALLELISM = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @EJB
+    private ReconciliationService reconciliationService;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(PARALLELISM, threadFactory, null, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Schedule(hour = "1", minute = "0", second = "0", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void reconcileNightly() {
+        reconcile();
+    }
+
+    /**
+     * Starts a run outside the nightly schedule, e.g. from the admin console.
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void reconcileNow() {
+        reconcile();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    // --- Helper Methods ---
+
+    private void reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            System.out.println("RECONCILIATION: A run is already in progress; skipping.");
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Long runId = null;
+        try {
+            runId = reconciliationService.startRun();
+            long[] bounds = reconciliationService.accountIdBounds();
+            RangeResult result = bounds == null
+                    ? new RangeResult()
+                    : pool.invoke(new RangeCheck(bounds[0], bounds[1] + 1));
+
+            List<Mismatch> confirmed = new ArrayList<>();
+            for (Mismatch candidate : result.getMismatches()) {
+                Mismatch mismatch = reconciliationService.recheck(candidate.getAccountId());
+                if (mismatch != null) {
+                    confirmed.add(mismatch);
+                }
+            }
+
+            long duration = System.currentTimeMillis() - started;
+            reconciliationService.finishRun(runId, result.getAccountsChecked(), result.getEntriesScanned(), confirmed, duration);
+            System.out.println("RECONCILIATION: Checked " + result.getAccountsChecked() + " account(s) and "
+                    + result.getEntriesScanned() + " ledger entries in " + duration + " ms; "
+                    + confirmed.size() + " discrepancy(ies).");
+        } catch (RuntimeException e) {
+            System.err.println("RECONCILIATION: Run failed: " + e.getMessage());
+            if (runId != null) {
+                reconciliationService.failRun(runId, e.getMessage(), System.currentTimeMillis() - started);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private final class RangeCheck extends RecursiveTask<RangeResult> {
+        private final long fromId;
+        private final long toId;
+
+        RangeCheck(long fromId, long toId) {
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected RangeResult compute() {
+            if (toId - fromId <= IDS_PER_PARTITION) {
+                return reconciliationService.checkRange(fromId, toId);
+            }
+            long middle = fromId + (toId - fromId) / 2;
+            RangeCheck upper = new RangeCheck(middle, toId);
+            upper.fork();
+            RangeResult lower = new RangeCheck(fromId, middle).compute();
+            return new RangeResult().merge(lower).merge(upper.join());
+        }
+    }
+}
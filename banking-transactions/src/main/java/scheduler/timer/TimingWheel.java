@@ -0,0 +1,118 @@
+package scheduler.timer;
+
+import scheduler.ScheduledPaymentService.DuePayment;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A two-level timing wheel over one day: 24 hour buckets, and 60 minute buckets for the
+ * current hour. Entries wait in their hour bucket and are spread over the minute buckets when
+ * their hour begins, so adding and expiring entries never scans the whole day.
+ * Not thread-safe; the owner synchronizes on it.
+ */
+final class TimingWheel {
+
+    private final List<List<Slot>> hours = buckets(24);
+    private final List<List<Slot>> minutes = buckets(60);
+    private final List<DuePayment> ready = new ArrayList<>();
+    private final Set<Long> known = new HashSet<>();
+    private int cursor;
+    private int minuteHour;
+
+    TimingWheel() {
+        reset(0);
+    }
+
+    /**
+     * Empties the wheel and positions it just before {@code minuteOfDay}.
+     */
+    void reset(int minuteOfDay) {
+        hours.forEach(List::clear);
+        minutes.forEach(List::clear);
+        ready.clear();
+        known.clear();
+        cursor = minuteOfDay - 1;
+        minuteHour = Math.floorDiv(cursor, 60);
+    }
+
+    /**
+     * Schedules the payment for the given minute of the day; a minute already passed makes it
+     * due on the next advance. A payment already on the wheel today is ignored.
+     *
+     * @return false if the payment was already known
+     */
+    boolean add(DuePayment payment, int minuteOfDay) {
+        if (!known.add(payment.getId())) {
+            return false;
+        }
+        if (minuteOfDay <= cursor) {
+            ready.add(payment);
+        } else if (minuteOfDay / 60 == minuteHour) {
+            minutes.get(minuteOfDay % 60).add(new Slot(payment, minuteOfDay));
+        } else {
+            hours.get(minuteOfDay / 60).add(new Slot(payment, minuteOfDay));
+        }
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to {@code minuteOfDay} and returns every payment that came due.
+     */
+    List<DuePayment> advanceTo(int minuteOfDay) {
+        while (cursor < minuteOfDay) {
+            cursor++;
+            if (cursor / 60 != minuteHour) {
+                minuteHour = cursor / 60;
+                List<Slot> hour = hours.get(minuteHour);
+                for (Slot slot : hour) {
+                    minutes.get(slot.minuteOfDay % 60).add(slot);
+                }
+                hour.clear();
+            }
+            List<Slot> minute = minutes.get(cursor % 60);
+            for (Slot slot : minute) {
+                ready.add(slot.payment);
+            }
+            minute.clear();
+        }
+        List<DuePayment> due = new ArrayList<>(ready);
+        ready.clear();
+        return due;
+    }
+
+    /**
+     * Lets a payment that was handed out be added again, e.g. when another node claimed it
+     * and might not finish it.
+     */
+    void forget(long paymentId) {
+        known.remove(paymentId);
+    }
+
+    int size() {
+        int size = ready.size();
+        for (List<Slot> bucket : hours) size += bucket.size();
+        for (List<Slot> bucket : minutes) size += bucket.size();
+        return size;
+    }
+
+    private static List<List<Slot>> buckets(int count) {
+        List<List<Slot>> buckets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        return buckets;
+    }
+
+    private static final class Slot {
+        private final DuePayment payment;
+        private final int minuteOfDay;
+
+        Slot(DuePayment payment, int minuteOfDay) {
+            this.payment = payment;
+            this.minuteOfDay = minuteOfDay;
+        }
+    }
+}
@@ -0,0 +1,741 @@
+package service;
+
+import dto.TransactionRequestDTO;
+import entity.Account;
+import entity.BalanceEngineCheckpoint;
+import entity.LedgerEntry;
+import entity.Transaction;
+import enums.EntryDirection;
+import enums.TransactionStatus;
+import enums.TransactionType;
+import exception.AccountStatusException;
+import exception.InsufficientFundsException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.EJBException;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.SessionContext;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import util.TransactionCallbacks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Experimental in-memory balance engine for a configured set of high-volume accounts.
+ *
+ * The balances of those accounts live in memory, split into shards by account id, and each
+ * shard is changed by its own writer thread only, so debits need no locks. A transfer out of
+ * one of these accounts is checked and applied by the source account's shard, appended to the
+ * shard's {@link BalanceJournal} and acknowledged once the journal has been forced to disk.
+ * Every two seconds the journaled transfers are written to the database (transactions, ledger
+ * entries and balances) together with the shard's checkpoint; on startup the balances are
+ * loaded from the database and any journal records after the checkpoint are replayed.
+ *
+ * Off unless {@code -Dbanking.balanceEngine.accounts} lists account numbers. On startup the
+ * engine claims each listed account that no other node has claimed by writing its node name
+ * to {@code account.engine_node}, and serves the accounts claimed for this node. Every other
+ * money path refuses a claimed account, on any node, since it could not tell the in-memory
+ * balance about the change. A claim outlives a crash, so the restarted node can replay its
+ * journal; it is only given up on a clean shutdown with everything written to the database.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class BalanceEngine {
+
+    private static final String ACCOUNTS = System.getProperty("banking.balanceEngine.accounts", "");
+    private static final int SHARDS = Integer.getInteger("banking.balanceEngine.shards", 4);
+    private static final String JOURNAL_DIR = System.getProperty("banking.balanceEngine.journalDir");
+    // Must stay the same across restarts of a node, since its journal is on its own disk.
+    private static final String NODE = System.getProperty("banking.balanceEngine.node",
+            System.getProperty("com.sun.aas.instanceName", "node") + "@" + hostName());
+
+    private static final int AMOUNT_SCALE = 4;
+    private static final int MAX_MEMO_LENGTH = 255; // Transaction.userMemo
+    private static final int MAX_DRAIN = 256;
+    private static final int FLUSH_BATCH_SIZE = 500;
+    private static final long COMPACT_THRESHOLD_BYTES = 64L * 1024 * 1024;
+    private static final long CALLER_TIMEOUT_SECONDS = 10;
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int LATENCY_SAMPLES = 10_000;
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    @Resource
+    private SessionContext context;
+
+    @EJB
+    private DashboardStatistics statistics;
+
+    private final Map<Long, ManagedAccount> accountsById = new ConcurrentHashMap<>();
+    private final Map<String, ManagedAccount> accountsByNumber = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private Shard[] shards = new Shard[0];
+    private volatile boolean stopping;
+
+    @PostConstruct
+    public void init() {
+        Set<String> configured = Arrays.stream(ACCOUNTS.split(","))
+                .map(String::trim)
+                .filter(number -> !number.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!configured.isEmpty()) {
+            em.createQuery("UPDATE Account a SET a.engineNode = :node WHERE a.accountNumber IN :numbers AND a.engineNode IS NULL")
+                    .setParameter("node", NODE)
+                    .setParameter("numbers", configured)
+                    .executeUpdate();
+        }
+        // Also accounts claimed before a crash and no longer configured, so their journaled transfers are written.
+        List<Account> accounts = em.createQuery(
+                        "SELECT a FROM Account a LEFT JOIN FETCH a.owner WHERE a.engineNode = :node", Account.class)
+                .setParameter("node", NODE)
+                .getResultList();
+        if (accounts.isEmpty()) {
+            return;
+        }
+        // Holds placed before an account was claimed stay reserved; no new ones are placed and none settle while it is served.
+        Map<Long, Long> heldUnits = new HashMap<>();
+        for (Object[] row : em.createQuery(
+                        "SELECT h.account.id, SUM(h.amount) FROM BalanceHold h JOIN h.transaction t " +
+                                "WHERE h.account.engineNode = :node AND t.status = :pending GROUP BY h.account.id", Object[].class)
+                .setParameter("node", NODE)
+                .setParameter("pending", TransactionStatus.PENDING)
+                .getResultList()) {
+            heldUnits.put((Long) row[0], toUnits((BigDecimal) row[1]));
+        }
+        Set<String> unclaimed = new TreeSet<>(configured);
+        for (Account account : accounts) {
+            manage(account.getId(), account.getAccountNumber(), account.getOwner() != null ? account.getOwner().getId() : null,
+                    toUnits(account.getBalance()), heldUnits.getOrDefault(account.getId(), 0L));
+            if (!unclaimed.remove(account.getAccountNumber())) {
+                System.err.println("BALANCE ENGINE: Account " + account.getAccountNumber() + " is no longer configured but still claimed by "
+                        + NODE + "; serving it until a clean shutdown releases it.");
+            }
+        }
+        if (!unclaimed.isEmpty()) {
+            System.err.println("BALANCE ENGINE: " + unclaimed.size() + " configured account(s) do not exist or are claimed by another node and are ignored.");
+        }
+
+        Path directory = JOURNAL_DIR != null
+                ? Paths.get(JOURNAL_DIR)
+                : Paths.get(System.getProperty("com.sun.aas.instanceRoot", "."), "balance-journal");
+        shards = new Shard[SHARDS];
+        int replayed = 0;
+        try {
+            Files.createDirectories(directory);
+            for (int i = 0; i < SHARDS; i++) {
+                BalanceEngineCheckpoint checkpoint = em.find(BalanceEngineCheckpoint.class, i);
+                long flushedSequence = checkpoint != null ? checkpoint.getLastSequence() : 0;
+                shards[i] = new Shard(i, new BalanceJournal(directory.resolve("shard-" + i + ".wal")), flushedSequence);
+                replayed += shards[i].replay(flushedSequence);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Balance engine journal could not be opened in " + directory + ".", e);
+        }
+
+        for (Shard shard : shards) {
+            shard.writer = threadFactory.newThread(shard);
+            shard.writer.setName("balance-engine-shard-" + shard.index);
+            shard.writer.start();
+        }
+        System.out.println("BALANCE ENGINE: " + NODE + " serving " + accountsById.size() + " account(s) in " + SHARDS
+                + " shard(s) from " + directory + "; replayed " + replayed + " journaled transfer(s).");
+    }
+
+    /**
+     * Stops the writers and gives up this node's claims if every journaled transfer is in the
+     * database. Otherwise the claims stay, and the next start replays the journal.
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        if (shards.length == 0) {
+            return;
+        }
+        for (Shard shard : shards) {
+            shard.inbox.offer(Command.STOP);
+        }
+        boolean flushed = flushing.compareAndSet(false, true); // No flush may start from here on.
+        for (Shard shard : shards) {
+            try {
+                shard.writer.join(TimeUnit.SECONDS.toMillis(CALLER_TIMEOUT_SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flushed = false;
+            }
+            flushed &= !shard.writer.isAlive() && shard.unflushed.isEmpty();
+        }
+        if (!flushed) {
+            System.err.println("BALANCE ENGINE: Stopped with transfers not yet in the database; " + NODE + " keeps its claims until it restarts.");
+            return;
+        }
+        int released = em.createQuery("UPDATE Account a SET a.engineNode = NULL WHERE a.engineNode = :node")
+                .setParameter("node", NODE)
+                .executeUpdate();
+        System.out.println("BALANCE ENGINE: Released " + released + " account(s) claimed by " + NODE + ".");
+    }
+
+    public boolean isEnabled() {
+        return !accountsById.isEmpty();
+    }
+
+    public boolean isManaged(String accountNumber) {
+        return accountNumber != null && accountsByNumber.containsKey(accountNumber);
+    }
+
+    public boolean isManaged(Long accountId) {
+        return accountId != null && accountsById.containsKey(accountId);
+    }
+
+    /**
+     * Whether the engine of any node serves the account, in which case no other path may
+     * change its balance. Unlike {@link #isManaged}, this also covers other nodes' accounts.
+     */
+    public boolean isClaimed(Account account) {
+        return account != null && account.getEngineNode() != null;
+    }
+
+    /**
+     * The in-memory balance, which may be ahead of the account table by up to one flush.
+     */
+    public BigDecimal balanceOf(Long accountId) {
+        ManagedAccount account = accountsById.get(accountId);
+        if (account == null) {
+            throw new IllegalArgumentException("Account is not served by the balance engine.");
+        }
+        return fromUnits(account.units);
+    }
+
+    /**
+     * Applies a customer transfer out of a managed account and returns once it is on disk.
+     * Makes the same checks, and throws the same exceptions, as the database path.
+     */
+    public void transfer(UserPrincipalCache.Entry user, TransactionRequestDTO request) {
+        if (!user.isActive()) {
+            throw new AccountStatusException("Your account is not active. Please contact support.");
+        }
+        ManagedAccount from = accountsByNumber.get(request.getFromAccountNumber());
+        if (from == null) {
+            throw new IllegalArgumentException("Account with number '" + request.getFromAccountNumber() + "' not found.");
+        }
+        if (from.ownerId == null || from.ownerId != user.getId()) {
+            throw new SecurityException("Authorization error: You do not own the source account.");
+        }
+        long units = checkedUnits(request.getAmount(), request.getUserMemo());
+        if (from.number.equals(request.getToAccountNumber())) {
+            throw new IllegalArgumentException("Cannot transfer funds to the same account.");
+        }
+        Long toAccountId = accountIdOf(request.getToAccountNumber());
+        submit(new Command(BalanceJournal.Record.CUSTOMER_TRANSFER, from, toAccountId, units, request.getUserMemo()),
+                "Insufficient funds for this transfer.");
+    }
+
+    /**
+     * Writes journaled transfers to the database. A batch that fails stays queued and is
+     * retried on the next run; the journal still holds it, so it survives a restart too.
+     */
+    @Schedule(second = "*/2", minute = "*", hour = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void flushJournaled() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            BalanceEngine self = context.getBusinessObject(BalanceEngine.class);
+            for (Shard shard : shards) {
+                List<BalanceJournal.Record> batch;
+                while (!(batch = shard.unflushedBatch()).isEmpty()) {
+                    try {
+                        self.writeBatch(shard.index, batch);
+                    } catch (EJBException e) {
+                        System.err.println("BALANCE ENGINE: Could not write " + batch.size() + " journaled transfer(s) of shard "
+                                + shard.index + ": " + e.getMessage());
+                        break;
+                    }
+                }
+                if (shard.unflushed.isEmpty()) {
+                    shard.inbox.offer(Command.COMPACT);
+                }
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * Applies journaled transfers of one shard to the database in sequence order and moves
+     * the shard's checkpoint past them, all in one transaction.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void writeBatch(int shardIndex, List<BalanceJournal.Record> batch) {
+        Set<Long> accountIds = new TreeSet<>();
+        for (BalanceJournal.Record record : batch) {
+            accountIds.add(record.getFromAccountId());
+            accountIds.add(record.getToAccountId());
+        }
+        Map<Long, Account> lockedAccounts = new HashMap<>();
+        for (Account account : em.createQuery(
+                        "SELECT a FROM Account a WHERE a.id IN :ids ORDER BY a.id", Account.class)
+                .setParameter("ids", accountIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList()) {
+            lockedAccounts.put(account.getId(), account);
+        }
+        for (BalanceJournal.Record record : batch) {
+            // A claim removed by hand while the node runs would let other paths change the balance too.
+            if (!NODE.equals(lockedAccounts.get(record.getFromAccountId()).getEngineNode())) {
+                throw new IllegalStateException("Account " + record.getFromAccountId() + " is no longer claimed by " + NODE + ".");
+            }
+        }
+
+        BalanceEngineCheckpoint checkpoint = em.find(BalanceEngineCheckpoint.class, shardIndex, LockModeType.PESSIMISTIC_WRITE);
+        long flushedSequence = checkpoint != null ? checkpoint.getLastSequence() : 0;
+        long lastSequence = flushedSequence;
+        for (BalanceJournal.Record record : batch) {
+            if (record.getSequence() <= flushedSequence) {
+                continue; // Written before, e.g. by a run whose commit outcome was lost.
+            }
+            Account fromAccount = lockedAccounts.get(record.getFromAccountId());
+            Account toAccount = lockedAccounts.get(record.getToAccountId());
+            BigDecimal amount = fromUnits(record.getUnits());
+            fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
+            toAccount.setBalance(toAccount.getBalance().add(amount));
+
+            Transaction transactionLog = new Transaction();
+            transactionLog.setTransactionType(TransactionType.TRANSFER);
+            transactionLog.setStatus(TransactionStatus.COMPLETED);
+            transactionLog.setFromAccount(fromAccount);
+            transactionLog.setToAccount(toAccount);
+            transactionLog.setAmount(amount);
+            transactionLog.setTransactionDate(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getEpochMillis()), ZoneId.systemDefault()));
+            transactionLog.setDescription((record.getKind() == BalanceJournal.Record.SCHEDULED_TRANSFER ? "Scheduled Transfer to " : "Transfer to ")
+                    + (toAccount.getOwner() != null ? toAccount.getOwner().getFirstName() : toAccount.getAccountNumber()));
+            transactionLog.setUserMemo(columnMemo(record.getMemo()));
+            transactionLog.setRunningBalance(fromAccount.getBalance());
+            em.persist(transactionLog);
+            // Written directly: LedgerService refuses movements on managed accounts that bypass the engine.
+            em.persist(ledgerEntry(transactionLog, fromAccount, EntryDirection.DEBIT));
+            em.persist(ledgerEntry(transactionLog, toAccount, EntryDirection.CREDIT));
+            statistics.recordTransaction(transactionLog);
+            lastSequence = record.getSequence();
+        }
+
+        if (checkpoint == null) {
+            checkpoint = BalanceEngineCheckpoint.builder().shard(shardIndex).build();
+            em.persist(checkpoint);
+        }
+        checkpoint.setLastSequence(lastSequence);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+
+        Shard shard = shards[shardIndex];
+        TransactionCallbacks.afterCommit(txRegistry, () -> shard.markFlushed(batch.size()));
+    }
+
+    /**
+     * Serves an account from memory. Called for each claimed account while starting up.
+     *
+     * @param heldUnits the account's open card holds, which transfers may not spend
+     */
+    void manage(long id, String number, Long ownerId, long units, long heldUnits) {
+        ManagedAccount managed = new ManagedAccount(id, number, ownerId, (int) (id % SHARDS), units, heldUnits);
+        accountsById.put(managed.id, managed);
+        accountsByNumber.put(managed.number, managed);
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Checks what the writer and the database would otherwise refuse only after the balance
+     * has moved, and returns the amount in units.
+     */
+    private static long checkedUnits(BigDecimal amount, String memo) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be a positive value.");
+        }
+        if (amount.stripTrailingZeros().scale() > AMOUNT_SCALE) {
+            throw new IllegalArgumentException("Transfer amount cannot have more than " + AMOUNT_SCALE + " decimal places.");
+        }
+        if (memo != null && memo.length() > MAX_MEMO_LENGTH) {
+            throw new IllegalArgumentException("Memo cannot be longer than " + MAX_MEMO_LENGTH + " characters.");
+        }
+        try {
+            return toUnits(amount);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Transfer amount is too large.");
+        }
+    }
+
+    private static String columnMemo(String memo) {
+        // Records journaled before memos were length-checked must not hold up the flush for good
+        return memo != null && memo.length() > MAX_MEMO_LENGTH ? memo.substring(0, MAX_MEMO_LENGTH) : memo;
+    }
+
+    private void submit(Command command, String insufficientFundsMessage) {
+        Shard shard = shards[command.from.shard];
+        if (stopping || shard.stopped || !shard.inbox.offer(command)) {
+            throw new IllegalStateException("The bank is busy right now. Please try again in a moment.");
+        }
+        try {
+            if (!command.result.get(CALLER_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new InsufficientFundsException(insufficientFundsMessage);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Transfer failed.", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("The transfer is taking longer than expected. Check your history before trying again.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Transfer interrupted.");
+        }
+    }
+
+    private Long accountIdOf(String accountNumber) {
+        ManagedAccount managed = accountNumber != null ? accountsByNumber.get(accountNumber) : null;
+        if (managed != null) {
+            return managed.id;
+        }
+        List<Account> found = em.createQuery("SELECT a FROM Account a WHERE a.accountNumber = :accountNumber", Account.class)
+                .setParameter("accountNumber", accountNumber)
+                .getResultList();
+        if (found.isEmpty()) {
+            throw new IllegalArgumentException("Account with number '" + accountNumber + "' not found.");
+        }
+        if (isClaimed(found.get(0))) {
+            // Served by another node's engine, which would not see the credit.
+            throw new IllegalStateException("Transfers into this account are not accepted at the moment.");
+        }
+        return found.get(0).getId();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    private static LedgerEntry ledgerEntry(Transaction transaction, Account account, EntryDirection direction) {
+        return LedgerEntry.builder()
+                .transaction(transaction)
+                .account(account)
+                .direction(direction)
+                .amount(transaction.getAmount())
+                .balanceAfter(account.getBalance())
+                .postedAt(transaction.getTransactionDate())
+                .build();
+    }
+
+    private static long toUnits(BigDecimal amount) {
+        return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal fromUnits(long units) {
+        return BigDecimal.valueOf(units, AMOUNT_SCALE);
+    }
+
+    private static final class ManagedAccount {
+        private final long id;
+        private final String number;
+        private final Long ownerId;
+        private final int shard;
+        private final long heldUnits;
+        private volatile long units; // Written only by the writer of this account's shard.
+
+        ManagedAccount(long id, String number, Long ownerId, int shard, long units, long heldUnits) {
+            this.id = id;
+            this.number = number;
+            this.ownerId = ownerId;
+            this.shard = shard;
+            this.units = units;
+            this.heldUnits = heldUnits;
+        }
+    }
+
+    /**
+     * A message to a shard's writer: a transfer out of one of its accounts, a credit from a
+     * transfer another shard has made durable, or a request to compact the journal.
+     */
+    private static final class Command {
+        private static final Command STOP = new Command(null, 0);
+        private static final Command COMPACT = new Command(null, 0);
+
+        private final byte kind;
+        private final ManagedAccount from;
+        private final long toAccountId;
+        private final long units;
+        private final String memo;
+        private final long enqueuedAtNanos = System.nanoTime();
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private final ManagedAccount creditTo;
+
+        Command(byte kind, ManagedAccount from, long toAccountId, long units, String memo) {
+            this.kind = kind;
+            this.from = from;
+            this.toAccountId = toAccountId;
+            this.units = units;
+            this.memo = memo;
+            this.creditTo = null;
+        }
+
+        Command(ManagedAccount creditTo, long units) {
+            this.kind = 0;
+            this.from = null;
+            this.toAccountId = 0;
+            this.units = units;
+            this.memo = null;
+            this.creditTo = creditTo;
+        }
+    }
+
+    final class Shard implements Runnable {
+        private final int index;
+        private final BalanceJournal journal;
+        private final BlockingQueue<Command> inbox = new LinkedBlockingQueue<>();
+        private final ConcurrentLinkedQueue<BalanceJournal.Record> unflushed = new ConcurrentLinkedQueue<>();
+        private long nextSequence;
+        private Thread writer;
+        private volatile boolean stopped; // After shutdown or a journal failure; the other shards carry on.
+
+        // Touched only by the writer thread.
+        private final long[] latencySamples = new long[LATENCY_SAMPLES];
+        private int sampleCount;
+        private long acknowledgedInWindow;
+        private long rejectedInWindow;
+        private long syncsInWindow;
+        private long windowStartNanos;
+
+        Shard(int index, BalanceJournal journal, long flushedSequence) {
+            this.index = index;
+            this.journal = journal;
+            this.nextSequence = flushedSequence + 1;
+        }
+
+        /**
+         * Re-applies the journal records the database has not seen yet and queues them for
+         * writing. Runs before any writer thread starts.
+         */
+        int replay(long flushedSequence) throws IOException {
+            int replayed = 0;
+            for (BalanceJournal.Record record : journal.recover()) {
+                nextSequence = Math.max(nextSequence, record.getSequence() + 1);
+                if (record.getSequence() <= flushedSequence) {
+                    continue;
+                }
+                ManagedAccount from = accountsById.get(record.getFromAccountId());
+                ManagedAccount to = accountsById.get(record.getToAccountId());
+                if (from != null) from.units -= record.getUnits();
+                if (to != null) to.units += record.getUnits();
+                unflushed.add(record);
+                replayed++;
+            }
+            return replayed;
+        }
+
+        List<BalanceJournal.Record> unflushedBatch() {
+            List<BalanceJournal.Record> batch = new ArrayList<>();
+            Iterator<BalanceJournal.Record> pending = unflushed.iterator();
+            while (batch.size() < FLUSH_BATCH_SIZE && pending.hasNext()) {
+                batch.add(pending.next());
+            }
+            return batch;
+        }
+
+        void markFlushed(int count) {
+            for (int i = 0; i < count; i++) {
+                unflushed.poll();
+            }
+        }
+
+        @Override
+        public void run() {
+            windowStartNanos = System.nanoTime();
+            List<Command> drained = new ArrayList<>(MAX_DRAIN);
+            List<Command> accepted = new ArrayList<>(MAX_DRAIN);
+            List<BalanceJournal.Record> appended = new ArrayList<>(MAX_DRAIN);
+            boolean running = true;
+            while (running) {
+                boolean compactRequested = false;
+                try {
+                    Command first = inbox.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        reportIfDue();
+                        continue;
+                    }
+                    drained.add(first);
+                    inbox.drainTo(drained, MAX_DRAIN - 1);
+                    for (Command command : drained) {
+                        if (command == Command.STOP) {
+                            running = false;
+                        } else if (command == Command.COMPACT) {
+                            compactRequested = true;
+                        } else if (command.creditTo != null) {
+                            command.creditTo.units += command.units;
+                        } else if (command.from.units - command.from.heldUnits < command.units) {
+                            command.result.complete(false);
+                            rejectedInWindow++;
+                        } else {
+                            BalanceJournal.Record record = new BalanceJournal.Record(nextSequence, command.kind,
+                                    command.from.id, command.toAccountId, command.units, System.currentTimeMillis(), command.memo);
+                            try {
+                                journal.append(record);
+                            } catch (IllegalArgumentException e) {
+                                // Nothing was buffered; refuse this transfer and keep serving the rest
+                                command.result.completeExceptionally(e);
+                                rejectedInWindow++;
+                                continue;
+                            }
+                            nextSequence++;
+                            command.from.units -= command.units;
+                            accepted.add(command);
+                            appended.add(record);
+                        }
+                    }
+                    if (!accepted.isEmpty()) {
+                        journal.sync();
+                        acknowledge(accepted, appended);
+                    }
+                    // Only after this pass's records are in unflushed, so a compaction cannot drop them
+                    if (compactRequested) {
+                        compactIfIdle();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                } catch (IOException | RuntimeException e) {
+                    // Nothing unacknowledged in this pass is known to be on disk; stop this shard rather than risk acknowledging one.
+                    System.err.println("BALANCE ENGINE: Journal of shard " + index + " failed; shard stopped: " + e.getMessage());
+                    for (Command command : accepted) {
+                        if (command.result.isDone()) {
+                            continue;
+                        }
+                        command.from.units += command.units; // Back to what the durable journal says.
+                        command.result.completeExceptionally(new IllegalStateException("The transfer could not be confirmed. Check your history before trying again."));
+                    }
+                    running = false;
+                } finally {
+                    drained.clear();
+                    accepted.clear();
+                    appended.clear();
+                }
+                reportIfDue();
+            }
+            stopped = true;
+            List<Command> left = new ArrayList<>(inbox);
+            inbox.clear();
+            for (Command command : left) {
+                command.result.completeExceptionally(new IllegalStateException(stopping
+                        ? "The server is shutting down. Please try again."
+                        : "This account is not available right now. Please try again later."));
+            }
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("BALANCE ENGINE: Could not close journal of shard " + index + ": " + e.getMessage());
+            }
+        }
+
+        private void acknowledge(List<Command> accepted, List<BalanceJournal.Record> appended) {
+            long now = System.nanoTime();
+            for (int i = 0; i < accepted.size(); i++) {
+                Command command = accepted.get(i);
+                unflushed.add(appended.get(i));
+                // Credits travel only after the debit is durable, so nobody can spend money a crash could take back.
+                ManagedAccount to = accountsById.get(command.toAccountId);
+                if (to != null) {
+                    if (to.shard == index) {
+                        to.units += command.units;
+                    } else {
+                        shards[to.shard].inbox.add(new Command(to, command.units));
+                    }
+                }
+                command.result.complete(true);
+                if (sampleCount < LATENCY_SAMPLES) {
+                    latencySamples[sampleCount++] = now - command.enqueuedAtNanos;
+                }
+            }
+            acknowledgedInWindow += accepted.size();
+            syncsInWindow++;
+        }
+
+        private void compactIfIdle() throws IOException {
+            // Only safe while every record in the file is in the database and nothing is buffered.
+            if (unflushed.isEmpty() && journal.size() > COMPACT_THRESHOLD_BYTES) {
+                journal.reset();
+                System.out.println("BALANCE ENGINE: Compacted journal of shard " + index + ".");
+            }
+        }
+
+        private void reportIfDue() {
+            long now = System.nanoTime();
+            long elapsed = now - windowStartNanos;
+            if (elapsed < REPORT_INTERVAL_NANOS) {
+                return;
+            }
+            if (acknowledgedInWindow > 0) {
+                long[] sorted = Arrays.copyOf(latencySamples, sampleCount);
+                Arrays.sort(sorted);
+                long p99Micros = TimeUnit.NANOSECONDS.toMicros(sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))]);
+                double tps = acknowledgedInWindow * 1_000_000_000.0 / elapsed;
+                System.out.println(String.format("BALANCE ENGINE: Shard %d %.1f transfers/s, p99 %.2f ms, %.1f per fsync, %d rejected, %d awaiting write.",
+                        index, tps, p99Micros / 1000.0, (double) acknowledgedInWindow / syncsInWindow, rejectedInWindow, unflushed.size()));
+            }
+            sampleCount = 0;
+            acknowledgedInWindow = 0;
+            rejectedInWindow = 0;
+            syncsInWindow = 0;
+            windowStartNanos = now;
+        }
+    }
+}
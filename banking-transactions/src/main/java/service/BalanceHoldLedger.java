@@ -0,0 +1,315 @@
+package service;
+
+import entity.Account;
+import entity.BalanceHold;
+import entity.Transaction;
+import enums.TransactionStatus;
+import enums.TransactionType;
+import exception.BusinessRuleException;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.EJBException;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.SessionContext;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of funds held against accounts by pending card authorizations.
+ *
+ * A hold is a PENDING card-payment {@code Transaction} plus a {@code balance_hold} row; the
+ * account balance only changes when the hold is captured. The total held against an account
+ * is summed from its open holds while the account row is locked, so every node sees the same
+ * available balance. A capture or release is recorded on the hold row in the caller's
+ * transaction and applied a few seconds later by the settlement job, together with expired
+ * holds, in one transaction per batch that locks each affected account once. Amounts a card
+ * authorization held but did not capture are taken off the card's daily spend counter then.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class BalanceHoldLedger {
+
+    private static final int AMOUNT_SCALE = 4;
+    private static final int HOLD_LIFETIME_DAYS = 7;
+    private static final int MAX_BATCH_SIZE = 500;
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Resource
+    private SessionContext context;
+
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private LedgerService ledgerService;
+
+    @EJB
+    private BalanceEngine balanceEngine;
+
+    /**
+     * Holds the amount against the account if its available balance covers it. The account
+     * row is locked like for any other debit, so holds and transfers cannot both spend the
+     * same funds. Accounts served by the balance engine take no holds, as a capture would have
+     * to change a balance only the engine may change.
+     *
+     * @return false if the available balance is too low or the engine serves the account
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public boolean place(Long accountId, Long cardId, BigDecimal amount, String reference, String description) {
+        Account account = em.find(Account.class, accountId, LockModeType.PESSIMISTIC_WRITE);
+        if (account == null) {
+            throw new IllegalArgumentException("Account not found.");
+        }
+        if (balanceEngine.isClaimed(account) || availableBalance(account).compareTo(amount) < 0) {
+            return false;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Transaction pending = new Transaction();
+        pending.setTransactionType(TransactionType.CARD_PAYMENT);
+        pending.setStatus(TransactionStatus.PENDING);
+        pending.setFromAccount(account);
+        pending.setAmount(amount);
+        pending.setTransactionDate(now);
+        pending.setDescription(description);
+        em.persist(pending);
+
+        BalanceHold hold = BalanceHold.builder()
+                .reference(reference)
+                .account(account)
+                .cardId(cardId)
+                .transaction(pending)
+                .amount(amount)
+                .createdAt(now)
+                .expiresAt(now.plusDays(HOLD_LIFETIME_DAYS))
+                .build();
+        em.persist(hold);
+        return true;
+    }
+
+    /**
+     * Records the capture of an open hold for the settlement job. A smaller amount captures
+     * part of the hold and releases the rest; {@code null} captures all of it. The funds stay
+     * held until the capture is applied.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void capture(String reference, BigDecimal amount) {
+        BalanceHold hold = lockOpenHold(reference);
+        BigDecimal captured = amount != null ? amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP) : hold.getAmount();
+        if (captured.signum() <= 0 || captured.compareTo(hold.getAmount()) > 0) {
+            throw new BusinessRuleException("Capture amount must be positive and no more than the held amount.");
+        }
+        hold.setSettlement(TransactionStatus.COMPLETED);
+        hold.setCapturedAmount(captured);
+    }
+
+    /**
+     * Records the release of an open hold for the settlement job, without moving any money.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void release(String reference) {
+        lockOpenHold(reference).setSettlement(TransactionStatus.CANCELLED);
+    }
+
+    /**
+     * Whether an authorization code has been used for any hold, open or settled.
+     */
+    public boolean referenceExists(String reference) {
+        return em.createQuery("SELECT COUNT(h) FROM BalanceHold h WHERE h.reference = :reference", Long.class)
+                .setParameter("reference", reference)
+                .getSingleResult() > 0;
+    }
+
+    /**
+     * The total of the account's open holds, including captures that are not applied yet.
+     */
+    public BigDecimal heldAmount(Long accountId) {
+        BigDecimal held = em.createQuery(
+                        "SELECT SUM(h.amount) FROM BalanceHold h JOIN h.transaction t " +
+                                "WHERE h.account.id = :accountId AND t.status = :pending", BigDecimal.class)
+                .setParameter("accountId", accountId)
+                .setParameter("pending", TransactionStatus.PENDING)
+                .getSingleResult();
+        return held != null ? held : BigDecimal.ZERO;
+    }
+
+    /**
+     * The balance less everything held against it. Callers that go on to debit the account
+     * must hold its row lock, as {@link #place} and the settlement job take the same lock.
+     */
+    public BigDecimal availableBalance(Account account) {
+        return account.getBalance().subtract(heldAmount(account.getId()));
+    }
+
+    /**
+     * Applies requested captures and releases, and expires holds that got neither within
+     * their lifetime. A batch that fails is retried one hold at a time so that a single bad
+     * hold cannot block the others; a hold that still fails stays in the table for the next run.
+     */
+    @Schedule(second = "*/5", minute = "*", hour = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void settleQueued() {
+        BalanceHoldLedger self = context.getBusinessObject(BalanceHoldLedger.class);
+        long afterId = 0;
+        List<Long> due;
+        while (!(due = dueHoldIds(afterId)).isEmpty()) {
+            try {
+                self.applyBatch(due);
+            } catch (EJBException e) {
+                System.err.println("BALANCE HOLDS: Batch of " + due.size() + " failed, settling one by one: " + e.getMessage());
+                for (Long holdId : due) {
+                    try {
+                        self.applyBatch(Collections.singletonList(holdId));
+                    } catch (EJBException single) {
+                        System.err.println("BALANCE HOLDS: Could not settle hold " + holdId + ": " + single.getMessage());
+                    }
+                }
+            }
+            afterId = due.get(due.size() - 1);
+        }
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @SuppressWarnings("unchecked")
+    public void applyBatch(List<Long> holdIds) {
+        // SKIP LOCKED is not expressible in JPQL. The ids are numbers, so listing them inline is safe.
+        // Holds another node or a capture request has locked are left for the next run.
+        String ids = holdIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        List<Number> lockable = em.createNativeQuery(
+                        "SELECT id FROM balance_hold WHERE id IN (" + ids + ") ORDER BY id FOR UPDATE SKIP LOCKED")
+                .getResultList();
+        if (lockable.isEmpty()) {
+            return;
+        }
+        List<BalanceHold> holds = em.createQuery(
+                        "SELECT h FROM BalanceHold h JOIN FETCH h.transaction WHERE h.id IN :ids ORDER BY h.id", BalanceHold.class)
+                .setParameter("ids", lockable.stream().map(Number::longValue).collect(Collectors.toList()))
+                .getResultList();
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        // Both sorted, so rows are always locked in id order.
+        Map<Long, BigDecimal> capturedByAccount = new TreeMap<>();
+        Map<Long, BigDecimal> releasedByCard = new TreeMap<>();
+        for (BalanceHold hold : holds) {
+            if (hold.getTransaction().getStatus() != TransactionStatus.PENDING) {
+                continue;
+            }
+            BigDecimal released;
+            if (hold.getSettlement() == TransactionStatus.COMPLETED) {
+                capturedByAccount.merge(hold.getAccount().getId(), hold.getCapturedAmount(), BigDecimal::add);
+                released = hold.getAmount().subtract(hold.getCapturedAmount());
+            } else if (hold.getSettlement() != null || hold.getExpiresAt().isBefore(now)) {
+                released = hold.getAmount();
+            } else {
+                continue;
+            }
+            // Only today's holds count towards the spend counter; older windows are reset anyway.
+            if (hold.getCardId() != null && released.signum() > 0 && hold.getCreatedAt().toLocalDate().equals(today)) {
+                releasedByCard.merge(hold.getCardId(), released, BigDecimal::add);
+            }
+        }
+        // Counters before accounts, the order in which a card authorization locks them.
+        for (Map.Entry<Long, BigDecimal> entry : releasedByCard.entrySet()) {
+            em.createQuery("UPDATE CardSpendCounter c SET c.spent = CASE WHEN c.spent > :released " +
+                            "THEN c.spent - :released ELSE 0 END, c.updatedAt = :now " +
+                            "WHERE c.cardId = :cardId AND c.windowDate = :today")
+                    .setParameter("released", entry.getValue())
+                    .setParameter("now", now)
+                    .setParameter("cardId", entry.getKey())
+                    .setParameter("today", today)
+                    .executeUpdate();
+        }
+        Map<Long, Account> lockedAccounts = new HashMap<>();
+        for (Long accountId : capturedByAccount.keySet()) {
+            lockedAccounts.put(accountId, em.find(Account.class, accountId, LockModeType.PESSIMISTIC_WRITE));
+        }
+
+        int expired = 0;
+        for (BalanceHold hold : holds) {
+            Transaction pending = hold.getTransaction();
+            if (pending.getStatus() != TransactionStatus.PENDING) {
+                continue; // Already settled, e.g. by another node.
+            }
+            TransactionStatus settlement = hold.getSettlement();
+            if (settlement == null) {
+                if (!hold.getExpiresAt().isBefore(now)) {
+                    continue;
+                }
+                settlement = TransactionStatus.EXPIRED;
+                hold.setSettlement(settlement);
+                expired++;
+            }
+            pending.setStatus(settlement);
+            if (settlement == TransactionStatus.COMPLETED) {
+                Account account = lockedAccounts.get(hold.getAccount().getId());
+                BigDecimal captured = hold.getCapturedAmount();
+                account.setBalance(account.getBalance().subtract(captured));
+                pending.setAmount(captured);
+                pending.setTransactionDate(now); // Posted on capture, like any other completed debit.
+                pending.setRunningBalance(account.getBalance());
+                ledgerService.post(pending);
+                statistics.recordTransaction(pending);
+            }
+        }
+        if (expired > 0) {
+            System.out.println("BALANCE HOLDS: Expired " + expired + " stale hold(s).");
+        }
+    }
+
+    // --- Helper Methods ---
+
+    private BalanceHold lockOpenHold(String reference) {
+        List<BalanceHold> found = reference == null ? Collections.emptyList() : em.createQuery(
+                        "SELECT h FROM BalanceHold h JOIN FETCH h.transaction WHERE h.reference = :reference", BalanceHold.class)
+                .setParameter("reference", reference)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        if (found.isEmpty() || found.get(0).getTransaction().getStatus() != TransactionStatus.PENDING) {
+            throw new BusinessRuleException("No open hold for authorization " + reference + ".");
+        }
+        BalanceHold hold = found.get(0);
+        if (hold.getSettlement() != null) {
+            throw new BusinessRuleException("Authorization " + reference + " is already being settled.");
+        }
+        return hold;
+    }
+
+    /**
+     * The next holds with a requested settlement or past their expiry, in id order. Holds placed
+     * before their account joined the balance engine wait until it is released, since the
+     * ledger would refuse their capture and the batch would fail on every run.
+     */
+    private List<Long> dueHoldIds(long afterId) {
+        return em.createQuery(
+                        "SELECT h.id FROM BalanceHold h JOIN h.transaction t WHERE t.status = :pending " +
+                                "AND (h.settlement IS NOT NULL OR h.expiresAt < :now) AND h.account.engineNode IS NULL " +
+                                "AND h.id > :afterId ORDER BY h.id", Long.class)
+                .setParameter("pending", TransactionStatus.PENDING)
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("afterId", afterId)
+                .setMaxResults(MAX_BATCH_SIZE)
+                .getResultList();
+    }
+}
@@ -0,0 +1,179 @@
+package service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of one shard of the {@link BalanceEngine}.
+ *
+ * Each record is {@code [int length][body][int crc32(body)]}. Records are buffered by
+ * {@link #append} and reach the disk together on {@link #sync}, so one {@code fsync} covers
+ * everything a shard applied in one pass. Not thread-safe: only the shard's writer uses it.
+ */
+public final class BalanceJournal implements Closeable {
+
+    private static final int MAX_MEMO_BYTES = 1024;
+    private static final int FIXED_BODY_BYTES = 8 + 1 + 8 + 8 + 8 + 8 + 2;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+    private final CRC32 crc = new CRC32();
+
+    public BalanceJournal(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads every intact record from the start of the file. A torn or corrupt tail (a write
+     * that never completed its {@code fsync}, so was never acknowledged) is cut off, and the
+     * journal is left positioned for appending.
+     */
+    public List<Record> recover() throws IOException {
+        List<Record> records = new ArrayList<>();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        long position = 0;
+        long size = channel.size();
+        while (position + 4 <= size) {
+            lengthBuffer.clear();
+            channel.read(lengthBuffer, position);
+            int length = lengthBuffer.flip().getInt();
+            if (length < FIXED_BODY_BYTES || length > FIXED_BODY_BYTES + MAX_MEMO_BYTES || position + 4 + length + 4 > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length + 4);
+            channel.read(body, position + 4);
+            body.flip();
+            crc.reset();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != body.getInt(length)) {
+                break;
+            }
+            records.add(decode(body));
+            position += 4 + length + 4;
+        }
+        if (position < size) {
+            System.err.println("BALANCE ENGINE: Discarding " + (size - position) + " byte(s) of incomplete journal tail in " + file + ".");
+            channel.truncate(position);
+        }
+        channel.position(position);
+        return records;
+    }
+
+    public void append(Record record) throws IOException {
+        byte[] memo = record.memo != null ? record.memo.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (memo.length > MAX_MEMO_BYTES) {
+            throw new IllegalArgumentException("Memo is too long.");
+        }
+        int length = FIXED_BODY_BYTES + memo.length;
+        if (buffer.remaining() < length + 8) {
+            writeBuffer();
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        body.putLong(record.sequence)
+                .put(record.kind)
+                .putLong(record.fromAccountId)
+                .putLong(record.toAccountId)
+                .putLong(record.units)
+                .putLong(record.epochMillis)
+                .putShort((short) memo.length)
+                .put(memo);
+        crc.reset();
+        crc.update(body.array(), 0, length);
+        buffer.putInt(length).put(body.flip()).putInt((int) crc.getValue());
+    }
+
+    /**
+     * Writes the buffered records and forces them to the device.
+     */
+    public void sync() throws IOException {
+        writeBuffer();
+        channel.force(false);
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Empties the journal once everything in it has been written to the database.
+     */
+    public void reset() throws IOException {
+        buffer.clear();
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // --- Helper Methods ---
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static Record decode(ByteBuffer body) {
+        long sequence = body.getLong();
+        byte kind = body.get();
+        long fromAccountId = body.getLong();
+        long toAccountId = body.getLong();
+        long units = body.getLong();
+        long epochMillis = body.getLong();
+        byte[] memo = new byte[body.getShort()];
+        body.get(memo);
+        return new Record(sequence, kind, fromAccountId, toAccountId, units, epochMillis,
+                memo.length > 0 ? new String(memo, StandardCharsets.UTF_8) : null);
+    }
+
+    /**
+     * One accepted transfer. {@code units} are ten-thousandths of the currency unit.
+     */
+    public static final class Record implements Serializable {
+        public static final byte CUSTOMER_TRANSFER = 0;
+        public static final byte SCHEDULED_TRANSFER = 1; // Only in journals from before scheduled payments were refused
+
+        private final long sequence;
+        private final byte kind;
+        private final long fromAccountId;
+        private final long toAccountId;
+        private final long units;
+        private final long epochMillis;
+        private final String memo;
+
+        public Record(long sequence, byte kind, long fromAccountId, long toAccountId, long units, long epochMillis, String memo) {
+            this.sequence = sequence;
+            this.kind = kind;
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
+            this.units = units;
+            this.epochMillis = epochMillis;
+            this.memo = memo;
+        }
+
+        public long getSequence() { return sequence; }
+        public byte getKind() { return kind; }
+        public long getFromAccountId() { return fromAccountId; }
+        public long getToAccountId() { return toAccountId; }
+        public long getUnits() { return units; }
+        public long getEpochMillis() { return epochMillis; }
+        public String getMemo() { return memo; }
+    }
+}
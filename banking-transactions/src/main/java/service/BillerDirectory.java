@@ -0,0 +1,247 @@
+package service;
+
+import entity.Biller;
+import enums.BillerCategory;
+import enums.BillerStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import util.TransactionCallbacks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory directory of billers, indexed by id, by the id of their internal account (so
+ * transaction mappers can name the payee of a bill payment without a query per row) and by
+ * category (for the bill-payment screens).
+ *
+ * Billers are few and rarely change. The directory is an immutable {@link Snapshot} that is
+ * replaced as a whole on every change, so lookups never lock. It is loaded at startup, updated
+ * when a biller is created or its status changes, and reloaded every few minutes to pick up
+ * changes made on other nodes. Each snapshot carries a tag computed from its contents, the
+ * same on every node, for use as an ETag.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class BillerDirectory {
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+
+    @PostConstruct
+    public void init() {
+        reload();
+        System.out.println("BILLER DIRECTORY: Loaded " + snapshot.size() + " billers.");
+    }
+
+    /**
+     * Replaces the directory with the current contents of the biller table.
+     */
+    @Schedule(minute = "*/5", hour = "*", persistent = false)
+    public void reload() {
+        List<Object[]> rows = em.createQuery(
+                        "SELECT b.id, b.billerName, b.category, b.status, b.logoUrl, a.id " +
+                                "FROM Biller b JOIN b.internalAccount a", Object[].class)
+                .getResultList();
+        Map<Long, Entry> loaded = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            Entry entry = new Entry((Long) row[0], (String) row[1], (BillerCategory) row[2],
+                    (BillerStatus) row[3], (String) row[4], (Long) row[5]);
+            loaded.put(entry.internalAccountId, entry);
+        }
+        swap(loaded);
+    }
+
+    public Optional<Entry> findByInternalAccountId(Long accountId) {
+        if (accountId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(snapshot.byInternalAccountId.get(accountId));
+    }
+
+    public Optional<Entry> findById(Long billerId) {
+        if (billerId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(snapshot.byId.get(billerId));
+    }
+
+    /**
+     * The current directory. Read it once per request, so a list and its tag always match.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adds or replaces the biller once the surrounding transaction commits.
+     */
+    public void refresh(Biller biller) {
+        if (biller == null) {
+            return;
+        }
+        // Identities are assigned on insert, so the entry is built after the commit.
+        TransactionCallbacks.afterCommit(txRegistry, () -> {
+            if (biller.getId() == null || biller.getInternalAccount() == null || biller.getInternalAccount().getId() == null) {
+                return;
+            }
+            put(new Entry(biller.getId(), biller.getBillerName(), biller.getCategory(), biller.getStatus(),
+                    biller.getLogoUrl(), biller.getInternalAccount().getId()));
+        });
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    // --- Helper Methods ---
+
+    private synchronized void swap(Map<Long, Entry> loaded) {
+        // Billers are never deleted, so anything added while the query ran is kept.
+        for (Map.Entry<Long, Entry> current : snapshot.byInternalAccountId.entrySet()) {
+            loaded.putIfAbsent(current.getKey(), current.getValue());
+        }
+        snapshot = new Snapshot(loaded);
+    }
+
+    private synchronized void put(Entry entry) {
+        Map<Long, Entry> updated = new HashMap<>(snapshot.byInternalAccountId);
+        updated.put(entry.internalAccountId, entry);
+        snapshot = new Snapshot(updated);
+    }
+
+    /**
+     * One immutable version of the directory with its indexes.
+     */
+    public static final class Snapshot {
+        private static final Comparator<Entry> BY_NAME = Comparator
+                .comparing(Entry::getBillerName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                .thenComparingLong(Entry::getId);
+
+        private final Map<Long, Entry> byInternalAccountId;
+        private final Map<Long, Entry> byId;
+        private final List<Entry> sorted;
+        private final Map<BillerCategory, List<Entry>> byCategory;
+        private final String tag;
+
+        Snapshot(Map<Long, Entry> entries) {
+            this.byInternalAccountId = Collections.unmodifiableMap(entries);
+            Map<Long, Entry> ids = new HashMap<>(entries.size() * 2);
+            List<Entry> all = new ArrayList<>(entries.values());
+            all.sort(BY_NAME);
+            Map<BillerCategory, List<Entry>> categories = new EnumMap<>(BillerCategory.class);
+            for (Entry entry : all) {
+                ids.put(entry.id, entry);
+                if (entry.category != null) {
+                    categories.computeIfAbsent(entry.category, category -> new ArrayList<>()).add(entry);
+                }
+            }
+            categories.replaceAll((category, list) -> Collections.unmodifiableList(list));
+            this.byId = Collections.unmodifiableMap(ids);
+            this.sorted = Collections.unmodifiableList(all);
+            this.byCategory = Collections.unmodifiableMap(categories);
+            this.tag = contentTag(all);
+        }
+
+        /**
+         * The billers in a category (all if null) and status (any if null), sorted by name.
+         */
+        public List<Entry> list(BillerCategory category, BillerStatus status) {
+            List<Entry> candidates = category == null ? sorted : byCategory.getOrDefault(category, Collections.emptyList());
+            if (status == null) {
+                return candidates;
+            }
+            List<Entry> filtered = new ArrayList<>(candidates.size());
+            for (Entry entry : candidates) {
+                if (entry.status == status) {
+                    filtered.add(entry);
+                }
+            }
+            return filtered;
+        }
+
+        /**
+         * A tag for {@link #list} with the same arguments; it changes whenever any biller
+         * changes and is the same on every node for the same contents.
+         */
+        public String tag(BillerCategory category, BillerStatus status) {
+            return tag + "-" + (category != null ? category.name() : "ALL") + "-" + (status != null ? status.name() : "ALL");
+        }
+
+        public int size() {
+            return sorted.size();
+        }
+
+        private static String contentTag(List<Entry> entries) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            for (Entry entry : entries) {
+                String line = entry.id + "|" + entry.billerName + "|" + entry.category + "|" + entry.status
+                        + "|" + entry.logoUrl + "|" + entry.internalAccountId + "\n";
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+            return hex.toString();
+        }
+    }
+
+    /**
+     * An immutable view of one biller.
+     */
+    public static final class Entry {
+        private final long id;
+        private final String billerName;
+        private final BillerCategory category;
+        private final BillerStatus status;
+        private final String logoUrl;
+        private final long internalAccountId;
+
+        Entry(long id, String billerName, BillerCategory category, BillerStatus status,
+              String logoUrl, long internalAccountId) {
+            this.id = id;
+            this.billerName = billerName;
+            this.category = category;
+            this.status = status;
+            this.logoUrl = logoUrl;
+            this.internalAccountId = internalAccountId;
+        }
+
+        public long getId() { return id; }
+        public String getBillerName() { return billerName; }
+        public BillerCategory getCategory() { return category; }
+        public BillerStatus getStatus() { return status; }
+        public String getLogoUrl() { return logoUrl; }
+        public long getInternalAccountId() { return internalAccountId; }
+    }
+}
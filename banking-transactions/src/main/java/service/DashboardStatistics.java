@@ -0,0 +1,458 @@
+package service;
+
+import dto.AdminDashboardDTO;
+import dto.ChartDataDTO;
+import dto.DashboardMetricsDTO;
+import entity.Account;
+import entity.Transaction;
+import enums.KycStatus;
+import enums.TransactionStatus;
+import enums.UserStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.SessionContext;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import util.TransactionCallbacks;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Incrementally maintained statistics behind the admin dashboard.
+ *
+ * The money and user paths report each committed change here, so a dashboard refresh
+ * reads a handful of striped counters instead of running full-table COUNT and SUM
+ * queries. Amounts are kept as exact ten-thousandths (the scale of every amount column)
+ * in {@link LongAdder}s. Every hour the counters are reconciled against the full
+ * aggregates and drift is logged and corrected. The daily figures in the
+ * {@code daily_stats} table are computed from the database, so every node writes
+ * the same values no matter which changes it has seen.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DashboardStatistics {
+
+    private static final int CHART_DAYS = 7;
+    private static final int AMOUNT_SCALE = 4;
+    private static final int RECONCILE_ATTEMPTS = 3;
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    @Resource
+    private SessionContext context;
+
+    private final LongAdder totalUsers = new LongAdder();
+    private final LongAdder activeUsers = new LongAdder();
+    private final LongAdder pendingKyc = new LongAdder();
+    private final LongAdder kycDocumentsPending = new LongAdder();
+    private final LongAdder kycDocumentsVerified = new LongAdder();
+    private final LongAdder totalTransactions = new LongAdder();
+    private final LongAdder transactionVolumeUnits = new LongAdder();
+    private final LongAdder totalAccounts = new LongAdder();
+    private final LongAdder systemAssetUnits = new LongAdder();
+    private final ConcurrentMap<LocalDate, DayCounters> days = new ConcurrentHashMap<>();
+    // Bumped after every applied change, so readers can tell cheaply whether anything moved.
+    private final AtomicLong version = new AtomicLong();
+    // Changes recorded in a transaction that has not completed yet.
+    private final AtomicLong inFlight = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // Nothing can be recorded before the bean is ready, so one direct pass is enough.
+        reconcile(this);
+    }
+
+    // --- Recording (called from the business paths, applied on commit) ---
+
+    public void recordUserRegistered(UserStatus status, KycStatus kycStatus) {
+        LocalDate today = LocalDate.now();
+        afterCommit(() -> {
+            totalUsers.increment();
+            if (status == UserStatus.ACTIVE) activeUsers.increment();
+            if (kycStatus == KycStatus.PENDING) pendingKyc.increment();
+            day(today).newUsers.increment();
+        });
+    }
+
+    public void recordUserStatusChange(UserStatus from, UserStatus to) {
+        if (from == to) return;
+        afterCommit(() -> {
+            if (from == UserStatus.ACTIVE) activeUsers.decrement();
+            if (to == UserStatus.ACTIVE) activeUsers.increment();
+        });
+    }
+
+    public void recordKycStatusChange(KycStatus from, KycStatus to) {
+        if (from == to) return;
+        afterCommit(() -> {
+            if (from == KycStatus.PENDING) pendingKyc.decrement();
+            if (to == KycStatus.PENDING) pendingKyc.increment();
+        });
+    }
+
+    /**
+     * Tracks KYC documents by review status; null means no document (not yet submitted, or
+     * removed on rejection).
+     */
+    public void recordKycDocumentChange(KycStatus from, KycStatus to) {
+        if (from == to) return;
+        afterCommit(() -> {
+            LongAdder before = kycDocuments(from);
+            LongAdder after = kycDocuments(to);
+            if (before != null) before.decrement();
+            if (after != null) after.increment();
+        });
+    }
+
+    /**
+     * Counts a new account. Its opening balance, if any, arrives as a recorded deposit.
+     */
+    public void recordAccountOpened(Account account) {
+        afterCommit(totalAccounts::increment);
+    }
+
+    /**
+     * Records a completed money movement. Customer-held assets go down when the debited
+     * account has an owner and up when the credited one does, so transfers between
+     * customers leave them unchanged while bill payments, deposits and payouts move them.
+     */
+    public void recordTransaction(Transaction transaction) {
+        long units = toUnits(transaction.getAmount());
+        boolean debitsCustomer = transaction.getFromAccount() != null && transaction.getFromAccount().getOwner() != null;
+        boolean creditsCustomer = transaction.getToAccount() != null && transaction.getToAccount().getOwner() != null;
+        LocalDate day = transaction.getTransactionDate() != null ? transaction.getTransactionDate().toLocalDate() : LocalDate.now();
+        afterCommit(() -> {
+            totalTransactions.increment();
+            transactionVolumeUnits.add(units);
+            if (debitsCustomer) systemAssetUnits.add(-units);
+            if (creditsCustomer) systemAssetUnits.add(units);
+            DayCounters counters = day(day);
+            counters.transactions.increment();
+            counters.volumeUnits.add(units);
+        });
+    }
+
+    // --- Reading ---
+
+    /**
+     * Builds the dashboard from the in-memory counters without touching the database.
+     */
+    public AdminDashboardDTO snapshot() {
+        LocalDate today = LocalDate.now();
+        DayCounters todayCounters = days.getOrDefault(today, DayCounters.EMPTY);
+
+        AdminDashboardDTO dto = new AdminDashboardDTO();
+        dto.setTotalUsers(totalUsers.sum());
+        dto.setNewUsersToday(todayCounters.newUsers.sum());
+        dto.setActiveUsers(activeUsers.sum());
+        dto.setTotalTransactions(totalTransactions.sum());
+        dto.setTransactionsToday(todayCounters.transactions.sum());
+        dto.setTotalTransactionVolume(fromUnits(transactionVolumeUnits.sum()));
+        dto.setTotalAccounts(totalAccounts.sum());
+        dto.setTotalSystemAssets(fromUnits(systemAssetUnits.sum()));
+        dto.setPendingKycSubmissions(pendingKyc.sum());
+        dto.setNewUsersChart(buildChart(today, counters -> counters.newUsers.sum()));
+        dto.setTransactionVolumeChart(buildChart(today, counters -> fromUnits(counters.volumeUnits.sum())));
+        return dto;
+    }
+
+    /**
+     * The live subset of the dashboard pushed to connected admin screens.
+     */
+    public DashboardMetricsDTO metrics() {
+        long currentVersion = version.get();
+        DayCounters todayCounters = days.getOrDefault(LocalDate.now(), DayCounters.EMPTY);
+
+        DashboardMetricsDTO dto = new DashboardMetricsDTO();
+        dto.setVersion(currentVersion);
+        dto.setTotalUsers(totalUsers.sum());
+        dto.setNewUsersToday(todayCounters.newUsers.sum());
+        dto.setTotalTransactions(totalTransactions.sum());
+        dto.setTransactionsToday(todayCounters.transactions.sum());
+        dto.setTotalTransactionVolume(fromUnits(transactionVolumeUnits.sum()));
+        dto.setTransactionVolumeToday(fromUnits(todayCounters.volumeUnits.sum()));
+        dto.setPendingKycSubmissions(pendingKyc.sum());
+        return dto;
+    }
+
+    /**
+     * The number of KYC documents in a review status, or in any status if it is null.
+     */
+    public long kycDocumentCount(KycStatus status) {
+        if (status == null) {
+            return kycDocumentsPending.sum() + kycDocumentsVerified.sum();
+        }
+        LongAdder counter = kycDocuments(status);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Returns a number that changes whenever any counter changes.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    // --- Reconciliation ---
+
+    /**
+     * Verifies the counters against the full aggregates, corrects any drift and
+     * materializes the last seven days into {@code daily_stats}. Counters are only
+     * corrected when no change was applied or pending while the aggregates were read;
+     * otherwise the correction is retried and, failing that, left to the next hour.
+     */
+    @Schedule(minute = "0", hour = "*", persistent = false)
+    public void reconcile() {
+        reconcile(context.getBusinessObject(DashboardStatistics.class));
+    }
+
+    private void reconcile(DashboardStatistics corrector) {
+        backfillKycReviewStatus();
+        LocalDate today = LocalDate.now();
+        LocalDate firstDay = today.minusDays(CHART_DAYS - 1);
+
+        boolean corrected = false;
+        for (int attempt = 0; attempt < RECONCILE_ATTEMPTS && !corrected; attempt++) {
+            corrected = corrector.correctCounters(firstDay);
+        }
+        if (!corrected) {
+            System.err.println("DASHBOARD STATS: Counters kept changing during reconciliation; correcting them next hour.");
+        }
+        days.keySet().removeIf(day -> day.isBefore(firstDay));
+        persistDays(firstDay, today);
+
+        version.incrementAndGet();
+    }
+
+    /**
+     * Reads the full aggregates in a transaction of their own, so each attempt sees current
+     * data, and moves the counters to them if nothing changed meanwhile. A change committed
+     * while the aggregates are read may be in them before it reaches its counter, and
+     * correcting then would count it twice.
+     *
+     * @return false if a change was pending or applied during the read
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean correctCounters(LocalDate firstDay) {
+        long versionBefore = version.get();
+        boolean quiet = inFlight.get() == 0;
+
+        Map<LongAdder, Long> authoritative = new IdentityHashMap<>();
+        authoritative.put(totalUsers, em.createQuery("SELECT COUNT(u) FROM User u", Long.class).getSingleResult());
+        authoritative.put(activeUsers, em.createQuery("SELECT COUNT(u) FROM User u WHERE u.status = :activeStatus", Long.class)
+                .setParameter("activeStatus", UserStatus.ACTIVE).getSingleResult());
+        authoritative.put(pendingKyc, em.createQuery("SELECT COUNT(u) FROM User u WHERE u.kycStatus = :pendingStatus", Long.class)
+                .setParameter("pendingStatus", KycStatus.PENDING).getSingleResult());
+        authoritative.put(kycDocumentsPending, em.createQuery("SELECT COUNT(k) FROM KycDocument k WHERE k.reviewStatus = :status", Long.class)
+                .setParameter("status", KycStatus.PENDING).getSingleResult());
+        authoritative.put(kycDocumentsVerified, em.createQuery("SELECT COUNT(k) FROM KycDocument k WHERE k.reviewStatus = :status", Long.class)
+                .setParameter("status", KycStatus.VERIFIED).getSingleResult());
+        authoritative.put(totalTransactions, em.createQuery("SELECT COUNT(t) FROM Transaction t WHERE t.status = :completed", Long.class)
+                .setParameter("completed", TransactionStatus.COMPLETED).getSingleResult());
+        authoritative.put(transactionVolumeUnits, toUnits(em.createQuery("SELECT SUM(t.amount) FROM Transaction t WHERE t.status = :completed", BigDecimal.class)
+                .setParameter("completed", TransactionStatus.COMPLETED).getSingleResult()));
+        authoritative.put(totalAccounts, em.createQuery("SELECT COUNT(a) FROM Account a", Long.class).getSingleResult());
+        authoritative.put(systemAssetUnits, toUnits(em.createQuery("SELECT SUM(a.balance) FROM Account a WHERE a.owner IS NOT NULL", BigDecimal.class).getSingleResult()));
+        Map<LocalDate, DayFigures> figures = dailyFigures(firstDay);
+        for (int i = 0; i < CHART_DAYS; i++) {
+            LocalDate date = firstDay.plusDays(i);
+            DayCounters counters = day(date);
+            DayFigures dayFigures = figures.getOrDefault(date, DayFigures.NONE);
+            authoritative.put(counters.newUsers, dayFigures.newUsers);
+            authoritative.put(counters.transactions, dayFigures.transactions);
+            authoritative.put(counters.volumeUnits, dayFigures.volumeUnits);
+        }
+
+        if (!quiet || inFlight.get() != 0 || version.get() != versionBefore) {
+            return false;
+        }
+        int drift = 0;
+        for (Map.Entry<LongAdder, Long> entry : authoritative.entrySet()) {
+            drift += correct(entry.getKey(), entry.getValue());
+        }
+        if (drift != 0) {
+            System.err.println("DASHBOARD STATS: Corrected " + drift + " drifted counter(s) during reconciliation.");
+        }
+        return true;
+    }
+
+    /**
+     * Refreshes today's row in {@code daily_stats} between reconciliations.
+     */
+    @Schedule(minute = "*/5", hour = "*", persistent = false)
+    public void flushToday() {
+        LocalDate today = LocalDate.now();
+        persistDays(today, today);
+    }
+
+    // --- Helper Methods ---
+
+    /**
+     * Documents submitted before review_status existed take their owner's KYC status, so they
+     * are counted here and show up in the review queue. Runs with every reconciliation to also
+     * catch rows a node on the previous version writes during a rolling deployment.
+     */
+    private void backfillKycReviewStatus() {
+        int backfilled = em.createNativeQuery(
+                        "UPDATE kyc_document k JOIN app_user u ON u.id = k.user_id " +
+                                "SET k.review_status = u.kycStatus WHERE k.review_status IS NULL")
+                .executeUpdate();
+        if (backfilled > 0) {
+            System.out.println("DASHBOARD STATS: Set the review status of " + backfilled + " older KYC document(s) from their owners.");
+        }
+    }
+
+    private LongAdder kycDocuments(KycStatus status) {
+        if (status == KycStatus.PENDING) return kycDocumentsPending;
+        if (status == KycStatus.VERIFIED) return kycDocumentsVerified;
+        return null;
+    }
+
+    /**
+     * New users, completed transactions and their volume per day from {@code firstDay} on.
+     */
+    private Map<LocalDate, DayFigures> dailyFigures(LocalDate firstDay) {
+        List<Object[]> userRows = em.createQuery(
+                        "SELECT FUNCTION('DATE', u.registeredDate) as regDate, COUNT(u.id) FROM User u " +
+                                "WHERE u.registeredDate >= :startDate GROUP BY regDate", Object[].class)
+                .setParameter("startDate", firstDay.atStartOfDay())
+                .getResultList();
+        List<Object[]> transactionRows = em.createQuery(
+                        "SELECT FUNCTION('DATE', t.transactionDate) as txDate, COUNT(t.id), SUM(t.amount) FROM Transaction t " +
+                                "WHERE t.transactionDate >= :startDate AND t.status = :completed GROUP BY txDate", Object[].class)
+                .setParameter("startDate", firstDay.atStartOfDay())
+                .setParameter("completed", TransactionStatus.COMPLETED)
+                .getResultList();
+
+        Map<LocalDate, DayFigures> figures = new HashMap<>();
+        for (Object[] row : userRows) {
+            figures.computeIfAbsent(((java.sql.Date) row[0]).toLocalDate(), d -> new DayFigures())
+                    .newUsers = ((Number) row[1]).longValue();
+        }
+        for (Object[] row : transactionRows) {
+            DayFigures dayFigures = figures.computeIfAbsent(((java.sql.Date) row[0]).toLocalDate(), d -> new DayFigures());
+            dayFigures.transactions = ((Number) row[1]).longValue();
+            dayFigures.volumeUnits = toUnits((BigDecimal) row[2]);
+        }
+        return figures;
+    }
+
+    /**
+     * Writes the days' figures as the database has them. The upsert lets nodes refresh the
+     * same day concurrently; whichever writes last stores the same or newer values.
+     */
+    private void persistDays(LocalDate from, LocalDate to) {
+        Map<LocalDate, DayFigures> figures = dailyFigures(from);
+        LocalDateTime now = LocalDateTime.now();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            DayFigures dayFigures = figures.getOrDefault(day, DayFigures.NONE);
+            // ON DUPLICATE KEY UPDATE is not expressible in JPQL.
+            em.createNativeQuery(
+                            "INSERT INTO daily_stats (stat_date, newUsers, transactionCount, transactionVolume, updatedAt) " +
+                                    "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE newUsers = VALUES(newUsers), " +
+                                    "transactionCount = VALUES(transactionCount), transactionVolume = VALUES(transactionVolume), " +
+                                    "updatedAt = VALUES(updatedAt)")
+                    .setParameter(1, day)
+                    .setParameter(2, dayFigures.newUsers)
+                    .setParameter(3, dayFigures.transactions)
+                    .setParameter(4, fromUnits(dayFigures.volumeUnits))
+                    .setParameter(5, now)
+                    .executeUpdate();
+        }
+    }
+
+    private ChartDataDTO buildChart(LocalDate today, Function<DayCounters, Number> value) {
+        List<String> labels = new ArrayList<>();
+        List<Number> data = new ArrayList<>();
+        DateTimeFormatter labelFormatter = DateTimeFormatter.ofPattern("MMM d");
+
+        LocalDate startDate = today.minusDays(CHART_DAYS - 1);
+        for (int i = 0; i < CHART_DAYS; i++) {
+            LocalDate day = startDate.plusDays(i);
+            labels.add(day.format(labelFormatter));
+            data.add(value.apply(days.getOrDefault(day, DayCounters.EMPTY)));
+        }
+        return new ChartDataDTO(labels, data);
+    }
+
+    /**
+     * Moves the counter to the authoritative value and returns 1 if it had drifted.
+     */
+    private static int correct(LongAdder counter, long authoritative) {
+        long delta = authoritative - counter.sum();
+        if (delta == 0) return 0;
+        counter.add(delta);
+        return 1;
+    }
+
+    private DayCounters day(LocalDate date) {
+        return days.computeIfAbsent(date, d -> new DayCounters());
+    }
+
+    private static long toUnits(BigDecimal amount) {
+        if (amount == null) return 0;
+        return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal fromUnits(long units) {
+        return BigDecimal.valueOf(units, AMOUNT_SCALE);
+    }
+
+    private void afterCommit(Runnable action) {
+        // Counted as in flight until the transaction completes; version is bumped first so a
+        // reconciliation that sees nothing in flight also sees the change.
+        inFlight.incrementAndGet();
+        TransactionCallbacks.afterRollback(txRegistry, inFlight::decrementAndGet);
+        TransactionCallbacks.afterCommit(txRegistry, () -> {
+            try {
+                action.run();
+                version.incrementAndGet();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    private static final class DayCounters {
+        private static final DayCounters EMPTY = new DayCounters();
+
+        private final LongAdder newUsers = new LongAdder();
+        private final LongAdder transactions = new LongAdder();
+        private final LongAdder volumeUnits = new LongAdder();
+    }
+
+    private static final class DayFigures {
+        private static final DayFigures NONE = new DayFigures();
+
+        private long newUsers;
+        private long transactions;
+        private long volumeUnits;
+    }
+}
@@ -0,0 +1,38 @@
+package service;
+
+import entity.Transaction;
+import jakarta.ejb.Local;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Local
+public interface LedgerService {
+
+    /**
+     * Posts the debit and credit entries of a completed transaction. Call it after the
+     * account balances have been updated, in the same database transaction.
+     */
+    void post(Transaction transaction);
+
+    /**
+     * The account's balance just before the given time: the latest snapshot at or before it
+     * plus the entries posted since.
+     */
+    BigDecimal balanceAsOf(Long accountId, LocalDateTime at);
+
+    /**
+     * The date of the account's latest completed transaction that has no ledger entries, i.e.
+     * one from before the ledger existed, or null if every one of them was posted.
+     * {@link #balanceAsOf} is only exact for times after it.
+     */
+    LocalDateTime lastUnpostedTransactionAt(Long accountId);
+
+    /**
+     * Snapshots, at the cutoff, every account that has none yet or has had entries since the
+     * previous cutoff. Accounts without activity keep their older snapshot.
+     *
+     * @return the number of snapshots written
+     */
+    int takeSnapshots(LocalDateTime cutoff);
+}
@@ -0,0 +1,26 @@
+package service;
+
+import dto.TransactionRequestDTO;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A customer transfer waiting in the {@link TransferPipeline} for the next group commit.
+ */
+public final class QueuedTransfer {
+
+    private final String username;
+    private final TransactionRequestDTO request;
+    private final long enqueuedAtNanos = System.nanoTime();
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    public QueuedTransfer(String username, TransactionRequestDTO request) {
+        this.username = username;
+        this.request = request;
+    }
+
+    public String getUsername() { return username; }
+    public TransactionRequestDTO getRequest() { return request; }
+    public long getEnqueuedAtNanos() { return enqueuedAtNanos; }
+    public CompletableFuture<Void> getResult() { return result; }
+}
@@ -0,0 +1,94 @@
+package service;
+
+import dto.ReconciliationRunDTO;
+import jakarta.ejb.Local;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Local
+public interface ReconciliationService {
+
+    // --- Used by the reconciliation job ---
+
+    /**
+     * The lowest and highest account id, or null if there are no accounts.
+     */
+    long[] accountIdBounds();
+
+    /**
+     * Compares the stored balance of every account with {@code fromId <= id < toId} against
+     * its latest balance snapshot plus the ledger entries posted since.
+     */
+    RangeResult checkRange(long fromId, long toId);
+
+    /**
+     * Repeats the check for one account while holding its row lock, so that a transfer
+     * committing between the two reads of {@link #checkRange} is not reported.
+     *
+     * @return the mismatch, or null if the account balances after all
+     */
+    Mismatch recheck(long accountId);
+
+    Long startRun();
+
+    void finishRun(Long runId, long accountsChecked, long entriesScanned, List<Mismatch> mismatches, long durationMillis);
+
+    void failRun(Long runId, String reason, long durationMillis);
+
+    // --- Admin reports ---
+
+    List<ReconciliationRunDTO> findRecentRuns(int limit);
+
+    Optional<ReconciliationRunDTO> findRun(Long runId);
+
+    Optional<ReconciliationRunDTO> findLatestRun();
+
+    /**
+     * The totals of a checked range of accounts and the accounts that did not balance.
+     */
+    final class RangeResult implements Serializable {
+        private long accountsChecked;
+        private long entriesScanned;
+        private final List<Mismatch> mismatches = new ArrayList<>();
+
+        public RangeResult() {
+        }
+
+        public RangeResult(long accountsChecked, long entriesScanned, List<Mismatch> mismatches) {
+            this.accountsChecked = accountsChecked;
+            this.entriesScanned = entriesScanned;
+            this.mismatches.addAll(mismatches);
+        }
+
+        public RangeResult merge(RangeResult other) {
+            accountsChecked += other.accountsChecked;
+            entriesScanned += other.entriesScanned;
+            mismatches.addAll(other.mismatches);
+            return this;
+        }
+
+        public long getAccountsChecked() { return accountsChecked; }
+        public long getEntriesScanned() { return entriesScanned; }
+        public List<Mismatch> getMismatches() { return mismatches; }
+    }
+
+    final class Mismatch implements Serializable {
+        private final long accountId;
+        private final BigDecimal storedBalance;
+        private final BigDecimal expectedBalance;
+
+        public Mismatch(long accountId, BigDecimal storedBalance, BigDecimal expectedBalance) {
+            this.accountId = accountId;
+            this.storedBalance = storedBalance;
+            this.expectedBalance = expectedBalance;
+        }
+
+        public long getAccountId() { return accountId; }
+        public BigDecimal getStoredBalance() { return storedBalance; }
+        public BigDecimal getExpectedBalance() { return expectedBalance; }
+    }
+}
@@ -0,0 +1,122 @@
+package service;
+
+import entity.NumberSequence;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJBException;
+import jakarta.ejb.SessionContext;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out unique numbers from named sequences without a database round-trip per number.
+ *
+ * Each node reserves a block of numbers from the {@code number_sequence} table in its own
+ * short transaction, then serves the block from an {@link AtomicLong}. Numbers are unique
+ * across nodes and restarts; numbers left in a block when a node stops are simply skipped.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class SequenceAllocator {
+
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Resource
+    private SessionContext context;
+
+    private final ConcurrentMap<String, Block> blocks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> refillLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the next number of the sequence.
+     *
+     * @param name         the sequence name
+     * @param blockSize    how many numbers to reserve per database round-trip
+     * @param initialValue computes the first value if the sequence does not exist yet
+     */
+    public long next(String name, int blockSize, LongSupplier initialValue) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        Block block = blocks.get(name);
+        while (true) {
+            if (block != null) {
+                long value = block.next.getAndIncrement();
+                if (value < block.limit) {
+                    return value;
+                }
+            }
+            synchronized (refillLocks.computeIfAbsent(name, k -> new Object())) {
+                Block current = blocks.get(name);
+                if (current != block) {
+                    block = current; // Another thread refilled while we waited.
+                    continue;
+                }
+                long start = reserveWithRetry(name, blockSize, initialValue);
+                block = new Block(start, start + blockSize);
+                blocks.put(name, block);
+            }
+        }
+    }
+
+    /**
+     * Reserves {@code blockSize} numbers and returns the first one. Runs in its own
+     * transaction so the row lock is held only for the update.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public long reserveBlock(String name, int blockSize, LongSupplier initialValue) {
+        NumberSequence sequence = em.find(NumberSequence.class, name, LockModeType.PESSIMISTIC_WRITE);
+        if (sequence == null) {
+            sequence = new NumberSequence(name, initialValue.getAsLong());
+            em.persist(sequence);
+        }
+        long start = sequence.getNextValue();
+        sequence.setNextValue(start + blockSize);
+        return start;
+    }
+
+    // --- Helper Methods ---
+
+    private long reserveWithRetry(String name, int blockSize, LongSupplier initialValue) {
+        SequenceAllocator self = self();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return self.reserveBlock(name, blockSize, initialValue);
+            } catch (EJBException e) {
+                // Two nodes creating the same sequence row at once: the loser retries and finds it.
+                if (attempt >= MAX_RESERVE_ATTEMPTS) {
+                    throw e;
+                }
+                System.err.println("SEQUENCE: Retrying block reservation for '" + name + "': " + e.getMessage());
+            }
+        }
+    }
+
+    // Through the container, so reserveBlock gets its own transaction. Overridden by tests.
+    SequenceAllocator self() {
+        return context.getBusinessObject(SequenceAllocator.class);
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long limit;
+
+        Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
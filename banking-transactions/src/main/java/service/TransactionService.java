@@ -21,6 +21,15 @@ public interface TransactionService {
 
     void performTransfer(String username, TransactionRequestDTO transactionRequest);
 
+    /**
+     * Applies several customer transfers in one database transaction. A transfer that fails
+     * validation is skipped without affecting the others. Restricted to the SYSTEM role, as
+     * the transfers are applied for whichever usernames they name.
+     *
+     * @return one entry per transfer, in order: null if it was applied, otherwise why not
+     */
+    List<RuntimeException> performTransferBatch(List<QueuedTransfer> transfers);
+
     List<TransactionDTO> getTransactionHistory(
             String username,
             String accountNumber,
@@ -0,0 +1,236 @@
+package service;
+
+import dto.TransactionRequestDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.annotation.security.RunAs;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.SessionContext;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Optional group commit for customer transfers, for peak hours when one commit per transfer
+ * is what limits throughput.
+ *
+ * Callers queue their transfer and wait. A single writer thread takes up to
+ * {@code batchSize} transfers, or whatever arrived within {@code maxWaitMillis} of the first,
+ * applies them in one database transaction and then wakes each caller with its own outcome.
+ * Off unless the server is started with {@code -Dbanking.transfers.groupCommit=true}.
+ *
+ * Every minute it is busy, the writer logs throughput, p99 latency from queueing to commit and
+ * the mean batch size, so different batch sizes can be compared on the real workload.
+ *
+ * Batches are applied as SYSTEM, the only role allowed to apply transfers on behalf of
+ * the usernames they carry.
+ */
+@Singleton
+@Startup
+@RunAs("SYSTEM")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TransferPipeline {
+
+    private static final boolean ENABLED = Boolean.getBoolean("banking.transfers.groupCommit");
+    private static final int BATCH_SIZE = Integer.getInteger("banking.transfers.groupCommit.batchSize", 64);
+    private static final long MAX_WAIT_MILLIS = Long.getLong("banking.transfers.groupCommit.maxWaitMillis", 5);
+    private static final int QUEUE_CAPACITY = Integer.getInteger("banking.transfers.groupCommit.queueCapacity", 10_000);
+
+    private static final long CALLER_TIMEOUT_SECONDS = 30;
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int LATENCY_SAMPLES = 10_000;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Resource
+    private SessionContext context;
+
+    @EJB
+    private TransactionService transactionService;
+
+    @EJB
+    private BalanceEngine balanceEngine;
+
+    private final BlockingQueue<QueuedTransfer> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile boolean stopping;
+    private Thread writer;
+
+    // Touched only by the writer thread.
+    private final long[] latencySamples = new long[LATENCY_SAMPLES];
+    private int sampleCount;
+    private long completedInWindow;
+    private long batchesInWindow;
+    private long windowStartNanos;
+
+    @PostConstruct
+    public void init() {
+        if (!ENABLED) {
+            return;
+        }
+        writer = threadFactory.newThread(this::runWriter);
+        writer.setName("transfer-group-commit");
+        writer.start();
+        System.out.println("TRANSFER PIPELINE: Group commit enabled (batch size " + BATCH_SIZE
+                + ", max wait " + MAX_WAIT_MILLIS + " ms, queue " + QUEUE_CAPACITY + ").");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        if (writer != null) {
+            writer.interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Queues the transfer and waits until its batch has committed. Throws the same exceptions
+     * as {@link TransactionService#performTransfer}.
+     */
+    @RolesAllowed("CUSTOMER")
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void transfer(String username, TransactionRequestDTO request) {
+        if (balanceEngine.isManaged(request.getFromAccountNumber())) {
+            transactionService.performTransfer(username, request); // Already batched by the engine's journal.
+            return;
+        }
+        QueuedTransfer transfer = new QueuedTransfer(username, request);
+        if (stopping || !queue.offer(transfer)) {
+            throw new IllegalStateException("The bank is busy right now. Please try again in a moment.");
+        }
+        try {
+            transfer.getResult().get(CALLER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Transfer failed.", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("The transfer is taking longer than expected. Check your history before trying again.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Transfer interrupted.");
+        }
+    }
+
+    // --- Writer Thread ---
+
+    private void runWriter() {
+        TransferPipeline self = context.getBusinessObject(TransferPipeline.class);
+        windowStartNanos = System.nanoTime();
+        List<QueuedTransfer> batch = new ArrayList<>(BATCH_SIZE);
+        while (!stopping) {
+            try {
+                QueuedTransfer first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    reportIfDue();
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLIS);
+                while (batch.size() < BATCH_SIZE) {
+                    long remaining = deadline - System.nanoTime();
+                    QueuedTransfer next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                self.apply(batch);
+                batch.clear();
+                reportIfDue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // Nothing in hand has been applied; fail it so no caller waits for its timeout.
+        batch.addAll(queue);
+        queue.clear();
+        for (QueuedTransfer transfer : batch) {
+            transfer.getResult().completeExceptionally(new IllegalStateException("The server is shutting down. Please try again."));
+        }
+    }
+
+    /**
+     * Applies a batch taken from the queue. Called by the writer thread through the container,
+     * so the SYSTEM run-as identity applies; any other caller is refused.
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void apply(List<QueuedTransfer> batch) {
+        if (Thread.currentThread() != writer) {
+            throw new IllegalStateException("Only the writer thread applies queued transfers.");
+        }
+        List<RuntimeException> outcomes;
+        try {
+            outcomes = transactionService.performTransferBatch(batch);
+        } catch (RuntimeException e) {
+            // The batch could not commit as a whole; apply each transfer alone so one bad row cannot fail the rest.
+            System.err.println("TRANSFER PIPELINE: Batch of " + batch.size() + " failed, retrying one by one: " + e.getMessage());
+            outcomes = new ArrayList<>(batch.size());
+            for (QueuedTransfer transfer : batch) {
+                try {
+                    outcomes.addAll(transactionService.performTransferBatch(Collections.singletonList(transfer)));
+                } catch (RuntimeException single) {
+                    outcomes.add(single);
+                }
+            }
+        }
+
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            QueuedTransfer transfer = batch.get(i);
+            RuntimeException outcome = outcomes.get(i);
+            if (outcome == null) {
+                transfer.getResult().complete(null);
+            } else {
+                transfer.getResult().completeExceptionally(outcome);
+            }
+            if (sampleCount < LATENCY_SAMPLES) {
+                latencySamples[sampleCount++] = now - transfer.getEnqueuedAtNanos();
+            }
+        }
+        completedInWindow += batch.size();
+        batchesInWindow++;
+    }
+
+    private void reportIfDue() {
+        long now = System.nanoTime();
+        long elapsed = now - windowStartNanos;
+        if (elapsed < REPORT_INTERVAL_NANOS) {
+            return;
+        }
+        if (completedInWindow > 0) {
+            long[] sorted = Arrays.copyOf(latencySamples, sampleCount);
+            Arrays.sort(sorted);
+            long p99Micros = TimeUnit.NANOSECONDS.toMicros(sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))]);
+            double tps = completedInWindow * 1_000_000_000.0 / elapsed;
+            System.out.println(String.format("TRANSFER PIPELINE: %.1f transfers/s, p99 %.2f ms, mean batch %.1f (max %d, wait %d ms).",
+                    tps, p99Micros / 1000.0, (double) completedInWindow / batchesInWindow, BATCH_SIZE, MAX_WAIT_MILLIS));
+        }
+        sampleCount = 0;
+        completedInWindow = 0;
+        batchesInWindow = 0;
+        windowStartNanos = now;
+    }
+}
@@ -0,0 +1,158 @@
+package service;
+
+import entity.User;
+import entity.UserCacheInvalidation;
+import enums.AccountLevel;
+import enums.KycStatus;
+import enums.UserStatus;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import util.TransactionCallbacks;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves a username to the few user fields the services check on every call
+ * (id, status, KYC status and account level), without a query once it has been seen.
+ *
+ * Entries are dropped when an admin suspends or reactivates a user or decides their KYC,
+ * and expire after a short time. Services that need the full {@code User} load it with
+ * {@code em.find} by the cached id, which the shared entity cache can answer.
+ *
+ * The shared cache is not coordinated between nodes, so each invalidation is also written
+ * to {@code user_cache_invalidation} in the changing transaction. Every node polls that
+ * table every few seconds and evicts the users it names from its entity and principal
+ * caches, so a suspension takes effect everywhere within one poll rather than one expiry.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class UserPrincipalCache {
+
+    private static final long TIME_TO_LIVE_MILLIS = 30_000;
+    private static final int MAX_ENTRIES = 50_000;
+    // Rows are re-read for this long, so one committed late or stamped by a node whose clock lags is still seen.
+    private static final long POLL_OVERLAP_SECONDS = 60;
+    private static final long INVALIDATION_RETENTION_HOURS = 1;
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastPolledAt = LocalDateTime.now();
+
+    public Optional<Entry> resolve(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+        Entry cached = entries.get(username);
+        if (cached != null && now - cached.loadedAt < TIME_TO_LIVE_MILLIS) {
+            return Optional.of(cached);
+        }
+
+        List<Object[]> rows = em.createQuery(
+                        "SELECT u.id, u.status, u.kycStatus, u.accountLevel FROM User u WHERE u.username = :username", Object[].class)
+                .setParameter("username", username)
+                .getResultList();
+        if (rows.isEmpty()) {
+            entries.remove(username);
+            return Optional.empty();
+        }
+        Object[] row = rows.get(0);
+        Entry loaded = new Entry((Long) row[0], username, (UserStatus) row[1], (KycStatus) row[2], (AccountLevel) row[3], now);
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear(); // Crude bound; the working set reloads within one round of requests.
+        }
+        entries.put(username, loaded);
+        return Optional.of(loaded);
+    }
+
+    /**
+     * Forgets the user now and again once the surrounding transaction commits, so a
+     * concurrent lookup cannot re-cache the pre-change row, and records the change for the
+     * other nodes in the same transaction.
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        entries.remove(username);
+        em.persist(UserCacheInvalidation.builder()
+                .username(username)
+                .createdAt(LocalDateTime.now())
+                .build());
+        TransactionCallbacks.afterCommit(txRegistry, () -> entries.remove(username));
+    }
+
+    /**
+     * Evicts users changed on any node since the last poll from this node's caches.
+     */
+    @Schedule(second = "*/5", minute = "*", hour = "*", persistent = false)
+    public void pollInvalidations() {
+        LocalDateTime polledAt = LocalDateTime.now();
+        List<String> usernames = em.createQuery(
+                        "SELECT DISTINCT i.username FROM UserCacheInvalidation i WHERE i.createdAt >= :since", String.class)
+                .setParameter("since", lastPolledAt.minusSeconds(POLL_OVERLAP_SECONDS))
+                .getResultList();
+        if (!usernames.isEmpty()) {
+            Cache cache = em.getEntityManagerFactory().getCache();
+            for (Long id : em.createQuery("SELECT u.id FROM User u WHERE u.username IN :usernames", Long.class)
+                    .setParameter("usernames", usernames)
+                    .getResultList()) {
+                cache.evict(User.class, id);
+            }
+            usernames.forEach(entries::remove);
+        }
+        lastPolledAt = polledAt;
+    }
+
+    @Schedule(minute = "15", hour = "*", persistent = false)
+    public void pruneInvalidations() {
+        em.createQuery("DELETE FROM UserCacheInvalidation i WHERE i.createdAt < :cutoff")
+                .setParameter("cutoff", LocalDateTime.now().minusHours(INVALIDATION_RETENTION_HOURS))
+                .executeUpdate();
+    }
+
+    /**
+     * The cached, security-relevant view of one user.
+     */
+    public static final class Entry {
+        private final long id;
+        private final String username;
+        private final UserStatus status;
+        private final KycStatus kycStatus;
+        private final AccountLevel accountLevel;
+        private final long loadedAt;
+
+        Entry(long id, String username, UserStatus status, KycStatus kycStatus, AccountLevel accountLevel, long loadedAt) {
+            this.id = id;
+            this.username = username;
+            this.status = status;
+            this.kycStatus = kycStatus;
+            this.accountLevel = accountLevel;
+            this.loadedAt = loadedAt;
+        }
+
+        public boolean isActive() { return status == UserStatus.ACTIVE; }
+
+        public long getId() { return id; }
+        public String getUsername() { return username; }
+        public UserStatus getStatus() { return status; }
+        public KycStatus getKycStatus() { return kycStatus; }
+        public AccountLevel getAccountLevel() { return accountLevel; }
+    }
+}
@@ -10,11 +10,15 @@ import entity.Transaction;
 import enums.TransactionStatus;
 import enums.TransactionType;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.TransactionAttribute;
 import jakarta.ejb.TransactionAttributeType;
 import jakarta.interceptor.Interceptors;
 import jakarta.persistence.*;
+import service.BalanceEngine;
+import service.DashboardStatistics;
+import service.LedgerService;
 import service.DepositService;
 import util.LoggingInterceptor;
 
@@ -35,6 +39,15 @@ public class DepositServiceImpl implements DepositService {
     @PersistenceContext
     private EntityManager em;
 
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private LedgerService ledgerService;
+
+    @EJB
+    private BalanceEngine balanceEngine;
+
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
     public void processDeposit(String employeeUsername, DepositRequestDTO request) {
@@ -45,6 +58,9 @@ public class DepositServiceImpl implements DepositService {
         if (request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Deposit amount must be positive.");
         }
+        if (balanceEngine.isClaimed(toAccount)) {
+            throw new IllegalStateException("Deposits into this account are not accepted at the moment.");
+        }
 
         // 3. Update the account balance
         BigDecimal newBalance = toAccount.getBalance().add(request.getAmount());
@@ -62,6 +78,8 @@ public class DepositServiceImpl implements DepositService {
         txLog.setTransactionDate(LocalDateTime.now());
         txLog.setRunningBalance(newBalance);
         em.persist(txLog);
+        ledgerService.post(txLog);
+        statistics.recordTransaction(txLog);
 
         // 5. Create the detailed Deposit audit record
         Deposit depositRecord = new Deposit();
@@ -9,6 +9,7 @@ import enums.AccountType;
 import enums.TransactionStatus;
 import enums.TransactionType;
 import enums.UserStatus;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.TransactionAttribute;
 import jakarta.ejb.TransactionAttributeType;
@@ -17,7 +18,11 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import service.BalanceEngine;
+import service.DashboardStatistics;
+import service.LedgerService;
 import service.GiftService;
+import service.UserPrincipalCache;
 import util.LoggingInterceptor;
 
 import java.math.BigDecimal;
@@ -31,6 +36,18 @@ public class GiftServiceImpl implements GiftService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private LedgerService ledgerService;
+
+    @EJB
+    private BalanceEngine balanceEngine;
+
 
     private static final BigDecimal GIFT_AMOUNT = new BigDecimal("100.00");
 
@@ -50,6 +67,9 @@ public class GiftServiceImpl implements GiftService {
 
         // 3. Find a suitable account to deposit the gift into (e.g., the first SAVING or CURRENT account)
         Account targetAccount = findPrimaryDepositAccountForUser(user);
+        if (balanceEngine.isClaimed(targetAccount)) {
+            throw new IllegalStateException("The welcome gift cannot be claimed into this account at the moment.");
+        }
 
         // 4. Update balances and user status
         targetAccount.setBalance(targetAccount.getBalance().add(GIFT_AMOUNT));
@@ -69,6 +89,8 @@ public class GiftServiceImpl implements GiftService {
         log.setTransactionDate(LocalDateTime.now());
         log.setRunningBalance(targetAccount.getBalance());
         em.persist(log);
+        ledgerService.post(log);
+        statistics.recordTransaction(log);
 
         return targetAccount.getBalance();
     }
@@ -91,12 +113,9 @@ public class GiftServiceImpl implements GiftService {
     }
 
     private User findUserByUsername(String username) {
-        try {
-            return em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
-                    .setParameter("username", username)
-                    .getSingleResult();
-        } catch (NoResultException e) {
-            throw new IllegalArgumentException("User '" + username + "' not found.");
-        }
+        UserPrincipalCache.Entry principal = userPrincipalCache.resolve(username)
+                .orElseThrow(() -> new IllegalArgumentException("User '" + username + "' not found."));
+        // Served by the shared entity cache when the user was loaded recently.
+        return em.find(User.class, principal.getId());
     }
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+package service.impl;
+
+import entity.Account;
+import entity.AccountBalanceSnapshot;
+import entity.LedgerEntry;
+import entity.Transaction;
+import enums.EntryDirection;
+import enums.TransactionStatus;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Stateless;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import service.BalanceEngine;
+import service.LedgerService;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Stateless
+public class LedgerServiceImpl implements LedgerService {
+
+    // Credits add to the balance, debits subtract from it.
+    static final String SIGNED_AMOUNT = "CASE WHEN e.direction = enums.EntryDirection.CREDIT THEN e.amount ELSE -e.amount END";
+    private static final int SNAPSHOT_BATCH_SIZE = 500;
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @EJB
+    private BalanceEngine balanceEngine;
+
+    @Override
+    public void post(Transaction transaction) {
+        // The engine writes its own entries; anything else moving money on its accounts, on any node, would be invisible to it.
+        if (isManagedByEngine(transaction.getFromAccount()) || isManagedByEngine(transaction.getToAccount())) {
+            throw new IllegalStateException("This account is served by the balance engine and cannot be changed this way.");
+        }
+        em.persist(entry(transaction, transaction.getFromAccount(), EntryDirection.DEBIT));
+        em.persist(entry(transaction, transaction.getToAccount(), EntryDirection.CREDIT));
+    }
+
+    @Override
+    public BigDecimal balanceAsOf(Long accountId, LocalDateTime at) {
+        List<AccountBalanceSnapshot> snapshots = em.createQuery(
+                        "SELECT s FROM AccountBalanceSnapshot s WHERE s.account.id = :accountId AND s.cutoff <= :at " +
+                                "ORDER BY s.cutoff DESC", AccountBalanceSnapshot.class)
+                .setParameter("accountId", accountId)
+                .setParameter("at", at)
+                .setMaxResults(1)
+                .getResultList();
+        if (!snapshots.isEmpty()) {
+            AccountBalanceSnapshot snapshot = snapshots.get(0);
+            return snapshot.getBalance().add(netChange(accountId, snapshot.getCutoff(), at));
+        }
+
+        // No snapshot yet (a new account, or a time before the first one): work back from today's balance.
+        Account account = em.find(Account.class, accountId);
+        if (account == null) {
+            throw new IllegalArgumentException("Account not found.");
+        }
+        return account.getBalance().subtract(netChange(accountId, at, null));
+    }
+
+    @Override
+    public LocalDateTime lastUnpostedTransactionAt(Long accountId) {
+        return em.createQuery(
+                        "SELECT MAX(t.transactionDate) FROM Transaction t " +
+                                "WHERE (t.fromAccount.id = :accountId OR t.toAccount.id = :accountId) AND t.status = :completed " +
+                                "AND NOT EXISTS (SELECT e FROM LedgerEntry e WHERE e.transaction = t)", LocalDateTime.class)
+                .setParameter("accountId", accountId)
+                .setParameter("completed", TransactionStatus.COMPLETED)
+                .getSingleResult();
+    }
+
+    @Override
+    public int takeSnapshots(LocalDateTime cutoff) {
+        Long existing = em.createQuery("SELECT COUNT(s) FROM AccountBalanceSnapshot s WHERE s.cutoff = :cutoff", Long.class)
+                .setParameter("cutoff", cutoff)
+                .getSingleResult();
+        if (existing > 0) {
+            return 0; // Already taken for this cutoff.
+        }
+        LocalDateTime previousCutoff = em.createQuery(
+                        "SELECT MAX(s.cutoff) FROM AccountBalanceSnapshot s WHERE s.cutoff < :cutoff", LocalDateTime.class)
+                .setParameter("cutoff", cutoff)
+                .getSingleResult();
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, BigDecimal> balances = new HashMap<>();
+
+        // Accounts with entries since the previous run roll their latest snapshot forward.
+        if (previousCutoff != null) {
+            Map<Long, BigDecimal> changes = new HashMap<>();
+            for (Object[] row : em.createQuery(
+                            "SELECT e.account.id, SUM(" + SIGNED_AMOUNT + ") FROM LedgerEntry e " +
+                                    "WHERE e.account IS NOT NULL AND e.postedAt >= :from AND e.postedAt < :to GROUP BY e.account.id", Object[].class)
+                    .setParameter("from", previousCutoff)
+                    .setParameter("to", cutoff)
+                    .getResultList()) {
+                changes.put((Long) row[0], (BigDecimal) row[1]);
+            }
+            List<Long> changedIds = new ArrayList<>(changes.keySet());
+            for (int i = 0; i < changedIds.size(); i += SNAPSHOT_BATCH_SIZE) {
+                for (Object[] row : em.createQuery(
+                                "SELECT s.account.id, s.balance FROM AccountBalanceSnapshot s WHERE s.account.id IN :ids " +
+                                        "AND s.cutoff = (SELECT MAX(s2.cutoff) FROM AccountBalanceSnapshot s2 " +
+                                        "WHERE s2.account = s.account AND s2.cutoff < :cutoff)", Object[].class)
+                        .setParameter("ids", changedIds.subList(i, Math.min(i + SNAPSHOT_BATCH_SIZE, changedIds.size())))
+                        .setParameter("cutoff", cutoff)
+                        .getResultList()) {
+                    balances.put((Long) row[0], ((BigDecimal) row[1]).add(changes.get((Long) row[0])));
+                }
+            }
+        }
+
+        // Accounts never snapshotted work back from their current balance.
+        Map<Long, BigDecimal> changesSinceCutoff = new HashMap<>();
+        for (Object[] row : em.createQuery(
+                        "SELECT e.account.id, SUM(" + SIGNED_AMOUNT + ") FROM LedgerEntry e " +
+                                "WHERE e.account IS NOT NULL AND e.postedAt >= :cutoff GROUP BY e.account.id", Object[].class)
+                .setParameter("cutoff", cutoff)
+                .getResultList()) {
+            changesSinceCutoff.put((Long) row[0], (BigDecimal) row[1]);
+        }
+        for (Object[] row : em.createQuery(
+                        "SELECT a.id, a.balance FROM Account a WHERE NOT EXISTS " +
+                                "(SELECT s FROM AccountBalanceSnapshot s WHERE s.account = a)", Object[].class)
+                .getResultList()) {
+            BigDecimal sinceCutoff = changesSinceCutoff.getOrDefault((Long) row[0], BigDecimal.ZERO);
+            balances.put((Long) row[0], ((BigDecimal) row[1]).subtract(sinceCutoff));
+        }
+
+        int written = 0;
+        for (Map.Entry<Long, BigDecimal> balance : balances.entrySet()) {
+            em.persist(AccountBalanceSnapshot.builder()
+                    .account(em.getReference(Account.class, balance.getKey()))
+                    .cutoff(cutoff)
+                    .balance(balance.getValue())
+                    .takenAt(now)
+                    .build());
+            if (++written % SNAPSHOT_BATCH_SIZE == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        return written;
+    }
+
+    // --- Helper Methods ---
+
+    private boolean isManagedByEngine(Account account) {
+        return balanceEngine.isClaimed(account);
+    }
+
+    private BigDecimal netChange(Long accountId, LocalDateTime from, LocalDateTime to) {
+        TypedQuery<BigDecimal> query = em.createQuery(
+                "SELECT SUM(" + SIGNED_AMOUNT + ") FROM LedgerEntry e WHERE e.account.id = :accountId " +
+                        "AND e.postedAt >= :from" + (to != null ? " AND e.postedAt < :to" : ""), BigDecimal.class);
+        query.setParameter("accountId", accountId);
+        query.setParameter("from", from);
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        BigDecimal sum = query.getSingleResult();
+        return sum != null ? sum : BigDecimal.ZERO;
+    }
+
+    private static LedgerEntry entry(Transaction transaction, Account account, EntryDirection direction) {
+        return LedgerEntry.builder()
+                .transaction(transaction)
+                .account(account)
+                .direction(direction)
+                .amount(transaction.getAmount())
+                .balanceAfter(account != null ? account.getBalance() : null)
+                .postedAt(transaction.getTransactionDate())
+                .build();
+    }
+}
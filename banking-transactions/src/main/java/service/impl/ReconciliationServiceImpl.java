@@ -0,0 +1,224 @@
+package service.impl;
+
+import dto.ReconciliationDiscrepancyDTO;
+import dto.ReconciliationRunDTO;
+import entity.Account;
+import entity.ReconciliationDiscrepancy;
+import entity.ReconciliationRun;
+import enums.ReconciliationStatus;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import service.ReconciliationService;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@Stateless
+public class ReconciliationServiceImpl implements ReconciliationService {
+
+    private static final int FLUSH_INTERVAL = 500;
+    private static final int MAX_REPORTED_DISCREPANCIES = 1000;
+    private static final String LATEST_SNAPSHOT =
+            "s.cutoff = (SELECT MAX(s2.cutoff) FROM AccountBalanceSnapshot s2 WHERE s2.account = s.account)";
+
+    @PersistenceContext(unitName = "bankingPU")
+    private EntityManager em;
+
+    @Override
+    public long[] accountIdBounds() {
+        Object[] bounds = em.createQuery("SELECT MIN(a.id), MAX(a.id) FROM Account a", Object[].class).getSingleResult();
+        if (bounds[0] == null) {
+            return null;
+        }
+        return new long[]{(Long) bounds[0], (Long) bounds[1]};
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS) // Read-only; runs without a transaction from the job's worker threads
+    public RangeResult checkRange(long fromId, long toId) {
+        return check(fromId, toId);
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Mismatch recheck(long accountId) {
+        em.find(Account.class, accountId, LockModeType.PESSIMISTIC_WRITE);
+        List<Mismatch> mismatches = check(accountId, accountId + 1).getMismatches();
+        return mismatches.isEmpty() ? null : mismatches.get(0);
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Long startRun() {
+        ReconciliationRun run = ReconciliationRun.builder()
+                .status(ReconciliationStatus.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .build();
+        em.persist(run);
+        em.flush();
+        return run.getId();
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void finishRun(Long runId, long accountsChecked, long entriesScanned, List<Mismatch> mismatches, long durationMillis) {
+        ReconciliationRun run = em.find(ReconciliationRun.class, runId);
+        run.setStatus(ReconciliationStatus.COMPLETED);
+        run.setFinishedAt(LocalDateTime.now());
+        run.setDurationMillis(durationMillis);
+        run.setAccountsChecked(accountsChecked);
+        run.setEntriesScanned(entriesScanned);
+        run.setDiscrepancyCount(mismatches.size());
+        em.flush();
+
+        int written = 0;
+        for (Mismatch mismatch : mismatches) {
+            em.persist(ReconciliationDiscrepancy.builder()
+                    .run(em.getReference(ReconciliationRun.class, runId))
+                    .account(em.getReference(Account.class, mismatch.getAccountId()))
+                    .storedBalance(mismatch.getStoredBalance())
+                    .expectedBalance(mismatch.getExpectedBalance())
+                    .difference(mismatch.getStoredBalance().subtract(mismatch.getExpectedBalance()))
+                    .build());
+            if (++written % FLUSH_INTERVAL == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void failRun(Long runId, String reason, long durationMillis) {
+        ReconciliationRun run = em.find(ReconciliationRun.class, runId);
+        if (run == null) {
+            return;
+        }
+        run.setStatus(ReconciliationStatus.FAILED);
+        run.setFinishedAt(LocalDateTime.now());
+        run.setDurationMillis(durationMillis);
+        run.setFailureReason(reason != null && reason.length() > 500 ? reason.substring(0, 500) : reason);
+    }
+
+    @Override
+    @RolesAllowed("ADMIN")
+    public List<ReconciliationRunDTO> findRecentRuns(int limit) {
+        return em.createQuery("SELECT r FROM ReconciliationRun r ORDER BY r.startedAt DESC", ReconciliationRun.class)
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(run -> toDto(run, null))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @RolesAllowed("ADMIN")
+    public Optional<ReconciliationRunDTO> findRun(Long runId) {
+        ReconciliationRun run = em.find(ReconciliationRun.class, runId);
+        return Optional.ofNullable(run).map(r -> toDto(r, findDiscrepancies(r.getId())));
+    }
+
+    @Override
+    @RolesAllowed("ADMIN")
+    public Optional<ReconciliationRunDTO> findLatestRun() {
+        return em.createQuery("SELECT r FROM ReconciliationRun r ORDER BY r.startedAt DESC", ReconciliationRun.class)
+                .setMaxResults(1)
+                .getResultList()
+                .stream()
+                .findFirst()
+                .map(r -> toDto(r, findDiscrepancies(r.getId())));
+    }
+
+    // --- Helper Methods ---
+
+    private RangeResult check(long fromId, long toId) {
+        Map<Long, BigDecimal> snapshotBalances = new HashMap<>();
+        for (Object[] row : rangeQuery(
+                "SELECT s.account.id, s.balance FROM AccountBalanceSnapshot s " +
+                        "WHERE s.account.id >= :fromId AND s.account.id < :toId AND " + LATEST_SNAPSHOT, fromId, toId)) {
+            snapshotBalances.put((Long) row[0], (BigDecimal) row[1]);
+        }
+
+        // Entries after each account's latest snapshot, or all of them if it has none yet.
+        Map<Long, BigDecimal> netChanges = new HashMap<>();
+        long entriesScanned = 0;
+        List<Object[]> changeRows = new ArrayList<>(rangeQuery(
+                "SELECT e.account.id, SUM(" + LedgerServiceImpl.SIGNED_AMOUNT + "), COUNT(e) " +
+                        "FROM LedgerEntry e, AccountBalanceSnapshot s WHERE s.account = e.account " +
+                        "AND e.account.id >= :fromId AND e.account.id < :toId AND " + LATEST_SNAPSHOT + " " +
+                        "AND e.postedAt >= s.cutoff GROUP BY e.account.id", fromId, toId));
+        changeRows.addAll(rangeQuery(
+                "SELECT e.account.id, SUM(" + LedgerServiceImpl.SIGNED_AMOUNT + "), COUNT(e) FROM LedgerEntry e " +
+                        "WHERE e.account.id >= :fromId AND e.account.id < :toId " +
+                        "AND NOT EXISTS (SELECT s FROM AccountBalanceSnapshot s WHERE s.account = e.account) " +
+                        "GROUP BY e.account.id", fromId, toId));
+        for (Object[] row : changeRows) {
+            netChanges.put((Long) row[0], (BigDecimal) row[1]);
+            entriesScanned += ((Number) row[2]).longValue();
+        }
+
+        List<Object[]> accounts = rangeQuery(
+                "SELECT a.id, a.balance FROM Account a WHERE a.id >= :fromId AND a.id < :toId", fromId, toId);
+        List<Mismatch> mismatches = new ArrayList<>();
+        for (Object[] row : accounts) {
+            Long accountId = (Long) row[0];
+            BigDecimal stored = (BigDecimal) row[1];
+            BigDecimal expected = snapshotBalances.getOrDefault(accountId, BigDecimal.ZERO)
+                    .add(netChanges.getOrDefault(accountId, BigDecimal.ZERO));
+            if (stored.compareTo(expected) != 0) {
+                mismatches.add(new Mismatch(accountId, stored, expected));
+            }
+        }
+        return new RangeResult(accounts.size(), entriesScanned, mismatches);
+    }
+
+    private List<Object[]> rangeQuery(String jpql, long fromId, long toId) {
+        return em.createQuery(jpql, Object[].class)
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .getResultList();
+    }
+
+    private List<ReconciliationDiscrepancyDTO> findDiscrepancies(Long runId) {
+        return em.createQuery(
+                        "SELECT d FROM ReconciliationDiscrepancy d JOIN FETCH d.account WHERE d.run.id = :runId " +
+                                "ORDER BY ABS(d.difference) DESC", ReconciliationDiscrepancy.class)
+                .setParameter("runId", runId)
+                .setMaxResults(MAX_REPORTED_DISCREPANCIES)
+                .getResultList()
+                .stream()
+                .map(d -> ReconciliationDiscrepancyDTO.builder()
+                        .accountNumber(d.getAccount().getAccountNumber())
+                        .storedBalance(d.getStoredBalance())
+                        .expectedBalance(d.getExpectedBalance())
+                        .difference(d.getDifference())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private ReconciliationRunDTO toDto(ReconciliationRun run, List<ReconciliationDiscrepancyDTO> discrepancies) {
+        return ReconciliationRunDTO.builder()
+                .id(run.getId())
+                .status(run.getStatus())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .durationMillis(run.getDurationMillis())
+                .accountsChecked(run.getAccountsChecked())
+                .entriesScanned(run.getEntriesScanned())
+                .discrepancyCount(run.getDiscrepancyCount())
+                .failureReason(run.getFailureReason())
+                .discrepancies(discrepancies)
+                .build();
+    }
+}
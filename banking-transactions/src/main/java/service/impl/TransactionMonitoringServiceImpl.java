@@ -3,16 +3,16 @@ package service.impl;
 import annotation.Audit;
 import annotation.Logging;
 import dto.AdminTransactionDTO;
-import entity.Biller;
 import entity.Transaction;
 import enums.TransactionType;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.interceptor.Interceptors;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import service.BillerDirectory;
 import service.TransactionMonitoringService;
 import util.LoggingInterceptor;
 
@@ -32,14 +32,20 @@ public class TransactionMonitoringServiceImpl implements TransactionMonitoringSe
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private BillerDirectory billerDirectory;
+
     @Override
     public List<AdminTransactionDTO> searchTransactions(
             String searchTerm, TransactionType transactionType,
             LocalDate startDate, LocalDate endDate,
             int pageNumber, int pageSize) {
 
-        // Build the dynamic query for fetching the transaction entities
-        StringBuilder jpql = new StringBuilder("SELECT t FROM Transaction t WHERE 1=1");
+        // Build the dynamic query for fetching the transaction entities, together with the
+        // accounts and owners AdminTransactionDTO reads, so a page costs a single query
+        StringBuilder jpql = new StringBuilder("SELECT t FROM Transaction t " +
+                "LEFT JOIN FETCH t.fromAccount fa LEFT JOIN FETCH fa.owner " +
+                "LEFT JOIN FETCH t.toAccount ta LEFT JOIN FETCH ta.owner WHERE 1=1");
         Map<String, Object> parameters = new HashMap<>();
 
         buildWhereClause(jpql, parameters, searchTerm, transactionType, startDate, endDate);
@@ -117,15 +123,11 @@ public class TransactionMonitoringServiceImpl implements TransactionMonitoringSe
 
             // Special handling for bill payments to show the Biller's name
             if (tx.getTransactionType() == TransactionType.BILL_PAYMENT && tx.getToAccount() != null) {
-                try {
-                    // Find the biller associated with the internal destination account
-                    TypedQuery<Biller> query = em.createQuery("SELECT b FROM Biller b WHERE b.internalAccount = :account", Biller.class);
-                    query.setParameter("account", tx.getToAccount());
-                    Biller biller = query.getSingleResult();
-                    dto.setToOwnerUsername(biller.getBillerName() + " (Biller)");
-                } catch (NoResultException e) {
-                    dto.setToOwnerUsername("Unknown Biller");
-                }
+                // Resolve the biller from the in-memory directory instead of a query per row
+                String billerName = billerDirectory.findByInternalAccountId(tx.getToAccount().getId())
+                        .map(biller -> biller.getBillerName() + " (Biller)")
+                        .orElse("Unknown Biller");
+                dto.setToOwnerUsername(billerName);
             }
             dtos.add(dto);
         }
@@ -14,6 +14,7 @@ import enums.*;
 import exception.AccountStatusException;
 import exception.InsufficientFundsException;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.TransactionAttribute;
 import jakarta.ejb.TransactionAttributeType;
@@ -23,14 +24,26 @@ import jakarta.persistence.LockModeType;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import service.BalanceEngine;
+import service.BalanceHoldLedger;
+import service.BillerDirectory;
+import service.DashboardStatistics;
+import service.LedgerService;
+import service.QueuedTransfer;
 import service.TransactionService;
+import service.UserPrincipalCache;
 import util.LoggingInterceptor;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Audit
@@ -42,31 +55,102 @@ public class TransactionServiceImpl implements TransactionService {
     @PersistenceContext(unitName = "bankingPU")
     private EntityManager em;
 
+    @EJB
+    private UserPrincipalCache userPrincipalCache;
+
+    @EJB
+    private DashboardStatistics statistics;
+
+    @EJB
+    private LedgerService ledgerService;
+
+    @EJB
+    private BillerDirectory billerDirectory;
+
+    @EJB
+    private BalanceHoldLedger balanceHolds;
+
+    @EJB
+    private BalanceEngine balanceEngine;
+
     @Override
-    @RolesAllowed("CUSTOMER")
+    @RolesAllowed({"CUSTOMER", "SYSTEM"}) // SYSTEM when passed on by the transfer pipeline, which runs as SYSTEM
     @TransactionAttribute(TransactionAttributeType.REQUIRED) // Ensures this whole method is one atomic database transaction
     public void performTransfer(String username, TransactionRequestDTO request) {
 
-        User user = findUserByUsername(username);
+        UserPrincipalCache.Entry user = findPrincipal(username);
+
+        if (balanceEngine.isManaged(request.getFromAccountNumber())) {
+            balanceEngine.transfer(user, request);
+            return;
+        }
 
         Account fromAccount = findAndLockAccount(request.getFromAccountNumber());
         Account toAccount = findAndLockAccount(request.getToAccountNumber());
 
-        if (user.getStatus() != UserStatus.ACTIVE) {
+        transfer(user, fromAccount, toAccount, request);
+    }
+
+    @Override
+    @RolesAllowed("SYSTEM") // Acts for any username; only the transfer pipeline runs as SYSTEM.
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<RuntimeException> performTransferBatch(List<QueuedTransfer> transfers) {
+        Set<String> accountNumbers = new HashSet<>();
+        for (QueuedTransfer queued : transfers) {
+            if (queued.getRequest().getFromAccountNumber() != null) accountNumbers.add(queued.getRequest().getFromAccountNumber());
+            if (queued.getRequest().getToAccountNumber() != null) accountNumbers.add(queued.getRequest().getToAccountNumber());
+        }
+
+        // Lock every account of the batch in one round trip, in id order to keep lock waits deadlock-free.
+        Map<String, Account> lockedAccounts = new HashMap<>();
+        if (!accountNumbers.isEmpty()) {
+            for (Account account : em.createQuery(
+                            "SELECT a FROM Account a WHERE a.accountNumber IN :accountNumbers ORDER BY a.id", Account.class)
+                    .setParameter("accountNumbers", accountNumbers)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList()) {
+                lockedAccounts.put(account.getAccountNumber(), account);
+            }
+        }
+
+        List<RuntimeException> outcomes = new ArrayList<>(transfers.size());
+        for (QueuedTransfer queued : transfers) {
+            try {
+                TransactionRequestDTO request = queued.getRequest();
+                transfer(findPrincipal(queued.getUsername()),
+                        lockedAccount(lockedAccounts, request.getFromAccountNumber()),
+                        lockedAccount(lockedAccounts, request.getToAccountNumber()),
+                        request);
+                outcomes.add(null);
+            } catch (RuntimeException e) {
+                outcomes.add(e);
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Validates and applies one customer transfer on already-locked accounts. Every check runs
+     * before anything is changed, so a rejected transfer leaves no trace in a batch.
+     */
+    private void transfer(UserPrincipalCache.Entry user, Account fromAccount, Account toAccount, TransactionRequestDTO request) {
+        if (!user.isActive()) {
             throw new AccountStatusException("Your account is not active. Please contact support.");
         }
-        if (!fromAccount.getOwner().equals(user)) {
+        if (!isOwnedBy(fromAccount, user)) {
             throw new SecurityException("Authorization error: You do not own the source account.");
         }
         if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Transfer amount must be a positive value.");
         }
-        if (fromAccount.getBalance().compareTo(request.getAmount()) < 0) {
+        if (balanceHolds.availableBalance(fromAccount).compareTo(request.getAmount()) < 0) {
             throw new InsufficientFundsException("Insufficient funds for this transfer.");
         }
         if(fromAccount.getAccountNumber().equals(toAccount.getAccountNumber())){
             throw new IllegalArgumentException("Cannot transfer funds to the same account.");
         }
+        checkNotManagedByEngine(fromAccount, toAccount);
+        String description = "Transfer to " + toAccount.getOwner().getFirstName();
 
         BigDecimal newFromBalance = fromAccount.getBalance().subtract(request.getAmount());
         fromAccount.setBalance(newFromBalance);
@@ -82,11 +166,13 @@ public class TransactionServiceImpl implements TransactionService {
         transactionLog.setToAccount(toAccount);
         transactionLog.setAmount(request.getAmount());
         transactionLog.setTransactionDate(LocalDateTime.now());
-        transactionLog.setDescription("Transfer to " + toAccount.getOwner().getFirstName());
+        transactionLog.setDescription(description);
         transactionLog.setUserMemo(request.getUserMemo());
         transactionLog.setRunningBalance(newFromBalance);
 
         em.persist(transactionLog);
+        ledgerService.post(transactionLog);
+        statistics.recordTransaction(transactionLog);
     }
 
     @Override
@@ -133,9 +219,9 @@ public class TransactionServiceImpl implements TransactionService {
         if (transaction.getToAccount() != null) {
             if (transaction.getTransactionType() == TransactionType.BILL_PAYMENT) {
 
-                Optional<Biller> billerOptional = findBillerByInternalAccount(transaction.getToAccount());
+                Optional<BillerDirectory.Entry> billerOptional = billerDirectory.findByInternalAccountId(transaction.getToAccount().getId());
                 if (billerOptional.isPresent()) {
-                    Biller biller = billerOptional.get();
+                    BillerDirectory.Entry biller = billerOptional.get();
                     dto.setToOwnerName(biller.getBillerName());
                     dto.setToAccountNumber("BILLER");
                     dto.setToOwnerAvatarUrl(buildAvatarApiUrl(biller.getLogoUrl()));
@@ -158,7 +244,7 @@ public class TransactionServiceImpl implements TransactionService {
         }
 
         if(filename.contains("avatar")){
-            return "/api/user/profile/avatar/image/" + filename;
+            return "/api/user/profile/avatar/image/" + filename + "?size=64"; // Shown as a thumbnail
         }else {
             return "/api/biller/logo/image/" + filename;
         }
@@ -181,15 +267,15 @@ public class TransactionServiceImpl implements TransactionService {
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
     public void performSystemTransfer(Long fromAccountId, Long toAccountId, BigDecimal amount, String memo) {
-
         Account fromAccount = findAndLockAccountById(fromAccountId);
         Account toAccount = findAndLockAccountById(toAccountId);
+        checkNotManagedByEngine(fromAccount, toAccount);
 
         if (fromAccount.getOwner().getStatus() != UserStatus.ACTIVE) {
             throw new IllegalStateException("User account is not active.");
         }
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
-            throw new IllegalStateException("Insufficient funds.");
+        if (balanceHolds.availableBalance(fromAccount).compareTo(amount) < 0) {
+            throw new InsufficientFundsException("Insufficient funds.");
         }
 
         BigDecimal newFromBalance = fromAccount.getBalance().subtract(amount);
@@ -208,6 +294,8 @@ public class TransactionServiceImpl implements TransactionService {
         transactionLog.setUserMemo(memo);
         transactionLog.setRunningBalance(newFromBalance);
         em.persist(transactionLog);
+        ledgerService.post(transactionLog);
+        statistics.recordTransaction(transactionLog);
     }
 
     @Override
@@ -215,17 +303,17 @@ public class TransactionServiceImpl implements TransactionService {
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
     public void payBill(String username, BillPaymentRequestDTO request) {
 
-        User user = findUserByUsername(username);
+        UserPrincipalCache.Entry user = findPrincipal(username);
         Account fromAccount = findAndLockAccount(request.getFromAccountNumber());
 
         Biller biller = findBillerById(request.getBillerId());
         Account toBillerAccount = findAndLockAccount(biller.getInternalAccount().getAccountNumber());
         BigDecimal paymentAmount = request.getAmount();
 
-        if (user.getStatus() != UserStatus.ACTIVE) {
+        if (!user.isActive()) {
             throw new AccountStatusException("Your account is not active.");
         }
-        if (!fromAccount.getOwner().equals(user)) {
+        if (!isOwnedBy(fromAccount, user)) {
             throw new SecurityException("Authorization error: You do not own the source account.");
         }
         if (biller.getStatus() != BillerStatus.ACTIVE) {
@@ -234,9 +322,10 @@ public class TransactionServiceImpl implements TransactionService {
         if (request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Payment amount must be positive.");
         }
-        if (fromAccount.getBalance().compareTo(request.getAmount()) < 0) {
+        if (balanceHolds.availableBalance(fromAccount).compareTo(request.getAmount()) < 0) {
             throw new InsufficientFundsException("Insufficient funds.");
         }
+        checkNotManagedByEngine(fromAccount, toBillerAccount);
 
 
         BigDecimal newFromBalance = fromAccount.getBalance().subtract(paymentAmount);
@@ -256,6 +345,8 @@ public class TransactionServiceImpl implements TransactionService {
         log.setRunningBalance(fromAccount.getBalance());
 
         em.persist(log);
+        ledgerService.post(log);
+        statistics.recordTransaction(log);
     }
 
     private Biller findBillerById(Long billerId) {
@@ -278,8 +369,10 @@ public class TransactionServiceImpl implements TransactionService {
             throw new SecurityException("Authorization error: You do not own this account.");
         }
 
+        // Fetch both accounts with the page so TransactionDTO does not lazy-load them row by row.
         StringBuilder jpql = new StringBuilder(
-                "SELECT t FROM Transaction t WHERE (t.fromAccount.id = :accountId OR t.toAccount.id = :accountId)");
+                "SELECT t FROM Transaction t LEFT JOIN FETCH t.fromAccount LEFT JOIN FETCH t.toAccount " +
+                        "WHERE (t.fromAccount.id = :accountId OR t.toAccount.id = :accountId)");
 
 
         java.util.Map<String, Object> parameters = new java.util.HashMap<>();
@@ -325,14 +418,28 @@ public class TransactionServiceImpl implements TransactionService {
         }
     }
 
-    private User findUserByUsername(String username) {
-        try {
-            return em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
-                    .setParameter("username", username)
-                    .getSingleResult();
-        } catch (NoResultException e) {
-            throw new IllegalArgumentException("User '" + username + "' not found.");
+    private Account lockedAccount(Map<String, Account> lockedAccounts, String accountNumber) {
+        Account account = accountNumber != null ? lockedAccounts.get(accountNumber) : null;
+        if (account == null) {
+            throw new IllegalArgumentException("Account with number '" + accountNumber + "' not found.");
         }
+        return account;
+    }
+
+    private void checkNotManagedByEngine(Account fromAccount, Account toAccount) {
+        // Also accounts another node's engine serves; their balance may only change there.
+        if (balanceEngine.isClaimed(fromAccount) || balanceEngine.isClaimed(toAccount)) {
+            throw new IllegalStateException("Transfers into this account are not accepted at the moment.");
+        }
+    }
+
+    private UserPrincipalCache.Entry findPrincipal(String username) {
+        return userPrincipalCache.resolve(username)
+                .orElseThrow(() -> new IllegalArgumentException("User '" + username + "' not found."));
+    }
+
+    private boolean isOwnedBy(Account account, UserPrincipalCache.Entry user) {
+        return account.getOwner() != null && account.getOwner().getId() == user.getId();
     }
 
     private Account findAccountByNumber(String accountNumber) {
@@ -361,13 +468,7 @@ public class TransactionServiceImpl implements TransactionService {
         if (account == null || account.getAccountType() != AccountType.BILLER) {
             return Optional.empty();
         }
-        try {
-            TypedQuery<Biller> query = em.createQuery(
-                    "SELECT b FROM Biller b WHERE b.internalAccount = :account", Biller.class);
-            query.setParameter("account", account);
-            return Optional.of(query.getSingleResult());
-        } catch (NoResultException e) {
-            return Optional.empty();
-        }
+        return billerDirectory.findByInternalAccountId(account.getId())
+                .map(entry -> em.find(Biller.class, entry.getId()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BalanceEngineTest {
+
+    private static final long PAYER = 1;
+    private static final long PAYEE = 2;
+    private static final long OUTSIDE = 99; // Not served by the engine
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayAppliesOnlyRecordsAfterTheCheckpoint() throws IOException {
+        Path file = directory.resolve("shard-0.wal");
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            journal.append(transfer(1, PAYEE, 10_0000));
+            journal.append(transfer(2, PAYEE, 20_0000));
+            journal.append(transfer(3, OUTSIDE, 5_0000));
+            journal.sync();
+        }
+        BalanceEngine engine = new BalanceEngine();
+        // Balances as the database has them, with record 1 already written
+        engine.manage(PAYER, "PAYER", 7L, 90_0000, 0);
+        engine.manage(PAYEE, "PAYEE", 8L, 10_0000, 0);
+
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            BalanceEngine.Shard shard = engine.new Shard(0, journal, 1);
+            assertEquals(2, shard.replay(1));
+
+            assertEquals(new BigDecimal("65.0000"), engine.balanceOf(PAYER));
+            assertEquals(new BigDecimal("30.0000"), engine.balanceOf(PAYEE));
+            List<BalanceJournal.Record> pending = shard.unflushedBatch();
+            assertEquals(2, pending.size());
+            assertEquals(2, pending.get(0).getSequence());
+            assertEquals(3, pending.get(1).getSequence());
+        }
+    }
+
+    @Test
+    void replayAfterAFullFlushChangesNothing() throws IOException {
+        Path file = directory.resolve("shard-0.wal");
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            journal.append(transfer(1, PAYEE, 10_0000));
+            journal.sync();
+        }
+        BalanceEngine engine = new BalanceEngine();
+        engine.manage(PAYER, "PAYER", 7L, 90_0000, 0);
+        engine.manage(PAYEE, "PAYEE", 8L, 10_0000, 0);
+
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            BalanceEngine.Shard shard = engine.new Shard(0, journal, 1);
+            assertEquals(0, shard.replay(1));
+
+            assertEquals(new BigDecimal("90.0000"), engine.balanceOf(PAYER));
+            assertEquals(new BigDecimal("10.0000"), engine.balanceOf(PAYEE));
+            assertEquals(0, shard.unflushedBatch().size());
+        }
+    }
+
+    private static BalanceJournal.Record transfer(long sequence, long toAccountId, long units) {
+        return new BalanceJournal.Record(sequence, BalanceJournal.Record.CUSTOMER_TRANSFER, PAYER, toAccountId, units,
+                1_700_000_000_000L, null);
+    }
+}
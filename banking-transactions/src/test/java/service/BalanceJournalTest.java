@@ -0,0 +1,146 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BalanceJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverReadsBackSyncedRecords() throws IOException {
+        Path file = directory.resolve("shard-0.wal");
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            journal.append(record(1, "Rent"));
+            journal.append(record(2, null));
+            journal.sync();
+        }
+
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            List<BalanceJournal.Record> records = journal.recover();
+            assertEquals(2, records.size());
+            BalanceJournal.Record first = records.get(0);
+            assertEquals(1, first.getSequence());
+            assertEquals(BalanceJournal.Record.CUSTOMER_TRANSFER, first.getKind());
+            assertEquals(10, first.getFromAccountId());
+            assertEquals(20, first.getToAccountId());
+            assertEquals(12_5000, first.getUnits());
+            assertEquals(1_700_000_000_000L, first.getEpochMillis());
+            assertEquals("Rent", first.getMemo());
+            assertNull(records.get(1).getMemo());
+        }
+    }
+
+    @Test
+    void recoverCutsOffATruncatedTail() throws IOException {
+        Path file = directory.resolve("shard-0.wal");
+        long intactSize;
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            journal.append(record(1, "first"));
+            journal.append(record(2, "second"));
+            journal.sync();
+            intactSize = journal.size();
+            journal.append(record(3, "third"));
+            journal.sync();
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.setLength(raw.length() - 3);
+        }
+
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            List<BalanceJournal.Record> records = journal.recover();
+            assertEquals(2, records.size());
+            assertEquals(2, records.get(1).getSequence());
+            assertEquals(intactSize, Files.size(file));
+
+            // Appends continue where the intact records end
+            journal.append(record(3, "again"));
+            journal.sync();
+        }
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            List<BalanceJournal.Record> records = journal.recover();
+            assertEquals(3, records.size());
+            assertEquals("again", records.get(2).getMemo());
+        }
+    }
+
+    @Test
+    void recoverStopsAtARecordWithABadChecksum() throws IOException {
+        Path file = directory.resolve("shard-0.wal");
+        long firstRecordEnd;
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            journal.append(record(1, "first"));
+            journal.sync();
+            firstRecordEnd = journal.size();
+            journal.append(record(2, "second"));
+            journal.append(record(3, "third"));
+            journal.sync();
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            long inSecondBody = firstRecordEnd + 4 + 9; // Inside the from-account id
+            raw.seek(inSecondBody);
+            int original = raw.read();
+            raw.seek(inSecondBody);
+            raw.write(original ^ 0xFF);
+        }
+
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            List<BalanceJournal.Record> records = journal.recover();
+            assertEquals(1, records.size());
+            assertEquals(1, records.get(0).getSequence());
+            assertEquals(firstRecordEnd, Files.size(file));
+        }
+    }
+
+    @Test
+    void recoverOfAnEmptyFileFindsNothing() throws IOException {
+        try (BalanceJournal journal = new BalanceJournal(directory.resolve("shard-0.wal"))) {
+            assertEquals(0, journal.recover().size());
+        }
+    }
+
+    @Test
+    void resetEmptiesTheJournal() throws IOException {
+        Path file = directory.resolve("shard-0.wal");
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            journal.append(record(1, "first"));
+            journal.sync();
+            journal.reset();
+            assertEquals(0, journal.size());
+        }
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            assertEquals(0, journal.recover().size());
+        }
+    }
+
+    @Test
+    void appendRefusesAnOversizedMemoWithoutBufferingIt() throws IOException {
+        Path file = directory.resolve("shard-0.wal");
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            assertThrows(IllegalArgumentException.class, () -> journal.append(record(1, "x".repeat(1025))));
+            journal.append(record(1, "fits"));
+            journal.sync();
+        }
+        try (BalanceJournal journal = new BalanceJournal(file)) {
+            List<BalanceJournal.Record> records = journal.recover();
+            assertEquals(1, records.size());
+            assertEquals("fits", records.get(0).getMemo());
+        }
+    }
+
+    private static BalanceJournal.Record record(long sequence, String memo) {
+        return new BalanceJournal.Record(sequence, BalanceJournal.Record.CUSTOMER_TRANSFER, 10, 20, 12_5000,
+                1_700_000_000_000L, memo);
+    }
+}
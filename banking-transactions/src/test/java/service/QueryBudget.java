@@ -0,0 +1,230 @@
+package service;
+
+import entity.Account;
+import entity.Transaction;
+import entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the statements a service sends to the database, for tests that hold list endpoints
+ * to a fixed number of queries per page however long the page is.
+ *
+ * {@link #entityManager()} stands in for the injected EntityManager. Every executed query and
+ * every {@code find} counts as one statement; query results come from the function given to
+ * the constructor, keyed by the query string.
+ *
+ * Rows built from {@link LazyTransaction} and {@link LazyAccount} load their accounts and
+ * owners the way the persistence provider does: the first access to an entity that the query
+ * did not fetch-join costs one statement, later accesses to the same instance cost nothing.
+ */
+public final class QueryBudget {
+
+    private static final Pattern ROOT_ALIAS = Pattern.compile("^SELECT\\s+(?:DISTINCT\\s+)?(\\w+)\\s+FROM");
+
+    private final Function<String, List<?>> results;
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+    private final Set<Object> loaded = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public QueryBudget(Function<String, List<?>> results) {
+        this.results = results;
+    }
+
+    public EntityManager entityManager() {
+        return (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{EntityManager.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("create") && name.endsWith("Query") && args != null && args[0] instanceof String) {
+                        return query(method.getReturnType(), (String) args[0]);
+                    }
+                    if (name.equals("find") || name.equals("getReference") || name.equals("refresh")) {
+                        statements.add(name + " " + ((Class<?>) args[0]).getSimpleName());
+                        return null;
+                    }
+                    return defaultValue(method);
+                });
+    }
+
+    public int statementCount() {
+        return statements.size();
+    }
+
+    public List<String> statements() {
+        return new ArrayList<>(statements);
+    }
+
+    /**
+     * Sets a private field the container would inject, such as the EntityManager or an EJB.
+     */
+    public static void inject(Object target, String fieldName, Object value) {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // Declared further up.
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("No field " + fieldName + " on " + target.getClass().getName());
+    }
+
+    // --- Helper Methods ---
+
+    private Object query(Class<?> type, String jpql) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getResultList":
+                        return execute(jpql);
+                    case "getResultStream":
+                        return execute(jpql).stream();
+                    case "getSingleResult":
+                        return execute(jpql).get(0);
+                    case "executeUpdate":
+                        execute(jpql);
+                        return 0;
+                    default:
+                        return Query.class.isAssignableFrom(method.getReturnType()) ? proxy : defaultValue(method);
+                }
+            }
+        };
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private List<?> execute(String jpql) {
+        statements.add(jpql);
+        List<?> rows = results.apply(jpql);
+        if (rows == null) {
+            return Collections.emptyList();
+        }
+        Matcher select = ROOT_ALIAS.matcher(jpql);
+        String root = select.find() ? select.group(1) : null;
+        for (Object row : rows) {
+            if (row instanceof LazyTransaction) {
+                LazyTransaction transaction = (LazyTransaction) row;
+                transaction.budget = this;
+                fetched(jpql, root + ".fromAccount", transaction.fromAccount());
+                fetched(jpql, root + ".toAccount", transaction.toAccount());
+            } else if (row instanceof LazyAccount) {
+                LazyAccount account = (LazyAccount) row;
+                account.budget = this;
+                if (jpql.contains("JOIN FETCH " + root + ".owner")) {
+                    loaded.add(account.owner());
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Marks the account at the path, and its owner, as loaded if the query fetch-joined them.
+     */
+    private void fetched(String jpql, String path, Account account) {
+        Matcher join = Pattern.compile("JOIN FETCH " + Pattern.quote(path) + "\\b(?:\\s+(?!(?:LEFT|INNER|JOIN|WHERE|ORDER)\\b)(\\w+))?")
+                .matcher(jpql);
+        if (account == null || !join.find()) {
+            return;
+        }
+        loaded.add(account);
+        if (account instanceof LazyAccount) {
+            LazyAccount lazy = (LazyAccount) account;
+            lazy.budget = this;
+            if (join.group(1) != null && jpql.contains("JOIN FETCH " + join.group(1) + ".owner")) {
+                loaded.add(lazy.owner());
+            }
+        }
+    }
+
+    private void load(Object entity, String association) {
+        if (entity == null || !loaded.add(entity)) {
+            return;
+        }
+        statements.add("lazy load of " + association);
+        if (entity instanceof LazyAccount) {
+            ((LazyAccount) entity).budget = this;
+        }
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    /**
+     * A transaction whose accounts are loaded on first access unless its query fetched them.
+     */
+    public static class LazyTransaction extends Transaction {
+        private transient QueryBudget budget;
+
+        @Override
+        public Account getFromAccount() {
+            return lazy(fromAccount(), "Transaction.fromAccount");
+        }
+
+        @Override
+        public Account getToAccount() {
+            return lazy(toAccount(), "Transaction.toAccount");
+        }
+
+        private Account fromAccount() {
+            return super.getFromAccount();
+        }
+
+        private Account toAccount() {
+            return super.getToAccount();
+        }
+
+        private Account lazy(Account account, String association) {
+            if (budget != null) {
+                budget.load(account, association);
+            }
+            return account;
+        }
+    }
+
+    /**
+     * An account whose owner is loaded on first access unless its query fetched it.
+     */
+    public static class LazyAccount extends Account {
+        private transient QueryBudget budget;
+
+        @Override
+        public User getOwner() {
+            if (budget != null) {
+                budget.load(owner(), "Account.owner");
+            }
+            return owner();
+        }
+
+        private User owner() {
+            return super.getOwner();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package service;
+
+import entity.Account;
+import entity.Transaction;
+import entity.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryBudgetTest {
+
+    @Test
+    void unfetchedAssociationsCostOneStatementPerEntity() {
+        Account shared = account(new User());
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(transaction(shared, account(new User())));
+        }
+        QueryBudget budget = new QueryBudget(jpql -> rows);
+        EntityManager em = budget.entityManager();
+
+        for (Transaction row : em.createQuery("SELECT t FROM Transaction t", Transaction.class).getResultList()) {
+            row.getFromAccount().getOwner();
+            row.getToAccount().getOwner();
+            row.getToAccount().getOwner();
+        }
+
+        // The query, the shared account and its owner once, and each other account and its owner.
+        assertEquals(1 + 2 + 10 * 2, budget.statementCount());
+    }
+
+    @Test
+    void fetchJoinedAssociationsCostNothing() {
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(transaction(account(new User()), account(new User())));
+        }
+        QueryBudget budget = new QueryBudget(jpql -> rows);
+        EntityManager em = budget.entityManager();
+
+        for (Transaction row : em.createQuery("SELECT t FROM Transaction t " +
+                "LEFT JOIN FETCH t.fromAccount fa LEFT JOIN FETCH fa.owner LEFT JOIN FETCH t.toAccount " +
+                "WHERE 1=1", Transaction.class).getResultList()) {
+            row.getFromAccount().getOwner();
+            row.getToAccount();
+        }
+
+        assertEquals(1, budget.statementCount());
+    }
+
+    private static Transaction transaction(Account from, Account to) {
+        Transaction transaction = new QueryBudget.LazyTransaction();
+        transaction.setFromAccount(from);
+        transaction.setToAccount(to);
+        return transaction;
+    }
+
+    private static Account account(User owner) {
+        Account account = new QueryBudget.LazyAccount();
+        account.setOwner(owner);
+        return account;
+    }
+}
@@ -0,0 +1,88 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SequenceAllocatorTest {
+
+    private static final int THREADS = 16;
+    private static final int CALLS_PER_THREAD = 2_000;
+    private static final int BLOCK_SIZE = 10;
+    private static final long FIRST_VALUE = 1_000;
+
+    @Test
+    void concurrentCallersGetEveryNumberOfEveryBlockExactlyOnce() throws Exception {
+        StubbedAllocator allocator = new StubbedAllocator();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<Long>>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                Callable<List<Long>> caller = () -> {
+                    List<Long> values = new ArrayList<>(CALLS_PER_THREAD);
+                    start.await();
+                    for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                        values.add(allocator.next("test", BLOCK_SIZE, () -> FIRST_VALUE));
+                    }
+                    return values;
+                };
+                results.add(pool.submit(caller));
+            }
+            start.countDown();
+
+            List<Long> all = new ArrayList<>(THREADS * CALLS_PER_THREAD);
+            for (Future<List<Long>> result : results) {
+                all.addAll(result.get());
+            }
+            Collections.sort(all);
+
+            // Unique and without gaps: the sorted values are exactly the reserved blocks, back to back.
+            int total = THREADS * CALLS_PER_THREAD;
+            assertEquals(total, all.size());
+            for (int i = 0; i < total; i++) {
+                assertEquals(FIRST_VALUE + i, all.get(i), "value at position " + i);
+            }
+            assertEquals(total / BLOCK_SIZE, allocator.reservations.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Serves blocks from a counter in place of the {@code number_sequence} row, slowly enough
+     * that other callers pile up on an exhausted block while it is refilled.
+     */
+    private static final class StubbedAllocator extends SequenceAllocator {
+        private final AtomicInteger reservations = new AtomicInteger();
+        private long nextValue = -1;
+
+        @Override
+        public synchronized long reserveBlock(String name, int blockSize, LongSupplier initialValue) {
+            reservations.incrementAndGet();
+            if (nextValue < 0) {
+                nextValue = initialValue.getAsLong();
+            }
+            long start = nextValue;
+            nextValue += blockSize;
+            Thread.yield();
+            return start;
+        }
+
+        @Override
+        SequenceAllocator self() {
+            return this;
+        }
+    }
+}
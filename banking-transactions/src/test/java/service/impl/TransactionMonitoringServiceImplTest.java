@@ -0,0 +1,115 @@
+package service.impl;
+
+import dto.AdminTransactionDTO;
+import entity.Account;
+import entity.Biller;
+import entity.Transaction;
+import entity.User;
+import enums.BillerCategory;
+import enums.BillerStatus;
+import enums.TransactionStatus;
+import enums.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.BillerDirectory;
+import service.QueryBudget;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransactionMonitoringServiceImplTest {
+
+    private static final int BILLERS = 3;
+
+    private final List<Transaction> page = new ArrayList<>();
+    private final List<Account> billerAccounts = new ArrayList<>();
+    private QueryBudget budget;
+    private TransactionMonitoringServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        budget = new QueryBudget(jpql -> jpql.startsWith("SELECT t FROM Transaction t") ? page : null);
+        // Without a transaction registry, the directory applies refreshes at once.
+        BillerDirectory directory = new BillerDirectory();
+        for (int i = 0; i < BILLERS; i++) {
+            Account internal = account(1_000L + i, null);
+            billerAccounts.add(internal);
+            directory.refresh(Biller.builder()
+                    .id((long) i + 1)
+                    .billerName("Biller " + i)
+                    .category(BillerCategory.UTILITIES)
+                    .status(BillerStatus.ACTIVE)
+                    .internalAccount(internal)
+                    .build());
+        }
+        service = new TransactionMonitoringServiceImpl();
+        QueryBudget.inject(service, "em", budget.entityManager());
+        QueryBudget.inject(service, "billerDirectory", directory);
+    }
+
+    @Test
+    void pageOfBillPaymentsCostsOneQuery() {
+        fillPage(50);
+
+        List<AdminTransactionDTO> result = service.searchTransactions(null, null, null, null, 1, 50);
+
+        assertEquals(50, result.size());
+        assertEquals("Biller 1 (Biller)", result.get(1).getToOwnerUsername());
+        assertEquals(1, budget.statementCount(), () -> "Statements: " + budget.statements());
+    }
+
+    @Test
+    void queryCountDoesNotGrowWithThePage() {
+        fillPage(5);
+        service.searchTransactions(null, TransactionType.BILL_PAYMENT, null, null, 1, 5);
+        int small = budget.statementCount();
+
+        fillPage(100);
+        service.searchTransactions(null, TransactionType.BILL_PAYMENT, null, null, 1, 100);
+
+        assertEquals(small, budget.statementCount() - small, () -> "Statements: " + budget.statements());
+    }
+
+    @Test
+    void accountsAndOwnersOfThePageAreFetchedWithIt() {
+        fillPage(50);
+
+        List<AdminTransactionDTO> result = service.searchTransactions("payer", null, null, null, 1, 50);
+
+        assertEquals("payer7", result.get(7).getFromOwnerUsername());
+        assertEquals(1, budget.statementCount(), () -> "Statements: " + budget.statements());
+    }
+
+    /**
+     * Fills the page with bill payments from a different customer account on every row, the
+     * worst case for lazily loaded accounts and owners.
+     */
+    private void fillPage(int size) {
+        page.clear();
+        for (int i = 0; i < size; i++) {
+            User payer = new User();
+            payer.setUsername("payer" + i);
+            Transaction transaction = new QueryBudget.LazyTransaction();
+            transaction.setId((long) i + 1);
+            transaction.setTransactionType(TransactionType.BILL_PAYMENT);
+            transaction.setStatus(TransactionStatus.COMPLETED);
+            transaction.setAmount(new BigDecimal("10.0000"));
+            transaction.setTransactionDate(LocalDateTime.now().minusMinutes(i));
+            transaction.setFromAccount(account(i + 1, payer));
+            transaction.setToAccount(billerAccounts.get(i % BILLERS));
+            page.add(transaction);
+        }
+    }
+
+    private static Account account(long id, User owner) {
+        Account account = new QueryBudget.LazyAccount();
+        account.setId(id);
+        account.setAccountNumber(String.valueOf(1_000_000_000L + id));
+        account.setOwner(owner);
+        return account;
+    }
+}
@@ -0,0 +1,93 @@
+package service.impl;
+
+import dto.TransactionDTO;
+import entity.Account;
+import entity.Transaction;
+import entity.User;
+import enums.TransactionStatus;
+import enums.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.QueryBudget;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransactionServiceImplTest {
+
+    private static final String OWNER = "alice";
+    private static final String ACCOUNT_NUMBER = "1000000001";
+
+    private final List<Transaction> page = new ArrayList<>();
+    private Account account;
+    private QueryBudget budget;
+    private TransactionServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        User owner = new User();
+        owner.setUsername(OWNER);
+        account = account(1L, ACCOUNT_NUMBER, owner);
+        budget = new QueryBudget(jpql -> {
+            if (jpql.startsWith("SELECT a FROM Account a")) {
+                return List.of(account);
+            }
+            return jpql.startsWith("SELECT t FROM Transaction t") ? page : null;
+        });
+        service = new TransactionServiceImpl();
+        QueryBudget.inject(service, "em", budget.entityManager());
+    }
+
+    @Test
+    void historyPageCostsTheAccountLookupAndOneQuery() {
+        fillPage(50);
+
+        List<TransactionDTO> result = service.getTransactionHistory(OWNER, ACCOUNT_NUMBER, null, null, null, 1, 50);
+
+        assertEquals(50, result.size());
+        assertEquals("2000000007", result.get(7).getToAccountNumber());
+        assertEquals(2, budget.statementCount(), () -> "Statements: " + budget.statements());
+    }
+
+    @Test
+    void historyQueryCountDoesNotGrowWithThePage() {
+        fillPage(5);
+        service.getTransactionHistory(OWNER, ACCOUNT_NUMBER, null, null, null, 1, 5);
+        int small = budget.statementCount();
+
+        fillPage(100);
+        service.getTransactionHistory(OWNER, ACCOUNT_NUMBER, null, null, null, 1, 100);
+
+        assertEquals(small, budget.statementCount() - small, () -> "Statements: " + budget.statements());
+    }
+
+    /**
+     * Fills the page with transfers to a different account on every row.
+     */
+    private void fillPage(int size) {
+        page.clear();
+        for (int i = 0; i < size; i++) {
+            Transaction transaction = new QueryBudget.LazyTransaction();
+            transaction.setId((long) i + 1);
+            transaction.setTransactionType(TransactionType.TRANSFER);
+            transaction.setStatus(TransactionStatus.COMPLETED);
+            transaction.setAmount(new BigDecimal("10.0000"));
+            transaction.setTransactionDate(LocalDateTime.now().minusMinutes(i));
+            transaction.setFromAccount(account);
+            transaction.setToAccount(account(100L + i, String.valueOf(2_000_000_000L + i), new User()));
+            page.add(transaction);
+        }
+    }
+
+    private static Account account(long id, String accountNumber, User owner) {
+        Account account = new QueryBudget.LazyAccount();
+        account.setId(id);
+        account.setAccountNumber(accountNumber);
+        account.setOwner(owner);
+        return account;
+    }
+}
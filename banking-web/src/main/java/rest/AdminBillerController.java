@@ -7,7 +7,10 @@ import enums.BillerStatus;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
@@ -84,13 +87,37 @@ public class AdminBillerController {
     }
 
     /**
-     * Endpoint to retrieve a list of all Billers in the system.
+     * Endpoint to retrieve a list of all Billers in the system, optionally filtered by
+     * category and status. Answers 304 when the client's ETag is still current.
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response listAllBillers() {
-        List<BillerDTO> billers = billlerService.getAllBillers();
-        return Response.ok(billers).build();
+    public Response listAllBillers(@QueryParam("category") String categoryStr,
+                                   @QueryParam("status") String statusStr,
+                                   @Context Request request) {
+        BillerCategory category;
+        BillerStatus status;
+        try {
+            category = categoryStr != null ? BillerCategory.valueOf(categoryStr.trim().toUpperCase()) : null;
+            status = statusStr != null ? BillerStatus.valueOf(statusStr.trim().toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Collections.singletonMap("error", "Invalid category or status provided."))
+                    .build();
+        }
+
+        // The tag is read first, so the list sent with it can only be newer, never older
+        EntityTag etag = new EntityTag(billlerService.getBillersTag(category, status));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.header("Cache-Control", "private, no-cache").build();
+        }
+
+        List<BillerDTO> billers = billlerService.getBillers(category, status);
+        return Response.ok(billers)
+                .tag(etag)
+                .header("Cache-Control", "private, no-cache") // Always revalidate; unchanged lists cost a 304
+                .build();
     }
 
     /**
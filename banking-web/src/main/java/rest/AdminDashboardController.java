@@ -8,8 +8,11 @@ import jakarta.ejb.EJB;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 
 @Path("/admin/dashboard")
 @RolesAllowed({"ADMIN", "EMPLOYEE"})
@@ -18,6 +21,9 @@ public class AdminDashboardController {
     @EJB
     private AdminDashboardService dashboardService;
 
+    @EJB
+    private DashboardMetricsBroadcaster metricsBroadcaster;
+
     @GET
     @Path("/summary")
     @Produces(MediaType.APPLICATION_JSON)
@@ -33,4 +39,15 @@ public class AdminDashboardController {
                     .build();
         }
     }
+
+    /**
+     * Streams live user, transaction and KYC figures as server-sent events.
+     * An event is sent on connect and then only when the figures change.
+     */
+    @GET
+    @Path("/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamMetrics(@Context SseEventSink eventSink, @Context Sse sse) {
+        metricsBroadcaster.subscribe(eventSink, sse);
+    }
 }
\ No newline at end of file
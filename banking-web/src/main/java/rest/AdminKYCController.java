@@ -3,14 +3,22 @@ package rest;
 
 import auth.service.AdminService;
 import dto.KycDocumentDto;
+import exception.BusinessRuleException;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.SecurityContext;
 import jakarta.ws.rs.core.Response;
+import service.KycImageStore;
 import service.KycService;
 
 import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,6 +34,12 @@ public class AdminKYCController {
     @EJB
     private KycService kycService;
 
+    @EJB
+    private KycImageStore imageStore;
+
+    @EJB
+    private StaticAssets staticAssets;
+
     @POST
     @Path("/users/{username}/approve-kyc")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -45,6 +59,10 @@ public class AdminKYCController {
 
             adminService.approveKycAndAssignRole(username, reviewNotes, reviewedBy);
             return Response.ok(Collections.singletonMap("message", "KYC approved and role assigned for user " + username)).build();
+        } catch (BusinessRuleException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(Collections.singletonMap("error", e.getMessage()))
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(Collections.singletonMap("error", "User not found or operation failed: " + e.getMessage()))
@@ -71,6 +89,10 @@ public class AdminKYCController {
 
             adminService.rejectKyc(username, reviewNotes, reviewedBy);
             return Response.ok(Collections.singletonMap("message", "KYC rejected for user " + username)).build();
+        } catch (BusinessRuleException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(Collections.singletonMap("error", e.getMessage()))
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(Collections.singletonMap("error", "User not found or operation failed: " + e.getMessage()))
@@ -159,55 +181,138 @@ public class AdminKYCController {
         }
     }
 
+    /**
+     * Get one page of the KYC review queue (Admin/Employee only)
+     * Oldest submission first. Pass the "next" values of the previous page as
+     * afterSubmittedAt and afterId to continue.
+     */
+    @GET
+    @Path("/kyc/queue")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"ADMIN", "EMPLOYEE"})
+    public Response getReviewQueue(
+            @QueryParam("status") @DefaultValue("PENDING") String status,
+            @QueryParam("afterSubmittedAt") String afterSubmittedAt,
+            @QueryParam("afterId") Long afterId,
+            @QueryParam("size") @DefaultValue("20") int size) {
+        try {
+            if (size < 1 || size > 100) size = 20; // Limit page size to prevent performance issues
+
+            LocalDateTime after = afterSubmittedAt != null ? LocalDateTime.parse(afterSubmittedAt) : null;
+            List<KycDocumentDto> documents = kycService.getReviewQueue(status, after, afterId, size);
+
+            Map<String, Object> next = null;
+            if (documents.size() == size) {
+                KycDocumentDto last = documents.get(documents.size() - 1);
+                next = new HashMap<>();
+                next.put("afterSubmittedAt", last.getSubmittedAt().toString());
+                next.put("afterId", last.getId());
+            }
+
+            Map<String, Object> responseBody = new HashMap<>();
+            responseBody.put("success", true);
+            responseBody.put("data", documents);
+            responseBody.put("totalCount", kycService.getKycDocumentsCount(status));
+            responseBody.put("next", next);
+            responseBody.put("timestamp", System.currentTimeMillis());
+            return Response.ok(responseBody).build();
+        } catch (DateTimeParseException e) {
+            return createErrorResponse(Response.Status.BAD_REQUEST, "Invalid afterSubmittedAt: " + afterSubmittedAt);
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(Response.Status.BAD_REQUEST, "Invalid status: " + status + ". Valid statuses are: PENDING, VERIFIED");
+        } catch (Exception e) {
+            e.printStackTrace();
+            return createErrorResponse(Response.Status.INTERNAL_SERVER_ERROR, "Failed to retrieve the KYC review queue: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Claim the next pending KYC documents for the current reviewer (Admin/Employee only)
+     * Claimed documents are not handed to other reviewers until they are decided,
+     * released, or the claim lapses.
+     */
+    @POST
+    @Path("/kyc/queue/claim")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"ADMIN", "EMPLOYEE"})
+    public Response claimForReview(@Context SecurityContext securityContext,
+                                   @QueryParam("size") @DefaultValue("5") int size) {
+        try {
+            if (size < 1 || size > 20) size = 5;
+
+            String reviewer = securityContext.getUserPrincipal().getName();
+            List<KycDocumentDto> documents = kycService.claimForReview(reviewer, size);
+            return createDataResponse(documents, documents.size());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return createErrorResponse(Response.Status.INTERNAL_SERVER_ERROR, "Failed to claim KYC documents: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Give a claimed KYC document back to the queue (Admin/Employee only)
+     */
+    @POST
+    @Path("/kyc/queue/{id}/release")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"ADMIN", "EMPLOYEE"})
+    public Response releaseClaim(@Context SecurityContext securityContext, @PathParam("id") Long id) {
+        try {
+            String reviewer = securityContext.getUserPrincipal().getName();
+            if (!kycService.releaseClaim(id, reviewer)) {
+                return createErrorResponse(Response.Status.CONFLICT, "You do not hold KYC document " + id);
+            }
+            return Response.ok(Collections.singletonMap("message", "KYC document " + id + " released")).build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return createErrorResponse(Response.Status.INTERNAL_SERVER_ERROR, "Failed to release KYC document: " + e.getMessage());
+        }
+    }
+
     /**
      * Get KYC image file (Admin only)
-     * This endpoint serves KYC images with proper security
+     * This endpoint serves KYC images with proper security. Pass variant=thumb or
+     * variant=preview for the reduced JPEG copies; until one is ready the original is served.
      */
     @GET
     @Path("/kyc/images/{filename}")
     @RolesAllowed({"ADMIN", "EMPLOYEE"})
-    public Response getKycImage(@PathParam("filename") String filename) {
+    public Response getKycImage(@PathParam("filename") String filename, @QueryParam("variant") String variantName,
+                                @Context Request request, @Context HttpHeaders headers) {
         try {
             // Validate filename to prevent directory traversal attacks
             if (filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
                 return createErrorResponse(Response.Status.BAD_REQUEST, "Invalid filename");
             }
 
-            // Get the webapp's KYC directory path
-            String webappPath = System.getProperty("com.sun.aas.instanceRoot");
-            String kycDir;
-            if (webappPath != null) {
-                kycDir = webappPath + "/applications/banking-ear/assets/kyc/";
-            } else {
-                kycDir = "C:\\banking_uploads\\kyc_images\\";
+            KycImageStore.Variant variant;
+            try {
+                variant = KycImageStore.Variant.fromParameter(variantName);
+            } catch (IllegalArgumentException e) {
+                return createErrorResponse(Response.Status.BAD_REQUEST, "Invalid variant. Use thumb or preview");
             }
 
-            File imageFile = new File(kycDir + filename);
-
-            if (!imageFile.exists()) {
+            java.nio.file.Path imageFile = imageStore.resolve(filename);
+            if (imageFile == null) {
                 return createErrorResponse(Response.Status.NOT_FOUND, "Image not found");
             }
 
-            // Determine content type based on file extension
-            String contentType = "image/jpeg"; // default
-            String extension = filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
-            switch (extension) {
-                case "png":
-                    contentType = "image/png";
-                    break;
-                case "jpg":
-                case "jpeg":
+            String contentType = StaticAssets.imageType(filename);
+            if (contentType == null) {
+                return createErrorResponse(Response.Status.BAD_REQUEST, "Unsupported image format");
+            }
+
+            if (variant != null) {
+                java.nio.file.Path variantFile = imageStore.variant(filename, variant);
+                if (variantFile != null) {
+                    imageFile = variantFile;
                     contentType = "image/jpeg";
-                    break;
-                case "gif":
-                    contentType = "image/gif";
-                    break;
-                default:
-                    return createErrorResponse(Response.Status.BAD_REQUEST, "Unsupported image format");
+                }
             }
 
-            return Response.ok(imageFile)
-                    .type(contentType)
+            // Full-size identity documents are never kept in the browser cache. Variants revalidate
+            // against their ETag, since one may replace the original once it is ready.
+            return staticAssets.serve(imageFile, contentType, variant != null ? "private, no-cache" : "private, no-store", request, headers)
                     .header("Content-Disposition", "inline; filename=\"" + filename + "\"")
                     .build();
 
@@ -239,6 +344,10 @@ public class AdminKYCController {
             Map<String, Object> imageUrls = new HashMap<>();
             imageUrls.put("frontImageUrl", "/api/admin/kyc/images/" + frontPhotoPath);
             imageUrls.put("backImageUrl", "/api/admin/kyc/images/" + backPhotoPath);
+            imageUrls.put("frontThumbnailUrl", "/api/admin/kyc/images/" + frontPhotoPath + "?variant=thumb");
+            imageUrls.put("backThumbnailUrl", "/api/admin/kyc/images/" + backPhotoPath + "?variant=thumb");
+            imageUrls.put("frontPreviewUrl", "/api/admin/kyc/images/" + frontPhotoPath + "?variant=preview");
+            imageUrls.put("backPreviewUrl", "/api/admin/kyc/images/" + backPhotoPath + "?variant=preview");
             imageUrls.put("documentId", id);
             imageUrls.put("username", document.getUsername());
 
@@ -261,25 +370,17 @@ public class AdminKYCController {
         try {
             Map<String, Object> info = new HashMap<>();
 
-            // Get webapp KYC directory info
-            String webappPath = System.getProperty("com.sun.aas.instanceRoot");
-            String kycDir;
-            if (webappPath != null) {
-                kycDir = webappPath + "/applications/banking-ear/assets/kyc/";
-            } else {
-                kycDir = "C:\\banking_uploads\\kyc_images\\";
-            }
-
-            File directory = new File(kycDir);
+            // Get KYC image store directory info
+            File directory = imageStore.directory().toFile();
 
-            info.put("uploadDirectory", kycDir);
+            info.put("uploadDirectory", directory.getAbsolutePath());
             info.put("directoryExists", directory.exists());
             info.put("directoryCanWrite", directory.canWrite());
             info.put("directoryCanRead", directory.canRead());
-            info.put("isWebappDirectory", webappPath != null);
+            info.put("isWebappDirectory", System.getProperty("com.sun.aas.instanceRoot") != null);
 
             if (directory.exists()) {
-                File[] files = directory.listFiles();
+                File[] files = directory.listFiles(File::isFile);
                 info.put("totalFiles", files != null ? files.length : 0);
 
                 if (files != null && files.length > 0) {
@@ -307,7 +408,7 @@ public class AdminKYCController {
     // Helper methods
     private String extractFilename(String fullPath) {
         if (fullPath == null) return null;
-        return fullPath.substring(fullPath.lastIndexOf(File.separator) + 1);
+        return fullPath.substring(Math.max(fullPath.lastIndexOf('/'), fullPath.lastIndexOf('\\')) + 1);
     }
 
     private String getStoredPath(Long documentId, String type) {
@@ -0,0 +1,77 @@
+package rest;
+
+import dto.CardAuthorizationRequestDTO;
+import dto.CardAuthorizationResponseDTO;
+import dto.CardCaptureDTO;
+import exception.BusinessRuleException;
+import service.CardAuthorizationService;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.Collections;
+
+/**
+ * Authorization endpoints for the card-processing partner. Declines are regular
+ * 200 responses carrying a reason; only malformed requests are rejected. Captures
+ * and releases are recorded at once and applied to the account within seconds.
+ */
+@Path("/cards/authorizations")
+@RolesAllowed("CARD_PROCESSOR")
+public class CardAuthorizationController {
+
+    @EJB
+    private CardAuthorizationService authorizationService;
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response authorize(CardAuthorizationRequestDTO request) {
+        try {
+            CardAuthorizationResponseDTO decision = authorizationService.authorize(request);
+            return Response.ok(decision).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Collections.singletonMap("error", e.getMessage())).build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Collections.singletonMap("error", "Authorization failed.")).build();
+        }
+    }
+
+    @POST
+    @Path("/{code}/capture")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response capture(@PathParam("code") String code, CardCaptureDTO capture) {
+        try {
+            authorizationService.capture(code, capture != null ? capture.getAmount() : null);
+            return Response.accepted(Collections.singletonMap("message", "Capture accepted.")).build();
+        } catch (BusinessRuleException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Collections.singletonMap("error", e.getMessage())).build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Collections.singletonMap("error", "Capture failed.")).build();
+        }
+    }
+
+    @POST
+    @Path("/{code}/release")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response release(@PathParam("code") String code) {
+        try {
+            authorizationService.release(code);
+            return Response.accepted(Collections.singletonMap("message", "Release accepted.")).build();
+        } catch (BusinessRuleException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Collections.singletonMap("error", e.getMessage())).build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Collections.singletonMap("error", "Release failed.")).build();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package rest;
+
+import dto.DashboardMetricsDTO;
+import jakarta.annotation.PreDestroy;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseBroadcaster;
+import jakarta.ws.rs.sse.SseEventSink;
+import service.DashboardStatistics;
+
+/**
+ * Fans the live dashboard metrics out to every connected admin screen.
+ *
+ * All sessions share one broadcaster. A timer checks the in-memory statistics every
+ * couple of seconds and pushes a single event only if something changed since the last
+ * push, so a burst of transactions costs one event per interval and the database is
+ * never touched, however many admins are watching.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DashboardMetricsBroadcaster {
+
+    private static final String EVENT_NAME = "metrics";
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+    @EJB
+    private DashboardStatistics statistics;
+
+    private final Object lock = new Object();
+    private volatile Sse sse;
+    private volatile SseBroadcaster broadcaster;
+    private volatile long lastPushedVersion = -1;
+
+    /**
+     * Registers a new admin stream and sends it the current figures straight away.
+     */
+    public void subscribe(SseEventSink sink, Sse sse) {
+        SseBroadcaster shared = broadcaster(sse);
+        sink.send(event(sse, statistics.metrics()));
+        shared.register(sink);
+    }
+
+    @Schedule(second = "*/2", minute = "*", hour = "*", persistent = false)
+    public void push() {
+        SseBroadcaster shared = broadcaster;
+        if (shared == null) {
+            return;
+        }
+        long version = statistics.version();
+        if (version == lastPushedVersion) {
+            return; // Nothing changed since the last push.
+        }
+        lastPushedVersion = version;
+        shared.broadcast(event(sse, statistics.metrics()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        SseBroadcaster shared = broadcaster;
+        if (shared != null) {
+            shared.close();
+        }
+    }
+
+    // --- Helper Methods ---
+
+    private SseBroadcaster broadcaster(Sse sse) {
+        SseBroadcaster shared = broadcaster;
+        if (shared != null) {
+            return shared;
+        }
+        synchronized (lock) {
+            if (broadcaster == null) {
+                SseBroadcaster created = sse.newBroadcaster();
+                created.onError((sink, error) ->
+                        System.err.println("DASHBOARD STREAM: Dropping admin stream: " + error.getMessage()));
+                this.sse = sse;
+                this.broadcaster = created;
+            }
+            return broadcaster;
+        }
+    }
+
+    private static OutboundSseEvent event(Sse sse, DashboardMetricsDTO metrics) {
+        return sse.newEventBuilder()
+                .name(EVENT_NAME)
+                .id(String.valueOf(metrics.getVersion()))
+                .reconnectDelay(RECONNECT_DELAY_MILLIS)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(DashboardMetricsDTO.class, metrics)
+                .build();
+    }
+}
@@ -1,6 +1,7 @@
 package rest;
 
 import dto.KycDocumentDto;
+import exception.BusinessRuleException;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ws.rs.*;
@@ -10,6 +11,7 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
+import service.KycImageStore;
 import service.KycService;
 
 import java.io.InputStream;
@@ -24,6 +26,9 @@ public class KycController {
     @EJB
     private KycService kycService;
 
+    @EJB
+    private KycImageStore imageStore;
+
     @POST
     @Path("/submit")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
@@ -68,16 +73,21 @@ public class KycController {
             String username = securityContext.getUserPrincipal().getName();
             LocalDate dateOfBirth = LocalDate.parse(dateOfBirthStr); // Assumes "YYYY-MM-DD" format
 
+            // Stream the photos into the image store first, so the submit transaction only records them
+            String idFrontPhotoFile = imageStore.store(idFrontPhotoStream, idFrontPhotoDetails.getFileName());
+            String idBackPhotoFile = imageStore.store(idBackPhotoStream, idBackPhotoDetails.getFileName());
+
             kycService.submitKyc(
                     username, fullName, dateOfBirth, nationality, idNumber, address, city, postalCode, country,
-                    idFrontPhotoStream, idFrontPhotoDetails.getFileName(),
-                    idBackPhotoStream, idBackPhotoDetails.getFileName()
+                    idFrontPhotoFile, idBackPhotoFile
             );
 
             return createSuccessResponse("KYC documents submitted successfully. Awaiting review.");
 
         } catch (DateTimeParseException e) {
             return createErrorResponse(Response.Status.BAD_REQUEST, "Invalid date format. Please use 'YYYY-MM-DD'.");
+        } catch (BusinessRuleException e) {
+            return createErrorResponse(Response.Status.BAD_REQUEST, e.getMessage());
         } catch (IllegalStateException e) {
             return createErrorResponse(Response.Status.CONFLICT, e.getMessage());
         } catch (Exception e) {
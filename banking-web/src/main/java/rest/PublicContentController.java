@@ -1,12 +1,20 @@
 package rest;
 
+import jakarta.ejb.EJB;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
 
 @Path("/biller/logo")
 public class PublicContentController {
 
+    @EJB
+    private StaticAssets staticAssets;
+
     // Helper method to determine the correct directory path
     private String getBillerLogoDirectory() {
         // IMPORTANT: This must match the path used in AdminServiceImpl.java
@@ -24,7 +32,8 @@ public class PublicContentController {
     @Path("/image/{filename}")
     // Define the types of images we serve. JAX-RS will set the Content-Type header automatically.
     @Produces({"image/jpeg", "image/png", "image/gif"})
-    public Response getBillerLogo(@PathParam("filename") String filename) {
+    public Response getBillerLogo(@PathParam("filename") String filename,
+                                  @Context Request request, @Context HttpHeaders headers) throws IOException {
 
         // Security Check: Prevent directory traversal attacks (e.g., "../../secrets.txt")
         if (filename == null || filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
@@ -34,12 +43,17 @@ public class PublicContentController {
         // Construct the full path to the file on the server's disk
         File file = new File(getBillerLogoDirectory() + filename);
 
-        if (!file.exists()) {
+        if (!file.isFile()) {
             return Response.status(Response.Status.NOT_FOUND).entity("Logo not found.").build();
         }
 
-        // Return the file stream. JAX-RS handles the rest.
-        return Response.ok(file)
+        String contentType = StaticAssets.imageType(filename);
+        if (contentType == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Unsupported image format.").build();
+        }
+
+        // Biller list pages show every logo; let browsers keep them and revalidate with the ETag
+        return staticAssets.serve(file.toPath(), contentType, "public, max-age=3600", request, headers)
                 .header("Content-Disposition", "inline; filename=\"" + filename + "\"")
                 .build();
     }
@@ -0,0 +1,61 @@
+package rest;
+
+import dto.ReconciliationRunDTO;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import scheduler.timer.ReconciliationScheduler;
+import service.ReconciliationService;
+
+import java.util.Collections;
+import java.util.List;
+
+@Path("/admin/reconciliation")
+@RolesAllowed("ADMIN")
+public class ReconciliationController {
+
+    @EJB
+    private ReconciliationService reconciliationService;
+
+    @EJB
+    private ReconciliationScheduler reconciliationScheduler;
+
+    @GET
+    @Path("/runs")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getRecentRuns(@QueryParam("limit") @DefaultValue("30") int limit) {
+        List<ReconciliationRunDTO> runs = reconciliationService.findRecentRuns(Math.max(1, Math.min(limit, 365)));
+        return Response.ok(runs).build();
+    }
+
+    @GET
+    @Path("/runs/latest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getLatestRun() {
+        return reconciliationService.findLatestRun()
+                .map(run -> Response.ok(run).build())
+                .orElse(Response.status(Response.Status.NOT_FOUND).entity(Collections.singletonMap("error", "No reconciliation has run yet.")).build());
+    }
+
+    @GET
+    @Path("/runs/{runId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getRun(@PathParam("runId") Long runId) {
+        return reconciliationService.findRun(runId)
+                .map(run -> Response.ok(run).build())
+                .orElse(Response.status(Response.Status.NOT_FOUND).entity(Collections.singletonMap("error", "Reconciliation run not found.")).build());
+    }
+
+    @POST
+    @Path("/runs")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response startRun() {
+        if (reconciliationScheduler.isRunning()) {
+            return Response.status(Response.Status.CONFLICT).entity(Collections.singletonMap("error", "A reconciliation is already running.")).build();
+        }
+        reconciliationScheduler.reconcileNow();
+        return Response.accepted(Collections.singletonMap("message", "Reconciliation started.")).build();
+    }
+}
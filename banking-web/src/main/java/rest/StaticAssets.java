@@ -0,0 +1,260 @@
+package rest;
+
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves image files (avatars, biller logos, KYC photos) with validators, so browsers and
+ * proxies can reuse what they already have.
+ *
+ * Every response carries a strong ETag taken from the file's SHA-256, its Last-Modified time
+ * and the caller's Cache-Control; a matching If-None-Match or If-Modified-Since gets a 304,
+ * and a single {@code bytes=} range gets a 206. The fingerprint of each file is kept in a
+ * small LRU keyed by path and checked against the file's size and modification time, and
+ * files up to {@code banking.assets.cacheMaxFileBytes} keep their bytes there too, so a hot
+ * logo is served without touching the disk. Larger files are streamed from a
+ * {@link FileChannel} with {@code transferTo}.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class StaticAssets {
+
+    private static final int CACHE_ENTRIES = Integer.getInteger("banking.assets.cacheEntries", 1024);
+    private static final long CACHE_BYTES = Long.getLong("banking.assets.cacheBytes", 16L * 1024 * 1024);
+    private static final long CACHE_MAX_FILE_BYTES = Long.getLong("banking.assets.cacheMaxFileBytes", 256L * 1024);
+
+    private final LinkedHashMap<Path, Asset> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    /**
+     * The content type for an image file name, or null if it is not an image we serve.
+     */
+    public static String imageType(String filename) {
+        String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        switch (extension) {
+            case "png":
+                return "image/png";
+            case "jpg":
+            case "jpeg":
+                return "image/jpeg";
+            case "gif":
+                return "image/gif";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Builds the response for a file: 304 if the client's copy is current, 206 for a
+     * satisfiable single range, 416 for an unsatisfiable one, otherwise 200 with the whole
+     * file. The caller adds any further headers and builds it.
+     */
+    public Response.ResponseBuilder serve(Path file, String contentType, String cacheControl,
+                                          Request request, HttpHeaders headers) throws IOException {
+        Asset asset = lookup(file);
+        EntityTag etag = new EntityTag(asset.etag);
+        Date lastModified = new Date(asset.lastModified);
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(lastModified, etag);
+        if (notModified != null) {
+            return notModified.tag(etag).header("Cache-Control", cacheControl);
+        }
+
+        long start = 0;
+        long length = asset.size;
+        Response.ResponseBuilder builder;
+        long[] range = requestedRange(headers, asset);
+        if (range == null) {
+            builder = Response.ok();
+        } else if (range.length == 0) {
+            return Response.status(416)
+                    .header("Content-Range", "bytes */" + asset.size)
+                    .tag(etag);
+        } else {
+            start = range[0];
+            length = range[1] - range[0] + 1;
+            builder = Response.status(206)
+                    .header("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + asset.size);
+        }
+
+        return builder.entity(body(file, asset, start, length))
+                .type(contentType)
+                .tag(etag)
+                .lastModified(lastModified)
+                .header("Cache-Control", cacheControl)
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Length", length);
+    }
+
+    // --- Helper Methods ---
+
+    private Asset lookup(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        synchronized (cache) {
+            Asset cached = cache.get(file);
+            if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+                return cached;
+            }
+        }
+
+        byte[] content = size <= CACHE_MAX_FILE_BYTES ? Files.readAllBytes(file) : null;
+        if (content != null && content.length != size) {
+            // Changed while it was read; serve what was read and let the next request recache
+            return new Asset(fingerprint(content), content.length, lastModified, content);
+        }
+        Asset asset = new Asset(content != null ? fingerprint(content) : fingerprint(file), size, lastModified, content);
+        synchronized (cache) {
+            Asset previous = cache.put(file, asset);
+            if (previous != null) {
+                cachedBytes -= previous.cachedBytes();
+            }
+            cachedBytes += asset.cachedBytes();
+            Iterator<Map.Entry<Path, Asset>> eldest = cache.entrySet().iterator();
+            while ((cache.size() > CACHE_ENTRIES || cachedBytes > CACHE_BYTES) && eldest.hasNext()) {
+                cachedBytes -= eldest.next().getValue().cachedBytes();
+                eldest.remove();
+            }
+        }
+        return asset;
+    }
+
+    /**
+     * The single range the client asked for as {@code [first, last]}, an empty array if it
+     * cannot be satisfied, or null to send the whole file (no Range header, a stale If-Range,
+     * several ranges, or a header we do not understand).
+     */
+    private static long[] requestedRange(HttpHeaders headers, Asset asset) {
+        String header = headers.getHeaderString("Range");
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String ifRange = headers.getHeaderString("If-Range");
+        if (ifRange != null && !ifRange.equals("\"" + asset.etag + "\"")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long first;
+            long last;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix == 0) {
+                    return new long[0];
+                }
+                first = Math.max(0, asset.size - suffix);
+                last = asset.size - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = dash == spec.length() - 1 ? asset.size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), asset.size - 1);
+            }
+            if (first >= asset.size || first > last) {
+                return new long[0];
+            }
+            return new long[]{first, last};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static StreamingOutput body(Path file, Asset asset, long start, long length) {
+        if (asset.content != null) {
+            return output -> output.write(asset.content, (int) start, (int) length);
+        }
+        return output -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(output);
+                long position = start;
+                long end = start + length;
+                while (position < end) {
+                    long sent = channel.transferTo(position, end - position, target);
+                    if (sent <= 0) {
+                        break; // File was truncated under us
+                    }
+                    position += sent;
+                }
+            }
+        };
+    }
+
+    private static String fingerprint(byte[] content) {
+        MessageDigest digest = sha256();
+        digest.update(content);
+        return toHex(digest.digest());
+    }
+
+    private static String fingerprint(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        // 128 bits are plenty to tell versions of one file apart
+        StringBuilder hex = new StringBuilder(32);
+        for (int i = 0; i < 16; i++) {
+            hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static final class Asset {
+        private final String etag;
+        private final long size;
+        private final long lastModified;
+        private final byte[] content;
+
+        Asset(String etag, long size, long lastModified, byte[] content) {
+            this.etag = etag;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+
+        long cachedBytes() {
+            return content != null ? content.length : 0;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
 import service.DocumentGenerationService;
 import service.TransactionService;
+import service.TransferPipeline;
 
 import java.io.ByteArrayOutputStream;
 import java.time.LocalDate;
@@ -27,6 +28,9 @@ public class TransactionController {
     @EJB
     private TransactionService transactionService;
 
+    @EJB
+    private TransferPipeline transferPipeline;
+
     @EJB // Inject the document service
     private DocumentGenerationService documentGenerationService;
 
@@ -43,8 +47,12 @@ public class TransactionController {
             // Get the username of the logged-in user from their JWT
             String username = securityContext.getUserPrincipal().getName();
 
-            // Call the EJB service to perform the transfer
-            transactionService.performTransfer(username, transactionRequest);
+            // Call the EJB service to perform the transfer, through the group-commit queue when it is enabled
+            if (transferPipeline.isEnabled()) {
+                transferPipeline.transfer(username, transactionRequest);
+            } else {
+                transactionService.performTransfer(username, transactionRequest);
+            }
 
             return Response.ok(Collections.singletonMap("message", "Transfer successful.")).build();
         } catch (Exception e) {
@@ -2,19 +2,22 @@ package rest;
 
 
 import auth.service.UserService;
+import auth.util.AvatarImages;
 import dto.ProfileUpdateDTO;
 import entity.User;
+import exception.BusinessRuleException;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 
-import java.io.File;
 import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,6 +29,12 @@ public class UserController {
     @EJB
     private UserService userService;
 
+    @EJB
+    private StaticAssets staticAssets;
+
+    @EJB
+    private AvatarImages avatarImages;
+
     // We use PUT for updates as it's idempotent for updating a whole resource representation,
     // but PATCH is also a good choice if you want to allow partial updates.
     @PUT
@@ -91,6 +100,8 @@ public class UserController {
 
             return Response.ok(response).build();
 
+        } catch (BusinessRuleException e) {
+            return createErrorResponse(Response.Status.BAD_REQUEST, e.getMessage());
         } catch (IllegalArgumentException e) {
             return createErrorResponse(Response.Status.BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
@@ -181,54 +192,38 @@ public class UserController {
 
     /**
      * Get avatar image file - Public access (no authentication required)
-     * This endpoint serves avatar images publicly without JWT authentication
+     * This endpoint serves avatar images publicly without JWT authentication.
+     * Pass size=32, 64 or 256 for a pre-sized copy; other sizes get the next larger one.
      */
     @GET
     @Path("/avatar/image/{filename}")
-    public Response getAvatarImage(@PathParam("filename") String filename) {
+    public Response getAvatarImage(@PathParam("filename") String filename, @QueryParam("size") Integer size,
+                                   @Context Request request, @Context HttpHeaders headers) {
         try {
             // Validate filename to prevent directory traversal attacks
             if (filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
                 return createErrorResponse(Response.Status.BAD_REQUEST, "Invalid filename");
             }
 
-            // Get the webapp's avatar directory path
-            String webappPath = System.getProperty("com.sun.aas.instanceRoot");
-            String avatarDir;
-            if (webappPath != null) {
-                avatarDir = webappPath + "/applications/banking-ear/assets/avatars/";
-            } else {
-                avatarDir = "C:\\banking_uploads\\avatars\\";
+            if (size != null && size < 1) {
+                return createErrorResponse(Response.Status.BAD_REQUEST, "Invalid size");
             }
 
-            File imageFile = new File(avatarDir + filename);
+            String contentType = StaticAssets.imageType(filename);
+            if (contentType == null) {
+                return createErrorResponse(Response.Status.BAD_REQUEST, "Unsupported image format");
+            }
 
-            if (!imageFile.exists()) {
+            java.nio.file.Path imageFile = avatarImages.resolve(filename, size);
+            if (imageFile == null) {
                 return createErrorResponse(Response.Status.NOT_FOUND, "Avatar image not found");
             }
-
-            // Determine content type based on file extension
-            String contentType = "image/jpeg"; // default
-            String extension = filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
-            switch (extension) {
-                case "png":
-                    contentType = "image/png";
-                    break;
-                case "jpg":
-                case "jpeg":
-                    contentType = "image/jpeg";
-                    break;
-                case "gif":
-                    contentType = "image/gif";
-                    break;
-                default:
-                    return createErrorResponse(Response.Status.BAD_REQUEST, "Unsupported image format");
+            if (!imageFile.getFileName().toString().equals(filename)) {
+                contentType = "image/jpeg"; // Sized copies are always JPEG
             }
 
-            return Response.ok(imageFile)
-                    .type(contentType)
+            return staticAssets.serve(imageFile, contentType, "public, max-age=3600", request, headers) // Cache for 1 hour, then revalidate
                     .header("Content-Disposition", "inline; filename=\"" + filename + "\"")
-                    .header("Cache-Control", "public, max-age=3600") // Cache for 1 hour
                     .header("Access-Control-Allow-Origin", "*") // Allow cross-origin requests
                     .build();
 
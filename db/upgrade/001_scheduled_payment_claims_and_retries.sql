@@ -0,0 +1,12 @@
+-- Brings a scheduled_payment table created before the timing wheel, claims and retries up to date.
+-- schema-generation only creates missing tables, so run this once on an existing database before deploying.
+
+ALTER TABLE scheduled_payment
+    ADD COLUMN executionTime TIME NULL,
+    ADD COLUMN retry_count INT NOT NULL DEFAULT 0,
+    ADD COLUMN next_retry_at DATETIME NULL,
+    ADD COLUMN claimed_by VARCHAR(128) NULL,
+    ADD COLUMN claimed_at DATETIME NULL;
+
+CREATE INDEX idx_scheduled_payment_due ON scheduled_payment (status, nextExecutionDate);
+CREATE INDEX idx_scheduled_payment_retry ON scheduled_payment (status, next_retry_at);
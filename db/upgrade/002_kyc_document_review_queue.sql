@@ -0,0 +1,14 @@
+-- Brings a kyc_document table created before the review queue up to date.
+-- schema-generation only creates missing tables, so run this once on an existing database before deploying.
+
+ALTER TABLE kyc_document
+    ADD COLUMN review_status VARCHAR(20) NULL,
+    ADD COLUMN claimed_by VARCHAR(100) NULL,
+    ADD COLUMN claimed_at DATETIME NULL;
+
+-- Existing documents take their owner's KYC status, as the hourly reconciliation would.
+UPDATE kyc_document k JOIN app_user u ON u.id = k.user_id
+SET k.review_status = u.kycStatus
+WHERE k.review_status IS NULL;
+
+CREATE INDEX idx_kyc_document_queue ON kyc_document (review_status, submittedAt, id);
@@ -0,0 +1,8 @@
+-- Brings a balance_hold table created before captures and releases were queued in the table up to date.
+-- schema-generation only creates missing tables, so run this once on an existing database before deploying.
+
+ALTER TABLE balance_hold
+    ADD COLUMN settlement VARCHAR(20) NULL,
+    ADD COLUMN captured_amount DECIMAL(19,4) NULL;
+
+CREATE INDEX idx_balance_hold_settlement ON balance_hold (settlement);
@@ -0,0 +1,5 @@
+-- Adds the balance engine's ownership claim to an account table created before it existed.
+-- schema-generation only creates missing tables, so run this once on an existing database before deploying.
+
+ALTER TABLE account
+    ADD COLUMN engine_node VARCHAR(128) NULL;
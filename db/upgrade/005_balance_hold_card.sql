@@ -0,0 +1,6 @@
+-- Brings a balance_hold table created before holds recorded their card up to date. Releases of holds
+-- placed before the upgrade are not taken off the card's daily spend, which resets the next day.
+-- schema-generation only creates missing tables, so run this once on an existing database before deploying.
+
+ALTER TABLE balance_hold
+    ADD COLUMN card_id BIGINT NULL;